@@ -0,0 +1,159 @@
+package com.rsicms.rsuite.utils.container.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.LogFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.control.ObjectDestroyOptions;
+import com.rsicms.rsuite.utils.container.ContainerUtils;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+import com.rsicms.rsuite.utils.container.delete.ContainerDeletionEngine;
+import com.rsicms.rsuite.utils.container.delete.ContainerDeletionOptions;
+import com.rsicms.rsuite.utils.mo.MOUtils;
+import com.rsicms.rsuite.utils.operation.result.BaseOperationResult;
+import com.rsicms.rsuite.utils.operation.result.OperationResult;
+
+/**
+ * Measures deleting a container and its referenced content. Each invocation deletes a freshly
+ * generated tree.
+ * <p>
+ * The MO phase is also measured on its own, with and without the check-out state prefetch and
+ * batching, against the original loop checking out each MO through <code>MOUtils</code>. The
+ * repository calls each invocation makes are reported as the <code>checkOutCalls</code> and
+ * <code>destroyCalls</code> secondary results.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class DeletionBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class FreshTreeState extends TreeState {
+
+    @Param({"1", "8"})
+    public int workerCount;
+
+    @Param({"false", "true"})
+    public boolean summarizeMessages;
+
+    @Param({"false", "true"})
+    public boolean prefetchCheckOutState;
+
+    @Param({"1", "50"})
+    public int destroyBatchSize;
+
+    /**
+     * The MOs the tree references.
+     */
+    public List<ManagedObject> mos;
+
+    @Setup(Level.Invocation)
+    public void rebuildTree() throws RSuiteException {
+      buildTree();
+      mos = new ContainerUtils().listReferencedContent(context, user, root, 1)
+          .getReferencedManagedObjects();
+      repository.resetCallCounts();
+    }
+  }
+
+  /**
+   * Repository calls made by the measured invocations, summed.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class CallCounts {
+
+    /**
+     * <code>ManagedObjectService</code> calls other than retrievals and destroys.
+     */
+    public long checkOutCalls;
+
+    public long destroyCalls;
+
+    private void add(InMemoryRepository repository) {
+      for (Map.Entry<String, Long> entry : repository.getCallCounts().entrySet()) {
+        if (entry.getKey().equals("ManagedObjectService.destroy")) {
+          destroyCalls += entry.getValue();
+        } else if (entry.getKey().startsWith("ManagedObjectService.")
+            && !entry.getKey().equals("ManagedObjectService.getManagedObject")) {
+          checkOutCalls += entry.getValue();
+        }
+      }
+    }
+  }
+
+  private final ContainerUtils containerUtils = new ContainerUtils();
+
+  @Benchmark
+  public OperationResult deleteContainerAndReferencedContent(FreshTreeState tree,
+      CallCounts counts) throws RSuiteException {
+    ContainerDeletionOptions options = new ContainerDeletionOptions();
+    options.setWorkerCount(tree.workerCount);
+    options.setTraversalParallelism(tree.workerCount);
+    options.setSummarizeMessages(tree.summarizeMessages);
+    options.setPrefetchCheckOutState(tree.prefetchCheckOutState);
+    options.setDestroyBatchSize(tree.destroyBatchSize);
+    OperationResult result = containerUtils.deleteContainerAndReferencedContent(tree.context,
+        tree.user, tree.root, options, null);
+    counts.add(tree.repository);
+    return result;
+  }
+
+  @Benchmark
+  public int deleteManagedObjects(FreshTreeState tree, CallCounts counts)
+      throws RSuiteException {
+    ContainerDeletionOptions options = new ContainerDeletionOptions();
+    options.setWorkerCount(tree.workerCount);
+    options.setSummarizeMessages(tree.summarizeMessages);
+    options.setPrefetchCheckOutState(tree.prefetchCheckOutState);
+    options.setDestroyBatchSize(tree.destroyBatchSize);
+    int warningCnt = new ContainerDeletionEngine(tree.context, tree.user, options)
+        .deleteManagedObjects(tree.mos, new BaseOperationResult(
+            tree.context.getIDGenerator().allocateId(), "delete",
+            LogFactory.getLog(DeletionBenchmark.class)));
+    counts.add(tree.repository);
+    return warningCnt;
+  }
+
+  /**
+   * The MO phase as it was, checking out each MO through <code>MOUtils</code>, on the calling
+   * thread.
+   */
+  @Benchmark
+  public int deleteManagedObjectsWithMOUtils(FreshTreeState tree, CallCounts counts)
+      throws RSuiteException {
+    MOUtils moUtils = new MOUtils();
+    ObjectDestroyOptions destroyOptions = new ObjectDestroyOptions();
+    int warningCnt = 0;
+    for (ManagedObject mo : tree.mos) {
+      try {
+        moUtils.checkout(tree.context, tree.user, mo.getId());
+        tree.context.getManagedObjectService().destroy(tree.user, mo.getId(), destroyOptions);
+      } catch (RSuiteException e) {
+        warningCnt++;
+      }
+    }
+    counts.add(tree.repository);
+    return warningCnt;
+  }
+
+}
@@ -0,0 +1,90 @@
+package com.rsicms.rsuite.utils.container.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.MetaDataItem;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.ContainerUtils;
+import com.rsicms.rsuite.utils.container.LayeredMetadataIndex;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+
+/**
+ * Compares retrieving several LMD values from one container.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LayeredMetadataBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class MetadataState {
+
+    @Param({"20", "200"})
+    public int lmdCount;
+
+    @Param({"15"})
+    public int lookupCount;
+
+    public ContentAssembly container;
+
+    public List<String> lmdNames;
+
+    @Setup(Level.Trial)
+    public void buildContainer() {
+      List<MetaDataItem> lmd = new ArrayList<MetaDataItem>(lmdCount);
+      for (int i = 0; i < lmdCount; i++) {
+        lmd.add(new MetaDataItem("lmd" + i, "value" + i));
+      }
+      container = new InMemoryRepository().createContentAssembly("container", "type", lmd);
+
+      // Spread the requested names across the metadata, in upper case to exercise case handling.
+      lmdNames = new ArrayList<String>(lookupCount);
+      for (int i = 0; i < lookupCount; i++) {
+        lmdNames.add(("lmd" + (i * lmdCount / lookupCount)).toUpperCase());
+      }
+    }
+  }
+
+  private final ContainerUtils containerUtils = new ContainerUtils();
+
+  @Benchmark
+  public void singleLookups(MetadataState state, Blackhole blackhole) throws RSuiteException {
+    for (String name : state.lmdNames) {
+      blackhole.consume(containerUtils.getLayeredMetadataValue(state.container, name));
+    }
+  }
+
+  @Benchmark
+  public Map<String, List<String>> batchLookup(MetadataState state) throws RSuiteException {
+    return containerUtils.getLayeredMetadataValues(state.container, state.lmdNames);
+  }
+
+  @Benchmark
+  public void indexLookups(MetadataState state, Blackhole blackhole) throws RSuiteException {
+    LayeredMetadataIndex index = containerUtils.getLayeredMetadataIndex(state.container);
+    for (String name : state.lmdNames) {
+      blackhole.consume(index.getValue(name));
+    }
+  }
+
+}
@@ -0,0 +1,138 @@
+package com.rsicms.rsuite.utils.container.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.ObjectType;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.content.ContentDisplayObject;
+import com.reallysi.rsuite.api.content.ContentObjectPath;
+import com.reallysi.rsuite.service.ContentAssemblyService;
+import com.rsicms.rsuite.utils.container.ContainerUtils;
+import com.rsicms.rsuite.utils.container.benchmark.fake.FakeObjects;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+import com.rsicms.rsuite.utils.container.cache.ContainerResolutionCache;
+
+/**
+ * Measures {@link ContainerUtils#getContentAssemblyNodeContainer(ContentAssemblyService, User,
+ * ContentObjectPath, String, ContainerResolutionCache)} and
+ * {@link ContainerUtils#getContentAssemblyNodeContainers(ContentAssemblyService, User,
+ * ContentObjectPath, ContainerResolutionCache)}, with and without a
+ * {@link ContainerResolutionCache}. The browse path is a fake <code>ContentObjectPath</code> whose
+ * objects are references to a chain of nested CAs. The sought container type is that of the
+ * outermost CA, so the whole path is resolved.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PathResolutionBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class PathState {
+
+    @Param({"8"})
+    public int pathLength;
+
+    @Param({"100"})
+    public long latencyMicros;
+
+    public ContentAssemblyService caService;
+
+    public User user;
+
+    public ContentObjectPath path;
+
+    public String outermostType;
+
+    public ContainerResolutionCache cache;
+
+    @Setup(Level.Trial)
+    public void buildPath() {
+      InMemoryRepository repository = new InMemoryRepository();
+      final List<ContentDisplayObject> pathObjects = new ArrayList<ContentDisplayObject>(
+          pathLength + 1);
+      // The first path object is not considered by ContainerUtils.
+      pathObjects.add(newPathObject(null));
+      ContentAssembly parent = null;
+      for (int i = 0; i < pathLength; i++) {
+        ContentAssembly ca = repository.createContentAssembly("ca" + i, "level" + i, null);
+        if (parent != null) {
+          repository.addReference(parent, ca);
+        }
+        pathObjects.add(newPathObject(ca.getId()));
+        parent = ca;
+      }
+      Map<String, Object> pathProps = new HashMap<String, Object>();
+      pathProps.put("getPathObjects", pathObjects);
+      path = FakeObjects.newBean(ContentObjectPath.class, pathProps);
+      outermostType = "level0";
+
+      repository.setLatency(latencyMicros, TimeUnit.MICROSECONDS);
+      caService = repository.getExecutionContext().getContentAssemblyService();
+      user = repository.getUser();
+      cache = new ContainerResolutionCache(1000, 10, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param targetId The ID of the referenced CA, or null for the path's first object.
+     * @return A path object whose MO is a reference to the CA.
+     */
+    private static ContentDisplayObject newPathObject(String targetId) {
+      Map<String, Object> refProps = new HashMap<String, Object>();
+      if (targetId != null) {
+        refProps.put("getId", targetId + "-ref");
+        refProps.put("getTargetId", targetId);
+        refProps.put("getObjectType", ObjectType.CONTENT_ASSEMBLY_REF);
+      } else {
+        refProps.put("getObjectType", ObjectType.MANAGED_OBJECT);
+      }
+      Map<String, Object> cdoProps = new HashMap<String, Object>();
+      cdoProps.put("getManagedObject", FakeObjects.newBean(ManagedObject.class, refProps));
+      return FakeObjects.newBean(ContentDisplayObject.class, cdoProps);
+    }
+  }
+
+  private final ContainerUtils containerUtils = new ContainerUtils();
+
+  @Benchmark
+  public ContentAssemblyNodeContainer uncached(PathState state) throws RSuiteException {
+    return containerUtils.getContentAssemblyNodeContainer(state.caService, state.user,
+        state.path, state.outermostType);
+  }
+
+  @Benchmark
+  public ContentAssemblyNodeContainer cached(PathState state) throws RSuiteException {
+    return containerUtils.getContentAssemblyNodeContainer(state.caService, state.user,
+        state.path, state.outermostType, state.cache);
+  }
+
+  @Benchmark
+  public List<ContentAssemblyNodeContainer> allContainersCached(PathState state)
+      throws RSuiteException {
+    return containerUtils.getContentAssemblyNodeContainers(state.caService, state.user,
+        state.path, state.cache);
+  }
+
+}
@@ -0,0 +1,130 @@
+package com.rsicms.rsuite.utils.container.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.ContainerUtils;
+import com.rsicms.rsuite.utils.container.ManagedObjectWindow;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+import com.rsicms.rsuite.utils.container.visitor.ChildrenInfoContainerVisitor;
+
+/**
+ * Measures sibling navigation within a single, wide container.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SiblingLookupBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class WideContainerState {
+
+    @Param({"100", "5000"})
+    public int childCount;
+
+    /**
+     * MOs wanted on either side of the child.
+     */
+    @Param({"5"})
+    public int siblingCount;
+
+    @Param({"0"})
+    public long latencyMicros;
+
+    public ExecutionContext context;
+
+    public User user;
+
+    public ContentAssembly container;
+
+    public List<String> childIds;
+
+    public String middleChildId;
+
+    public ChildrenInfoContainerVisitor visitedContainer;
+
+    @Setup(Level.Trial)
+    public void buildContainer() throws RSuiteException {
+      InMemoryRepository repository = new InMemoryRepository();
+      container = repository.createContentAssembly("wide", "wide", null);
+      childIds = new ArrayList<String>(childCount);
+      for (int i = 0; i < childCount; i++) {
+        ManagedObject mo = repository.createManagedObject("mo" + i, null);
+        repository.addReference(container, mo);
+        childIds.add(mo.getId());
+      }
+      middleChildId = childIds.get(childCount / 2);
+      repository.setLatency(latencyMicros, TimeUnit.MICROSECONDS);
+      context = repository.getExecutionContext();
+      user = repository.getUser();
+
+      visitedContainer = new ChildrenInfoContainerVisitor(context, user);
+      visitedContainer.visitContentAssemblyNodeContainer(container);
+    }
+  }
+
+  private final ContainerUtils containerUtils = new ContainerUtils();
+
+  @Benchmark
+  public ManagedObject nextSibling(WideContainerState state) throws RSuiteException {
+    return containerUtils.getSiblingManagedObject(state.context, state.user, state.container,
+        state.middleChildId, false);
+  }
+
+  /**
+   * The siblings on either side of the child, gathered one call at a time.
+   */
+  @Benchmark
+  public void siblingsOneAtATime(WideContainerState state, Blackhole blackhole)
+      throws RSuiteException {
+    for (boolean previous : new boolean[] {true, false}) {
+      String id = state.middleChildId;
+      for (int i = 0; i < state.siblingCount && id != null; i++) {
+        ManagedObject mo = containerUtils.getSiblingManagedObject(state.context, state.user,
+            state.container, id, previous);
+        blackhole.consume(mo);
+        id = mo == null ? null : mo.getId();
+      }
+    }
+  }
+
+  @Benchmark
+  public ManagedObjectWindow siblingWindow(WideContainerState state) throws RSuiteException {
+    return containerUtils.getSiblingManagedObjectWindow(state.context, state.user,
+        state.container, state.middleChildId, state.siblingCount);
+  }
+
+  /**
+   * Every child's following MO reference, from an already visited container.
+   */
+  @Benchmark
+  public void moRefSiblingAfterEveryChild(WideContainerState state, Blackhole blackhole)
+      throws RSuiteException {
+    for (String id : state.childIds) {
+      blackhole.consume(state.visitedContainer.getMoRefSiblingAfter(id));
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+package com.rsicms.rsuite.utils.container.benchmark;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.ContainerUtils;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+import com.rsicms.rsuite.utils.container.visitor.ReferencedContent;
+
+/**
+ * Compares the ways of listing a container's referenced content.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TraversalBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class ParallelismState {
+    @Param({"4", "16"})
+    public int parallelism;
+  }
+
+  private final ContainerUtils containerUtils = new ContainerUtils();
+
+  @Benchmark
+  public ReferencedContent listVisitor(TreeState tree) throws RSuiteException {
+    return containerUtils.listReferencedContent(tree.context, tree.user, tree.root, 1);
+  }
+
+  @Benchmark
+  public ReferencedContent parallelWalker(TreeState tree, ParallelismState state)
+      throws RSuiteException {
+    return containerUtils.listReferencedContent(tree.context, tree.user, tree.root,
+        state.parallelism);
+  }
+
+  @Benchmark
+  public int iterator(TreeState tree) {
+    int count = 0;
+    Iterator<ReferencedItem> it =
+        containerUtils.iterateReferencedContent(tree.context, tree.user, tree.root).iterator();
+    while (it.hasNext()) {
+      it.next();
+      count++;
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,73 @@
+package com.rsicms.rsuite.utils.container.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+import com.rsicms.rsuite.utils.container.benchmark.fake.SyntheticTreeGenerator;
+
+/**
+ * A synthetic container tree in an in-memory repository, shaped by the JMH parameters.
+ */
+@State(Scope.Benchmark)
+public class TreeState {
+
+  /**
+   * Levels of containers below the root.
+   */
+  @Param({"3"})
+  public int depth;
+
+  /**
+   * Child containers per container.
+   */
+  @Param({"4"})
+  public int fanOut;
+
+  @Param({"10"})
+  public int mosPerContainer;
+
+  /**
+   * Likelihood an MO reference targets an MO that is already referenced.
+   */
+  @Param({"0.1"})
+  public double sharedReferenceRatio;
+
+  /**
+   * Latency injected into every service call.
+   */
+  @Param({"0"})
+  public long latencyMicros;
+
+  public InMemoryRepository repository;
+
+  public ContentAssembly root;
+
+  public ExecutionContext context;
+
+  public User user;
+
+  @Setup(Level.Trial)
+  public void buildTree() {
+    SyntheticTreeGenerator generator = new SyntheticTreeGenerator();
+    generator.setDepth(depth);
+    generator.setFanOut(fanOut);
+    generator.setMosPerContainer(mosPerContainer);
+    generator.setSharedReferenceRatio(sharedReferenceRatio);
+
+    repository = new InMemoryRepository();
+    root = generator.generate(repository);
+    repository.setLatency(latencyMicros, TimeUnit.MICROSECONDS);
+    context = repository.getExecutionContext();
+    user = repository.getUser();
+  }
+
+}
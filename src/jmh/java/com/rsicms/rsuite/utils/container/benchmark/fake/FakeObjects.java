@@ -0,0 +1,91 @@
+package com.rsicms.rsuite.utils.container.benchmark.fake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates dynamic proxies standing in for RSuite API interfaces. Only the methods the library and
+ * benchmarks rely on need be answered; every other method returns its type's default value.
+ */
+public class FakeObjects {
+
+  private FakeObjects() {}
+
+  /**
+   * Create a proxy implementing the given interface.
+   *
+   * @param iface
+   * @param handler
+   * @return The proxy.
+   */
+  public static <T> T newProxy(Class<T> iface, InvocationHandler handler) {
+    return iface.cast(Proxy.newProxyInstance(FakeObjects.class.getClassLoader(),
+        new Class<?>[] {iface}, handler));
+  }
+
+  /**
+   * Create a proxy whose methods return the values in the given map, keyed by method name.
+   *
+   * @param iface
+   * @param properties Mutable, allowing values to change after creation.
+   * @return The proxy.
+   */
+  public static <T> T newBean(Class<T> iface, Map<String, Object> properties) {
+    return newProxy(iface, new PropertyHandler(properties));
+  }
+
+  /**
+   * @param type
+   * @return The value a method with the given return type returns when it isn't answered.
+   */
+  static Object defaultValue(Class<?> type) {
+    if (!type.isPrimitive() || type == void.class) {
+      return null;
+    } else if (type == boolean.class) {
+      return false;
+    } else if (type == char.class) {
+      return '\0';
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == float.class) {
+      return 0f;
+    } else if (type == double.class) {
+      return 0d;
+    } else if (type == byte.class) {
+      return (byte) 0;
+    } else if (type == short.class) {
+      return (short) 0;
+    }
+    return 0;
+  }
+
+  /**
+   * Answers methods from a map keyed by method name, with identity-based equality.
+   */
+  static class PropertyHandler implements InvocationHandler {
+
+    private final Map<String, Object> properties;
+
+    PropertyHandler(Map<String, Object> properties) {
+      this.properties = properties == null ? new ConcurrentHashMap<String, Object>() : properties;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if ("equals".equals(name) && args != null && args.length == 1) {
+        return proxy == args[0];
+      } else if ("hashCode".equals(name) && args == null) {
+        return System.identityHashCode(proxy);
+      } else if ("toString".equals(name) && args == null) {
+        return method.getDeclaringClass().getSimpleName() + "[" + properties.get("getId") + "]";
+      }
+      Object value = properties.get(name);
+      return value == null ? defaultValue(method.getReturnType()) : value;
+    }
+  }
+
+}
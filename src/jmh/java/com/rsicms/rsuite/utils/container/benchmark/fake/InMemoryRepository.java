@@ -0,0 +1,391 @@
+package com.rsicms.rsuite.utils.container.benchmark.fake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyItem;
+import com.reallysi.rsuite.api.ContentAssemblyNode;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ContentAssemblyReference;
+import com.reallysi.rsuite.api.IDGenerator;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.ManagedObjectReference;
+import com.reallysi.rsuite.api.MetaDataItem;
+import com.reallysi.rsuite.api.ObjectType;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.reallysi.rsuite.api.security.AuthorizationService;
+import com.reallysi.rsuite.service.ContentAssemblyService;
+import com.reallysi.rsuite.service.ManagedObjectService;
+
+/**
+ * An in-memory stand-in for the parts of an RSuite repository this library uses, with a
+ * configurable latency injected into every service call, per-method call counts, and optional
+ * failures.
+ * <p>
+ * Objects are created with the <code>create*</code> methods and made available through
+ * {@link #getExecutionContext()}. Service calls are safe for use by multiple threads; building
+ * the tree is not.
+ */
+public class InMemoryRepository {
+
+  private final ConcurrentMap<String, ContentAssemblyNodeContainer> containers =
+      new ConcurrentHashMap<String, ContentAssemblyNodeContainer>();
+
+  private final ConcurrentMap<String, ManagedObject> managedObjects =
+      new ConcurrentHashMap<String, ManagedObject>();
+
+  private final ConcurrentMap<String, Map<String, Object>> propertiesById =
+      new ConcurrentHashMap<String, Map<String, Object>>();
+
+  private final ConcurrentMap<String, String> checkOutOwners =
+      new ConcurrentHashMap<String, String>();
+
+  private final ConcurrentMap<String, AtomicLong> callCounts =
+      new ConcurrentHashMap<String, AtomicLong>();
+
+  private final Set<String> failingCalls =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  private final AtomicLong nextId = new AtomicLong(1);
+
+  private volatile long latencyNanos;
+
+  private final User user;
+
+  private final ExecutionContext context;
+
+  public InMemoryRepository() {
+    Map<String, Object> userProps = new ConcurrentHashMap<String, Object>();
+    userProps.put("getUserId", "admin");
+    this.user = FakeObjects.newBean(User.class, userProps);
+
+    final ContentAssemblyService caService =
+        FakeObjects.newProxy(ContentAssemblyService.class, new ServiceHandler() {
+          @Override
+          protected Object handle(String name, Object[] args) throws RSuiteException {
+            if (name.equals("getContentAssemblyNodeContainer") || name.equals("getContentAssembly")
+                || name.equals("getCANode")) {
+              return getContainer((String) args[1]);
+            } else if (name.equals("removeContentAssembly") || name.equals("deleteCANode")) {
+              removeContainer((String) args[1]);
+            } else if (name.equals("renameContentAssembly") || name.equals("renameCANode")) {
+              getProperties((String) args[1]).put("getDisplayName", args[2]);
+            }
+            return null;
+          }
+        });
+    final ManagedObjectService moService =
+        FakeObjects.newProxy(ManagedObjectService.class, new ServiceHandler() {
+          @Override
+          protected Object handle(String name, Object[] args) throws RSuiteException {
+            if (name.equals("getManagedObject")) {
+              return getManagedObject((String) args[1]);
+            } else if (name.equals("destroy")) {
+              removeManagedObject((String) args[1]);
+            } else if (name.equals("checkOut")) {
+              checkOut((String) args[1], ((User) args[0]).getUserId());
+            } else if (name.equals("getCheckOutOwner")) {
+              return checkOutOwners.get(args[0]);
+            } else if (name.equals("isCheckedOut")) {
+              return checkOutOwners.containsKey(args[0]);
+            }
+            return null;
+          }
+        });
+    final AuthorizationService authService =
+        FakeObjects.newProxy(AuthorizationService.class, new ServiceHandler() {
+          @Override
+          protected Object handle(String name, Object[] args) {
+            return name.startsWith("is") ? Boolean.TRUE : null;
+          }
+        });
+    final IDGenerator idGenerator = FakeObjects.newProxy(IDGenerator.class, new ServiceHandler() {
+      @Override
+      protected Object handle(String name, Object[] args) {
+        return name.equals("allocateId") ? newId() : null;
+      }
+    });
+
+    Map<String, Object> contextProps = new ConcurrentHashMap<String, Object>();
+    contextProps.put("getContentAssemblyService", caService);
+    contextProps.put("getManagedObjectService", moService);
+    contextProps.put("getAuthorizationService", authService);
+    contextProps.put("getIDGenerator", idGenerator);
+    this.context = FakeObjects.newBean(ExecutionContext.class, contextProps);
+  }
+
+  /**
+   * @return An execution context whose services operate on this repository.
+   */
+  public ExecutionContext getExecutionContext() {
+    return context;
+  }
+
+  /**
+   * @return An administrator.
+   */
+  public User getUser() {
+    return user;
+  }
+
+  /**
+   * Set the latency to inject into every service call.
+   *
+   * @param latency
+   * @param unit
+   */
+  public void setLatency(long latency, TimeUnit unit) {
+    this.latencyNanos = unit.toNanos(latency);
+  }
+
+  /**
+   * @return Service calls made, keyed by "Service.method", sorted.
+   */
+  public Map<String, Long> getCallCounts() {
+    Map<String, Long> counts = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> entry : callCounts.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().get());
+    }
+    return counts;
+  }
+
+  public void resetCallCounts() {
+    callCounts.clear();
+  }
+
+  /**
+   * Make every call to the given service method fail, as though the repository were unavailable.
+   *
+   * @param key The method, as "Service.method".
+   * @param failing
+   */
+  public void setFailing(String key, boolean failing) {
+    if (failing) {
+      failingCalls.add(key);
+    } else {
+      failingCalls.remove(key);
+    }
+  }
+
+  /**
+   * @return The number of containers and MOs in the repository.
+   */
+  public int size() {
+    return containers.size() + managedObjects.size();
+  }
+
+  /**
+   * Create a CA.
+   *
+   * @param name
+   * @param type
+   * @param lmd Optional LMD.
+   * @return The CA, without children.
+   */
+  public ContentAssembly createContentAssembly(String name, String type, List<MetaDataItem> lmd) {
+    return createContainer(ContentAssembly.class, ObjectType.CONTENT_ASSEMBLY, name, type, lmd);
+  }
+
+  /**
+   * Create a CANode. It must be added to a container with {@link #addChild}.
+   *
+   * @param name
+   * @param type
+   * @return The CANode, without children.
+   */
+  public ContentAssemblyNode createCANode(String name, String type) {
+    return createContainer(ContentAssemblyNode.class, ObjectType.CONTENT_ASSEMBLY_NODE, name, type,
+        null);
+  }
+
+  /**
+   * Create an MO.
+   *
+   * @param name
+   * @param lmd Optional LMD.
+   * @return The MO.
+   */
+  public ManagedObject createManagedObject(String name, List<MetaDataItem> lmd) {
+    String id = newId();
+    Map<String, Object> props = newProperties(id, name, ObjectType.MANAGED_OBJECT);
+    props.put("getTargetId", id);
+    props.put("getMetaDataItems", lmd == null ? new ArrayList<MetaDataItem>() : lmd);
+    ManagedObject mo = FakeObjects.newBean(ManagedObject.class, props);
+    managedObjects.put(id, mo);
+    return mo;
+  }
+
+  /**
+   * Append a child to a container.
+   *
+   * @param container
+   * @param child A CANode or a reference.
+   */
+  @SuppressWarnings("unchecked")
+  public void addChild(ContentAssemblyNodeContainer container, ContentAssemblyItem child) {
+    ((List<ContentAssemblyItem>) getProperties(container.getId()).get("getChildrenObjects"))
+        .add(child);
+  }
+
+  /**
+   * Create a reference to a CA, and append it to a container.
+   *
+   * @param parent
+   * @param target
+   * @return The reference.
+   */
+  public ContentAssemblyReference addReference(ContentAssemblyNodeContainer parent,
+      ContentAssembly target) {
+    ContentAssemblyReference ref = FakeObjects.newBean(ContentAssemblyReference.class,
+        newReferenceProperties(target.getId(), ObjectType.CONTENT_ASSEMBLY_REF));
+    addChild(parent, ref);
+    return ref;
+  }
+
+  /**
+   * Create a reference to an MO, and append it to a container.
+   *
+   * @param parent
+   * @param target
+   * @return The reference.
+   */
+  public ManagedObjectReference addReference(ContentAssemblyNodeContainer parent,
+      ManagedObject target) {
+    ManagedObjectReference ref = FakeObjects.newBean(ManagedObjectReference.class,
+        newReferenceProperties(target.getId(), ObjectType.MANAGED_OBJECT_REF));
+    addChild(parent, ref);
+    return ref;
+  }
+
+  private <T extends ContentAssemblyNodeContainer> T createContainer(Class<T> iface,
+      ObjectType objectType, String name, String type, List<MetaDataItem> lmd) {
+    String id = newId();
+    Map<String, Object> props = newProperties(id, name, objectType);
+    if (type != null) {
+      props.put("getType", type);
+    }
+    props.put("getMetaDataItems", lmd == null ? new ArrayList<MetaDataItem>() : lmd);
+    props.put("getChildrenObjects", new ArrayList<ContentAssemblyItem>());
+    T container = FakeObjects.newBean(iface, props);
+    containers.put(id, container);
+    return container;
+  }
+
+  private Map<String, Object> newReferenceProperties(String targetId, ObjectType objectType) {
+    String id = newId();
+    Map<String, Object> props = newProperties(id, null, objectType);
+    props.put("getTargetId", targetId);
+    return props;
+  }
+
+  private Map<String, Object> newProperties(String id, String name, ObjectType objectType) {
+    Map<String, Object> props = new ConcurrentHashMap<String, Object>();
+    props.put("getId", id);
+    if (name != null) {
+      props.put("getDisplayName", name);
+    }
+    props.put("getObjectType", objectType);
+    propertiesById.put(id, props);
+    return props;
+  }
+
+  private Map<String, Object> getProperties(String id) {
+    return propertiesById.get(id);
+  }
+
+  private String newId() {
+    return String.valueOf(nextId.getAndIncrement());
+  }
+
+  /**
+   * @return The container, or null when there isn't one with the ID, as the RSuite services do.
+   */
+  private ContentAssemblyNodeContainer getContainer(String id) {
+    return containers.get(id);
+  }
+
+  private void removeContainer(String id) throws RSuiteException {
+    if (containers.remove(id) == null) {
+      throw new RSuiteException(RSuiteException.ERROR_PARAM_INVALID,
+          "No container with ID " + id);
+    }
+  }
+
+  /**
+   * @return The MO, or null when there isn't one with the ID, as the RSuite services do.
+   */
+  private ManagedObject getManagedObject(String id) {
+    return managedObjects.get(id);
+  }
+
+  /**
+   * Like RSuite, fail to check out an MO that is already checked out, even by the same user.
+   */
+  private void checkOut(String id, String userId) throws RSuiteException {
+    if (getManagedObject(id) == null) {
+      throw new RSuiteException(RSuiteException.ERROR_PARAM_INVALID, "No MO with ID " + id);
+    }
+    String owner = checkOutOwners.putIfAbsent(id, userId);
+    if (owner != null) {
+      throw new RSuiteException(RSuiteException.ERROR_PARAM_INVALID,
+          "MO with ID " + id + " is already checked out by " + owner);
+    }
+  }
+
+  private void removeManagedObject(String id) throws RSuiteException {
+    if (managedObjects.remove(id) == null) {
+      throw new RSuiteException(RSuiteException.ERROR_PARAM_INVALID, "No MO with ID " + id);
+    }
+    checkOutOwners.remove(id);
+  }
+
+  /**
+   * Counts the call and injects the latency before handling it.
+   */
+  private abstract class ServiceHandler implements InvocationHandler {
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if ("equals".equals(name) || "hashCode".equals(name) || "toString".equals(name)) {
+        return new FakeObjects.PropertyHandler(null).invoke(proxy, method, args);
+      }
+
+      String key = method.getDeclaringClass().getSimpleName() + "." + name;
+      AtomicLong count = callCounts.get(key);
+      if (count == null) {
+        callCounts.putIfAbsent(key, new AtomicLong());
+        count = callCounts.get(key);
+      }
+      count.incrementAndGet();
+      if (failingCalls.contains(key)) {
+        throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR, "Failed to call " + key);
+      }
+
+      long latency = latencyNanos;
+      if (latency > 0) {
+        LockSupport.parkNanos(latency);
+      }
+
+      Object result = handle(name, args == null ? new Object[0] : args);
+      return result == null ? FakeObjects.defaultValue(method.getReturnType()) : result;
+    }
+
+    protected abstract Object handle(String name, Object[] args) throws RSuiteException;
+  }
+
+}
@@ -0,0 +1,131 @@
+package com.rsicms.rsuite.utils.container.benchmark.fake;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyNode;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.MetaDataItem;
+
+/**
+ * Generates a container tree in an {@link InMemoryRepository}. Each container references a number
+ * of MOs followed by a number of child containers, down to the configured depth. A fraction of the
+ * MO references may target MOs already referenced elsewhere in the tree, and a fraction of the
+ * child containers may be CANodes instead of referenced CAs.
+ * <p>
+ * Generation is deterministic for a given seed.
+ */
+public class SyntheticTreeGenerator {
+
+  /**
+   * Levels of containers below the root.
+   */
+  private int depth = 3;
+
+  private int fanOut = 4;
+
+  private int mosPerContainer = 10;
+
+  private double sharedReferenceRatio;
+
+  private double caNodeRatio;
+
+  private int lmdPerContainer = 5;
+
+  private long seed = 42;
+
+  public void setDepth(int depth) {
+    this.depth = depth;
+  }
+
+  public void setFanOut(int fanOut) {
+    this.fanOut = fanOut;
+  }
+
+  public void setMosPerContainer(int mosPerContainer) {
+    this.mosPerContainer = mosPerContainer;
+  }
+
+  /**
+   * @param sharedReferenceRatio Between zero and one: the likelihood an MO reference targets an MO
+   *        that is already referenced.
+   */
+  public void setSharedReferenceRatio(double sharedReferenceRatio) {
+    this.sharedReferenceRatio = sharedReferenceRatio;
+  }
+
+  /**
+   * @param caNodeRatio Between zero and one: the likelihood a child container is a CANode.
+   */
+  public void setCaNodeRatio(double caNodeRatio) {
+    this.caNodeRatio = caNodeRatio;
+  }
+
+  public void setLmdPerContainer(int lmdPerContainer) {
+    this.lmdPerContainer = lmdPerContainer;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Generate a tree.
+   *
+   * @param repository
+   * @return The root CA.
+   */
+  public ContentAssembly generate(InMemoryRepository repository) {
+    Random random = new Random(seed);
+    List<ManagedObject> createdMos = new ArrayList<ManagedObject>();
+    ContentAssembly root = repository.createContentAssembly("root", "root", newLmd("root"));
+    populate(repository, root, "root", 0, random, createdMos);
+    return root;
+  }
+
+  private void populate(InMemoryRepository repository, ContentAssemblyNodeContainer container,
+      String name, int level, Random random, List<ManagedObject> createdMos) {
+    for (int i = 0; i < mosPerContainer; i++) {
+      ManagedObject mo;
+      if (!createdMos.isEmpty() && random.nextDouble() < sharedReferenceRatio) {
+        mo = createdMos.get(random.nextInt(createdMos.size()));
+      } else {
+        mo = repository.createManagedObject(name + "-mo" + i, null);
+        createdMos.add(mo);
+      }
+      repository.addReference(container, mo);
+    }
+
+    if (level >= depth) {
+      return;
+    }
+    for (int i = 0; i < fanOut; i++) {
+      String childName = name + "-" + i;
+      String childType = "level" + (level + 1);
+      ContentAssemblyNodeContainer child;
+      if (random.nextDouble() < caNodeRatio) {
+        ContentAssemblyNode caNode = repository.createCANode(childName, childType);
+        repository.addChild(container, caNode);
+        child = caNode;
+      } else {
+        ContentAssembly ca =
+            repository.createContentAssembly(childName, childType, newLmd(childName));
+        repository.addReference(container, ca);
+        child = ca;
+      }
+      populate(repository, child, childName, level + 1, random, createdMos);
+    }
+  }
+
+  private List<MetaDataItem> newLmd(String name) {
+    List<MetaDataItem> lmd = new ArrayList<MetaDataItem>(lmdPerContainer);
+    for (int i = 0; i < lmdPerContainer; i++) {
+      lmd.add(new MetaDataItem("lmd" + i, name + "-value" + i));
+    }
+    return lmd;
+  }
+
+}
@@ -0,0 +1,153 @@
+package com.rsicms.rsuite.utils.container;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.content.ContentObjectPath;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.reallysi.rsuite.service.ContentAssemblyService;
+import com.rsicms.rsuite.utils.container.cache.ContainerResolutionCache;
+import com.rsicms.rsuite.utils.container.delete.ContainerDeletionOptions;
+import com.rsicms.rsuite.utils.mo.qualifiers.ManagedObjectQualifier;
+import com.rsicms.rsuite.utils.operation.result.OperationResult;
+
+/**
+ * Asynchronous counterparts of the long-running {@link ContainerUtils} methods. Each method submits
+ * the operation to the executor and returns immediately; the returned future provides the
+ * operation's result or, wrapped in an <code>ExecutionException</code>, the
+ * <code>RSuiteException</code> it threw.
+ * <p>
+ * Cancelling a future with interruption stops a traversal before its next retrieval. Once a
+ * deletion's traversal is complete and objects are being deleted, cancellation only takes effect
+ * where the deletion waits, such as for its workers or its throttle; configure a journal to be able
+ * to resume a deletion stopped that way.
+ * <p>
+ * The executor may be any <code>ExecutorService</code>, including one that creates a virtual
+ * thread per task, where the JVM provides them. The RSuite services are used from the executor's
+ * threads; the caller is responsible for only doing so where that is permitted, and for shutting
+ * down the executor.
+ */
+public class AsyncContainerUtils {
+
+  private ContainerUtils containerUtils;
+
+  private ExecutorService executorService;
+
+  /**
+   * Construct an instance.
+   *
+   * @param containerUtils The instance to perform the operations with, including its
+   *        instrumentation.
+   * @param executorService The executor to perform the operations on.
+   */
+  public AsyncContainerUtils(ContainerUtils containerUtils, ExecutorService executorService) {
+    this.containerUtils = containerUtils;
+    this.executorService = executorService;
+  }
+
+  public ContainerUtils getContainerUtils() {
+    return containerUtils;
+  }
+
+  public ExecutorService getExecutorService() {
+    return executorService;
+  }
+
+  /**
+   * DANGER: The submitted operation permanently deletes the given container and EVERYTHING it
+   * references, even if also referenced by other containers.
+   *
+   * @see ContainerUtils#deleteContainerAndReferencedContent(ExecutionContext, User,
+   *      ContentAssemblyNodeContainer, ContainerDeletionOptions, Log)
+   * @param context
+   * @param user The user to operate as. User must be an administrator.
+   * @param container
+   * @param options Deletion options. When null, the defaults are used.
+   * @param log
+   * @return The future result.
+   */
+  public Future<OperationResult> deleteContainerAndReferencedContent(
+      final ExecutionContext context, final User user, final ContentAssemblyNodeContainer container,
+      final ContainerDeletionOptions options, final Log log) {
+    return executorService.submit(new Callable<OperationResult>() {
+      @Override
+      public OperationResult call() throws Exception {
+        return containerUtils.deleteContainerAndReferencedContent(context, user, container,
+            options, log);
+      }
+    });
+  }
+
+  /**
+   * @see ContainerUtils#getFirstQualifyingReferencedManagedObject(ExecutionContext, User,
+   *      ContentAssemblyNodeContainer, ManagedObjectQualifier)
+   * @param context
+   * @param user
+   * @param container
+   * @param moQualifier
+   * @return The future first qualifying MO, or null when there isn't a qualifying MO.
+   */
+  public Future<ManagedObject> getFirstQualifyingReferencedManagedObject(
+      final ExecutionContext context, final User user, final ContentAssemblyNodeContainer container,
+      final ManagedObjectQualifier moQualifier) {
+    return executorService.submit(new Callable<ManagedObject>() {
+      @Override
+      public ManagedObject call() throws Exception {
+        return containerUtils.getFirstQualifyingReferencedManagedObject(context, user, container,
+            moQualifier);
+      }
+    });
+  }
+
+  /**
+   * @see ContainerUtils#getSiblingManagedObject(ExecutionContext, User,
+   *      ContentAssemblyNodeContainer, String, boolean)
+   * @param context
+   * @param user
+   * @param container
+   * @param childId
+   * @param previous
+   * @return The future sibling MO, or null when there isn't one.
+   */
+  public Future<ManagedObject> getSiblingManagedObject(final ExecutionContext context,
+      final User user, final ContentAssemblyNodeContainer container, final String childId,
+      final boolean previous) {
+    return executorService.submit(new Callable<ManagedObject>() {
+      @Override
+      public ManagedObject call() throws Exception {
+        return containerUtils.getSiblingManagedObject(context, user, container, childId,
+            previous);
+      }
+    });
+  }
+
+  /**
+   * @see ContainerUtils#getContentAssemblyNodeContainer(ContentAssemblyService, User,
+   *      ContentObjectPath, String, ContainerResolutionCache)
+   * @param caService
+   * @param user
+   * @param contentObjectPath
+   * @param containerType
+   * @param cache Optional container cache.
+   * @return The future first qualifying container, or null when there isn't one.
+   */
+  public Future<ContentAssemblyNodeContainer> getContentAssemblyNodeContainer(
+      final ContentAssemblyService caService, final User user,
+      final ContentObjectPath contentObjectPath, final String containerType,
+      final ContainerResolutionCache cache) {
+    return executorService.submit(new Callable<ContentAssemblyNodeContainer>() {
+      @Override
+      public ContentAssemblyNodeContainer call() throws Exception {
+        return containerUtils.getContentAssemblyNodeContainer(caService, user, contentObjectPath,
+            containerType, cache);
+      }
+    });
+  }
+
+}
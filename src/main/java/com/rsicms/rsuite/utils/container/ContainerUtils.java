@@ -1,6 +1,20 @@
 package com.rsicms.rsuite.utils.container;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -9,18 +23,46 @@ import org.apache.commons.logging.LogFactory;
 import com.reallysi.rsuite.api.ContentAssembly;
 import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
 import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.ManagedObjectReference;
 import com.reallysi.rsuite.api.MetaDataItem;
 import com.reallysi.rsuite.api.ObjectType;
 import com.reallysi.rsuite.api.RSuiteException;
 import com.reallysi.rsuite.api.User;
 import com.reallysi.rsuite.api.content.ContentDisplayObject;
 import com.reallysi.rsuite.api.content.ContentObjectPath;
-import com.reallysi.rsuite.api.control.ObjectDestroyOptions;
 import com.reallysi.rsuite.api.extensions.ExecutionContext;
 import com.reallysi.rsuite.service.ContentAssemblyService;
 import com.reallysi.rsuite.service.ManagedObjectService;
+import com.rsicms.rsuite.utils.container.cache.ContainerResolutionCache;
+import com.rsicms.rsuite.utils.container.cache.ReverseReferenceIndex;
+import com.rsicms.rsuite.utils.container.delete.ContainerDeletionEngine;
+import com.rsicms.rsuite.utils.container.delete.ContainerDeletionOptions;
+import com.rsicms.rsuite.utils.container.delete.DeletionJournal;
+import com.rsicms.rsuite.utils.container.delete.DeletionPlan;
+import com.rsicms.rsuite.utils.container.delete.DeletionPlanStatistics;
+import com.rsicms.rsuite.utils.container.delete.DeletionPlanner;
+import com.rsicms.rsuite.utils.container.delete.DeletionThrottle;
+import com.rsicms.rsuite.utils.container.export.ContainerManifestWriter;
+import com.rsicms.rsuite.utils.container.metrics.ContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.NoOpContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.OperationPhase;
+import com.rsicms.rsuite.utils.container.metrics.RecordingContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.RepositoryCall;
+import com.rsicms.rsuite.utils.container.snapshot.ContainerTreeDiff;
+import com.rsicms.rsuite.utils.container.snapshot.ContainerTreeSnapshot;
+import com.rsicms.rsuite.utils.container.snapshot.SnapshotContainerVisitor;
+import com.rsicms.rsuite.utils.container.traversal.ManagedObjectCollector;
+import com.rsicms.rsuite.utils.container.traversal.ParallelReferencedContentWalker;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedContentFetcher;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedContentIterator;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedContentTraversalException;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+import com.rsicms.rsuite.utils.container.traversal.ServiceReferencedContentFetcher;
+import com.rsicms.rsuite.utils.container.traversal.TraversalOptions;
+import com.rsicms.rsuite.utils.container.visitor.ChildrenInfoContainerVisitor;
+import com.rsicms.rsuite.utils.container.visitor.FirstQualifyingManagedObjectContainerVisitor;
 import com.rsicms.rsuite.utils.container.visitor.ListReferencedContentContainerVisitor;
-import com.rsicms.rsuite.utils.mo.MOUtils;
+import com.rsicms.rsuite.utils.container.visitor.ReferencedContent;
 import com.rsicms.rsuite.utils.mo.qualifiers.ManagedObjectQualifier;
 import com.rsicms.rsuite.utils.operation.result.BaseOperationResult;
 import com.rsicms.rsuite.utils.operation.result.OperationResult;
@@ -32,6 +74,118 @@ public class ContainerUtils {
 
   private final static Log log = LogFactory.getLog(ContainerUtils.class);
 
+  private ContainerInstrumentation instrumentation = NoOpContainerInstrumentation.INSTANCE;
+
+  private ReverseReferenceIndex reverseReferenceIndex;
+
+  private ContainerResolutionCache containerResolutionCache;
+
+  private ContainerUtilsSession session;
+
+  /**
+   * @return The instrumentation this instance reports measurements to.
+   */
+  public ContainerInstrumentation getInstrumentation() {
+    return instrumentation;
+  }
+
+  /**
+   * Report the objects visited, the latency of the repository calls made and, for deletions, the
+   * duration of each phase, to the given instrumentation. By default, measurements are discarded.
+   * 
+   * @param instrumentation Must be safe for use by multiple threads when parallel traversals or
+   *        deletions are requested.
+   */
+  public void setInstrumentation(ContainerInstrumentation instrumentation) {
+    this.instrumentation =
+        instrumentation == null ? NoOpContainerInstrumentation.INSTANCE : instrumentation;
+  }
+
+  /**
+   * @return The reverse reference index this instance populates, or null.
+   */
+  public ReverseReferenceIndex getReverseReferenceIndex() {
+    return reverseReferenceIndex;
+  }
+
+  /**
+   * Index the references of the containers this instance's traversals visit, and invalidate the
+   * objects its deletions delete. Deletions also warn of MOs the index knows to be referenced by
+   * containers not being deleted. By default, there is no index.
+   * 
+   * @param reverseReferenceIndex Optional.
+   */
+  public void setReverseReferenceIndex(ReverseReferenceIndex reverseReferenceIndex) {
+    this.reverseReferenceIndex = reverseReferenceIndex;
+  }
+
+  /**
+   * @return The container resolution cache this instance uses and invalidates, or null.
+   */
+  public ContainerResolutionCache getContainerResolutionCache() {
+    return containerResolutionCache;
+  }
+
+  /**
+   * Resolve the containers of content object paths through the given cache when no cache is
+   * passed to the method, and invalidate the containers this instance renames or deletes in it.
+   * Give this instance any cache passed to its methods, so that its renames and deletions do not
+   * leave stale containers in the cache. By default, there is no cache.
+   * 
+   * @param containerResolutionCache Optional.
+   */
+  public void setContainerResolutionCache(ContainerResolutionCache containerResolutionCache) {
+    this.containerResolutionCache = containerResolutionCache;
+  }
+
+  /**
+   * Open a session to memoize the objects retrieved while handling one request, reporting its
+   * retrievals to this instance's instrumentation.
+   * 
+   * @param context
+   * @param user
+   * @return The session, for {@link #withSession(ContainerUtilsSession)}.
+   */
+  public ContainerUtilsSession openSession(ExecutionContext context, User user) {
+    return new ContainerUtilsSession(context, user, instrumentation);
+  }
+
+  /**
+   * Get an instance configured as this one that retrieves containers and MOs through the given
+   * session, whenever called with the session's context, or CA service, and user.
+   * 
+   * @param session
+   * @return The new instance.
+   */
+  public ContainerUtils withSession(ContainerUtilsSession session) {
+    ContainerUtils containerUtils = new ContainerUtils();
+    containerUtils.instrumentation = instrumentation;
+    containerUtils.reverseReferenceIndex = reverseReferenceIndex;
+    containerUtils.containerResolutionCache = containerResolutionCache;
+    containerUtils.session = session;
+    return containerUtils;
+  }
+
+  /**
+   * @return The session this instance retrieves objects through, or null.
+   */
+  public ContainerUtilsSession getSession() {
+    return session;
+  }
+
+  /**
+   * @return The session, when it serves the given context and user; otherwise, null.
+   */
+  private ContainerUtilsSession getSession(ExecutionContext context, User user) {
+    return session != null && session.isFor(context, user) ? session : null;
+  }
+
+  private ReferencedContentFetcher getFetcher(ExecutionContext context, User user) {
+    ContainerUtilsSession applicableSession = getSession(context, user);
+    return applicableSession != null ? applicableSession
+        : new ServiceReferencedContentFetcher(context, user);
+  }
+
   /**
    * Get an LMD value by LMD name from the specified container. Should there be multiple LMD values
    * with the same LMD name, the first one, as decided by the RSuite API, will be returned.
@@ -43,17 +197,75 @@ public class ContainerUtils {
    */
   public String getLayeredMetadataValue(ContentAssemblyNodeContainer container, String lmdName)
       throws RSuiteException {
-    if (container != null && container.getMetaDataItems() != null
-        && StringUtils.isNotBlank(lmdName)) {
-      for (MetaDataItem item : container.getMetaDataItems()) {
-        if (lmdName.equalsIgnoreCase(item.getName())) {
-          return item.getValue();
+    if (container != null && StringUtils.isNotBlank(lmdName)) {
+      List<MetaDataItem> items = container.getMetaDataItems();
+      if (items != null) {
+        for (MetaDataItem item : items) {
+          if (lmdName.equalsIgnoreCase(item.getName())) {
+            return item.getValue();
+          }
         }
       }
     }
     return null;
   }
 
+  /**
+   * Get the values of several LMD from the specified container, with a single pass over its
+   * metadata. LMD names are matched without regard to case.
+   * 
+   * @param container
+   * @param lmdNames
+   * @return All values of each requested LMD that is set on the container, keyed by the requested
+   *         name. Requested LMD that are not set are not included. Values are in the order provided
+   *         by the RSuite API.
+   * @throws RSuiteException
+   */
+  public Map<String, List<String>> getLayeredMetadataValues(ContentAssemblyNodeContainer container,
+      Collection<String> lmdNames) throws RSuiteException {
+    Map<String, List<String>> valuesByName = new LinkedHashMap<String, List<String>>();
+    if (container == null || lmdNames == null || lmdNames.isEmpty()) {
+      return valuesByName;
+    }
+
+    TreeMap<String, String> requestedNames =
+        new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    for (String lmdName : lmdNames) {
+      if (StringUtils.isNotBlank(lmdName) && !requestedNames.containsKey(lmdName)) {
+        requestedNames.put(lmdName, lmdName);
+      }
+    }
+
+    List<MetaDataItem> items = container.getMetaDataItems();
+    if (items != null) {
+      for (MetaDataItem item : items) {
+        String requestedName = item.getName() == null ? null : requestedNames.get(item.getName());
+        if (requestedName != null) {
+          List<String> values = valuesByName.get(requestedName);
+          if (values == null) {
+            values = new ArrayList<String>(1);
+            valuesByName.put(requestedName, values);
+          }
+          values.add(item.getValue());
+        }
+      }
+    }
+    return valuesByName;
+  }
+
+  /**
+   * Get an index of the specified container's LMD, for callers needing several LMD values from the
+   * same container.
+   * 
+   * @param container
+   * @return The index. Empty when the container is null.
+   * @throws RSuiteException
+   */
+  public LayeredMetadataIndex getLayeredMetadataIndex(ContentAssemblyNodeContainer container)
+      throws RSuiteException {
+    return new LayeredMetadataIndex(container);
+  }
+
   /**
    * DANGER: This method permanently deletes the given container and EVERYTHING it references, even
    * if also referenced by other containers.
@@ -73,10 +285,43 @@ public class ContainerUtils {
    */
   public OperationResult deleteContainerAndReferencedContent(ExecutionContext context, User user,
       ContentAssemblyNodeContainer container, Log log) throws RSuiteException {
+    return deleteContainerAndReferencedContent(context, user, container,
+        new ContainerDeletionOptions(), log);
+  }
+
+  /**
+   * DANGER: This method permanently deletes the given container and EVERYTHING it references, even
+   * if also referenced by other containers.
+   * <p>
+   * Same as {@link #deleteContainerAndReferencedContent(ExecutionContext, User,
+   * ContentAssemblyNodeContainer, Log)} but accepts deletion options. The phases are always
+   * performed in order: the starting container, the CAs, then the MOs. When the options specify
+   * more than one worker, the deletions within the CA and MO phases are performed concurrently, and
+   * containers that could not be deleted are reported as failures instead of being thrown. In that
+   * case, the MO phase is skipped as the MOs may still be referenced. The options may also call for
+   * the container to be traversed in parallel.
+   * <p>
+   * When the options specify a journal file, the deletion plan is written to it before any object
+   * is deleted, and each object is recorded in it as it is deleted. Should the operation not
+   * complete, it may be continued by {@link #resumeContainerDeletion(ExecutionContext, User, File,
+   * ContainerDeletionOptions, Log)}.
+   * 
+   * @param context
+   * @param user The user to operate as. User must be an administrator.
+   * @param container The container to permanently deleted, as well as all content it references.
+   * @param options Deletion options. When null, the defaults are used.
+   * @param log
+   * @throws RSuiteException Thrown if unable to complete the operation successfully. A possible
+   *         outcome is that some of the objects were destroyed, but not all.
+   */
+  public OperationResult deleteContainerAndReferencedContent(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container, ContainerDeletionOptions options, Log log)
+      throws RSuiteException {
 
     OperationResult result = new BaseOperationResult(context.getIDGenerator().allocateId(),
         "delete", log == null ? ContainerUtils.log : log);
     result.markStartOfOperation();
+    long operationStart = System.nanoTime();
 
     result.addInfoMessage(ContainerUtilsMessageProperties.get(
         "info.received.request.to.delete.container.and.its.contents", user.getUserId(),
@@ -90,18 +335,380 @@ public class ContainerUtils {
     }
 
     // Visit the container
-    ListReferencedContentContainerVisitor visitor =
-        new ListReferencedContentContainerVisitor(context, user, false);
-    visitor.visitContentAssemblyNodeContainer(container);
+    long phaseStart = System.nanoTime();
+    ReferencedContent visitor = listReferencedContent(context, user, container,
+        options == null ? 1 : options.getTraversalParallelism());
+    DeletionPlan plan = DeletionPlan.fromReferencedContent(visitor);
+    completePhase(OperationPhase.TRAVERSAL, phaseStart, plan.size(), result);
 
-    ManagedObjectService moService = context.getManagedObjectService();
-    ObjectDestroyOptions options = new ObjectDestroyOptions();
+    DeletionJournal journal = null;
+    if (options != null && options.getJournalFile() != null) {
+      journal = DeletionJournal.create(options.getJournalFile(), plan);
+      plan = journal.getPlan();
+    }
+    Set<String> deletedIds;
+    try {
+      deletedIds =
+          executeDeletionPlan(context, user, plan, journal, false, options, log, result);
+    } finally {
+      if (journal != null) {
+        journal.close();
+      }
+    }
+
+    // Only report the objects actually destroyed.
+    List<ContentAssembly> destroyedCas = new ArrayList<ContentAssembly>();
+    for (ContentAssembly ca : visitor.getReferencedContentAssemblies()) {
+      if (deletedIds.contains(ca.getId())) {
+        destroyedCas.add(ca);
+      }
+    }
+    List<ManagedObject> destroyedMos = new ArrayList<ManagedObject>();
+    for (ManagedObject mo : visitor.getReferencedManagedObjects()) {
+      if (deletedIds.contains(mo.getId())) {
+        destroyedMos.add(mo);
+      }
+    }
+    result.setDestroyedContentAssemblies(destroyedCas);
+    result.setDestroyedManagedObjects(destroyedMos);
+    result.markEndOfOperation();
+    result.addInfoMessage(ContainerUtilsMessageProperties.get(
+        "info.processed.request.to.delete.container.and.its.contents",
+        container.getDisplayName(), container.getId(), destroyedCas.size(), destroyedMos.size(),
+        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - operationStart)));
+    return result;
+  }
+
+  /**
+   * DANGER: This method permanently deletes the given containers and EVERYTHING they reference,
+   * even if also referenced by other containers.
+   * <p>
+   * The bulk form of {@link #deleteContainerAndReferencedContent(ExecutionContext, User,
+   * ContentAssemblyNodeContainer, ContainerDeletionOptions, Log)}: the user is authorized once, all
+   * of the containers are traversed in one pass, and the combined plan is executed, producing one
+   * result. Content shared by several of the containers is retrieved and deleted once. A container
+   * referenced by an earlier one in the list is deleted as one of the CAs. The result's messages
+   * include a breakdown by container.
+   * <p>
+   * The traversal is performed on the calling thread, regardless of the traversal parallelism
+   * option. As the whole plan is executed at once, the same journal file resumes it.
+   * 
+   * @param context
+   * @param user The user to operate as. User must be an administrator.
+   * @param containers The containers to permanently delete, as well as all content they reference.
+   * @param options Deletion options. When null, the defaults are used.
+   * @param log
+   * @return The result. The destroyed CAs and MOs are not set, as the plan only identifies them.
+   * @throws RSuiteException Thrown if unable to complete the operation successfully. A possible
+   *         outcome is that some of the objects were destroyed, but not all.
+   */
+  public OperationResult deleteContainersAndReferencedContent(ExecutionContext context, User user,
+      List<? extends ContentAssemblyNodeContainer> containers, ContainerDeletionOptions options,
+      Log log) throws RSuiteException {
+    OperationResult result = new BaseOperationResult(context.getIDGenerator().allocateId(),
+        "delete", log == null ? ContainerUtils.log : log);
+    result.markStartOfOperation();
+    long operationStart = System.nanoTime();
+
+    result.addInfoMessage(ContainerUtilsMessageProperties.get(
+        "info.received.request.to.delete.containers.and.their.contents", user.getUserId(),
+        containers.size()));
+
+    // Require user is an administrator.
+    if (!context.getAuthorizationService().isAdministrator(user)) {
+      result.addFailure(new RSuiteException(RSuiteException.ERROR_PERMISSION_DENIED,
+          ContainerUtilsMessageProperties.get("security.error.operation.restricted.to.admins")));
+      return result;
+    }
+
+    // Visit every container
+    long phaseStart = System.nanoTime();
+    DeletionPlan plan = new DeletionPlanner(context, user, options,
+        instrumentation instanceof RecordingContainerInstrumentation
+            ? (RecordingContainerInstrumentation) instrumentation : null).plan(containers);
+    completePhase(OperationPhase.TRAVERSAL, phaseStart, plan.size(), result);
+    for (DeletionPlanStatistics.StartingContainerStatistics stats : plan.getStatistics()
+        .getStartingContainerStatistics()) {
+      result.addInfoMessage(stats.isReachedFromEarlierStartingContainer()
+          ? ContainerUtilsMessageProperties.get("info.container.reached.from.earlier.container",
+              stats.getDisplayName(), stats.getId())
+          : ContainerUtilsMessageProperties.get("info.container.deletion.breakdown",
+              stats.getDisplayName(), stats.getId(), stats.getContentAssemblyCount(),
+              stats.getManagedObjectCount()));
+    }
+
+    DeletionJournal journal = null;
+    if (options != null && options.getJournalFile() != null) {
+      journal = DeletionJournal.create(options.getJournalFile(), plan);
+      plan = journal.getPlan();
+    }
+    Set<String> deletedIds;
+    try {
+      deletedIds =
+          executeDeletionPlan(context, user, plan, journal, false, options, log, result);
+    } finally {
+      if (journal != null) {
+        journal.close();
+      }
+    }
+
+    result.markEndOfOperation();
+    result.addInfoMessage(ContainerUtilsMessageProperties.get(
+        "info.processed.request.to.delete.containers.and.their.contents", containers.size(),
+        countDeleted(plan.getStartingContainers(), deletedIds)
+            + countDeleted(plan.getContentAssemblies(), deletedIds),
+        countDeleted(plan.getManagedObjects(), deletedIds),
+        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - operationStart)));
+    return result;
+  }
+
+  /**
+   * DANGER: This method permanently deletes the objects remaining in the plan of a deletion that
+   * was started by {@link #deleteContainerAndReferencedContent(ExecutionContext, User,
+   * ContentAssemblyNodeContainer, ContainerDeletionOptions, Log)} with a journal file, but did not
+   * complete.
+   * <p>
+   * The repository is not traversed again: the objects the journal does not record as deleted are
+   * deleted, in the plan's order, and recorded in the same journal. An object that cannot be
+   * deleted as it no longer exists, such as one deleted after the last checkpoint was written, is
+   * counted as deleted. Objects referenced since the plan was written are not deleted.
+   * 
+   * @param context
+   * @param user The user to operate as. User must be an administrator.
+   * @param journalFile
+   * @param options Deletion options. When null, the defaults are used. The journal file option is
+   *        ignored.
+   * @param log
+   * @return The result. The destroyed CAs and MOs are not set, as they are not retrieved.
+   * @throws RSuiteException Thrown if the journal cannot be read or written, or if unable to
+   *         complete the operation successfully.
+   */
+  public OperationResult resumeContainerDeletion(ExecutionContext context, User user,
+      File journalFile, ContainerDeletionOptions options, Log log) throws RSuiteException {
+    OperationResult result = new BaseOperationResult(context.getIDGenerator().allocateId(),
+        "delete", log == null ? ContainerUtils.log : log);
+    result.markStartOfOperation();
+    long operationStart = System.nanoTime();
+
+    result.addInfoMessage(ContainerUtilsMessageProperties.get(
+        "info.received.request.to.resume.container.deletion", user.getUserId(),
+        journalFile.getPath()));
+
+    // Require user is an administrator.
+    if (!context.getAuthorizationService().isAdministrator(user)) {
+      result.addFailure(new RSuiteException(RSuiteException.ERROR_PERMISSION_DENIED,
+          ContainerUtilsMessageProperties.get("security.error.operation.restricted.to.admins")));
+      return result;
+    }
+
+    DeletionJournal journal = DeletionJournal.open(journalFile);
+    DeletionPlan plan;
+    Set<String> deletedIds;
+    try {
+      plan = journal.getRemainingPlan();
+      result.addInfoMessage(ContainerUtilsMessageProperties.get("info.resuming.container.deletion",
+          journal.getDeletedCount(), journal.getPlan().size(), plan.size()));
+      deletedIds = executeDeletionPlan(context, user, plan, journal, true, options, log, result);
+    } finally {
+      journal.close();
+    }
+
+    result.markEndOfOperation();
+    result.addInfoMessage(ContainerUtilsMessageProperties.get(
+        "info.processed.request.to.resume.container.deletion",
+        countDeleted(plan.getStartingContainers(), deletedIds)
+            + countDeleted(plan.getContentAssemblies(), deletedIds),
+        countDeleted(plan.getManagedObjects(), deletedIds),
+        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - operationStart)));
+    return result;
+  }
+
+  /**
+   * Plan the deletion of the given container and everything it references, without deleting
+   * anything. The plan's statistics describe the content and estimate how long the deletion will
+   * take; the plan may then be passed to {@link #executeContainerDeletionPlan(ExecutionContext,
+   * User, DeletionPlan, ContainerDeletionOptions, Log)}, which does not traverse the container
+   * again.
+   * <p>
+   * The estimate is based on the latencies recorded by this instance's instrumentation when it is
+   * a {@link RecordingContainerInstrumentation}, to which the planning traversal also reports.
+   * Otherwise, it is based on the planning traversal alone.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @param options The options the plan is to be executed with. When null, the defaults are used.
+   * @return The plan.
+   * @throws RSuiteException Thrown if an object could not be retrieved.
+   */
+  public DeletionPlan planContainerDeletion(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container, ContainerDeletionOptions options)
+      throws RSuiteException {
+    return new DeletionPlanner(context, user, options,
+        instrumentation instanceof RecordingContainerInstrumentation
+            ? (RecordingContainerInstrumentation) instrumentation : null).plan(container);
+  }
+
+  /**
+   * DANGER: This method permanently deletes every object in the given plan, even if also
+   * referenced by containers outside of it.
+   * <p>
+   * Same as {@link #deleteContainerAndReferencedContent(ExecutionContext, User,
+   * ContentAssemblyNodeContainer, ContainerDeletionOptions, Log)} but deletes the objects of a
+   * plan produced by {@link #planContainerDeletion(ExecutionContext, User,
+   * ContentAssemblyNodeContainer, ContainerDeletionOptions)} instead of traversing the container.
+   * Objects referenced since the plan was produced are not deleted.
+   * 
+   * @param context
+   * @param user The user to operate as. User must be an administrator.
+   * @param plan
+   * @param options Deletion options. When null, the defaults are used. The traversal parallelism
+   *        option is ignored.
+   * @param log
+   * @return The result. The destroyed CAs and MOs are not set, as they are not retrieved.
+   * @throws RSuiteException Thrown if unable to complete the operation successfully. A possible
+   *         outcome is that some of the objects were destroyed, but not all.
+   */
+  public OperationResult executeContainerDeletionPlan(ExecutionContext context, User user,
+      DeletionPlan plan, ContainerDeletionOptions options, Log log) throws RSuiteException {
+    OperationResult result = new BaseOperationResult(context.getIDGenerator().allocateId(),
+        "delete", log == null ? ContainerUtils.log : log);
+    result.markStartOfOperation();
+    long operationStart = System.nanoTime();
+
+    result.addInfoMessage(ContainerUtilsMessageProperties.get(
+        "info.received.request.to.execute.container.deletion.plan", user.getUserId(),
+        plan.size()));
+
+    // Require user is an administrator.
+    if (!context.getAuthorizationService().isAdministrator(user)) {
+      result.addFailure(new RSuiteException(RSuiteException.ERROR_PERMISSION_DENIED,
+          ContainerUtilsMessageProperties.get("security.error.operation.restricted.to.admins")));
+      return result;
+    }
+
+    DeletionJournal journal = null;
+    if (options != null && options.getJournalFile() != null) {
+      journal = DeletionJournal.create(options.getJournalFile(), plan);
+      plan = journal.getPlan();
+    }
+    Set<String> deletedIds;
+    try {
+      deletedIds =
+          executeDeletionPlan(context, user, plan, journal, false, options, log, result);
+    } finally {
+      if (journal != null) {
+        journal.close();
+      }
+    }
+
+    result.markEndOfOperation();
+    result.addInfoMessage(ContainerUtilsMessageProperties.get(
+        "info.processed.request.to.execute.container.deletion.plan",
+        countDeleted(plan.getStartingContainers(), deletedIds)
+            + countDeleted(plan.getContentAssemblies(), deletedIds),
+        countDeleted(plan.getManagedObjects(), deletedIds),
+        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - operationStart)));
+    return result;
+  }
+
+  /**
+   * Delete the objects of a plan, in phases: the starting containers, the CAs, then the MOs. The
+   * reverse reference index, container resolution cache and session, if any, are invalidated for
+   * each of them, deleted or not.
+   * 
+   * @param context
+   * @param user
+   * @param plan
+   * @param journal Optional journal to record each deleted object in.
+   * @param resuming True if the plan is the remainder of an interrupted deletion.
+   * @param options Optional.
+   * @param log Optional.
+   * @param result
+   * @return The IDs of the plan entries deleted.
+   * @throws RSuiteException
+   */
+  private Set<String> executeDeletionPlan(ExecutionContext context, User user, DeletionPlan plan,
+      DeletionJournal journal, boolean resuming, ContainerDeletionOptions options, Log log,
+      OperationResult result) throws RSuiteException {
+    ContainerDeletionEngine engine = new ContainerDeletionEngine(context, user, options);
+    engine.setInstrumentation(instrumentation);
+    engine.setLog(log == null ? ContainerUtils.log : log);
+    engine.setJournal(journal);
+    engine.setResuming(resuming);
+    try {
+      deletePlannedObjects(plan, engine, journal, options, result);
+      if (engine.getAlreadyDeletedCount() > 0) {
+        result.addInfoMessage(ContainerUtilsMessageProperties.get(
+            "info.resumed.objects.already.deleted", engine.getAlreadyDeletedCount()));
+      }
+    } finally {
+      for (DeletionPlan.Entry entry : plan.getStartingContainers()) {
+        invalidate(entry.getId());
+      }
+      for (DeletionPlan.Entry entry : plan.getContentAssemblies()) {
+        invalidate(entry.getId());
+      }
+      for (DeletionPlan.Entry entry : plan.getManagedObjects()) {
+        invalidate(entry.getId());
+      }
+    }
+    return engine.getDeletedIds();
+  }
+
+  /**
+   * @return The number of the given plan entries that were deleted.
+   */
+  private static int countDeleted(List<DeletionPlan.Entry> entries, Set<String> deletedIds) {
+    int cnt = 0;
+    for (DeletionPlan.Entry entry : entries) {
+      if (deletedIds.contains(entry.getId())) {
+        cnt++;
+      }
+    }
+    return cnt;
+  }
+
+  /**
+   * Invalidate a deleted or modified object in the reverse reference index, container resolution
+   * cache and session, if any.
+   */
+  private void invalidate(String id) {
+    if (reverseReferenceIndex != null) {
+      reverseReferenceIndex.invalidate(id);
+    }
+    if (containerResolutionCache != null) {
+      containerResolutionCache.invalidate(id);
+    }
+    if (session != null) {
+      session.invalidate(id);
+    }
+  }
+
+  private void deletePlannedObjects(DeletionPlan plan, ContainerDeletionEngine engine,
+      DeletionJournal journal, ContainerDeletionOptions options, OperationResult result)
+      throws RSuiteException {
+    /*
+     * A throttle may outlive the operation, so its counters are reported relative to their values
+     * now. A throttle shared by concurrent operations counts their waits too.
+     */
+    DeletionThrottle throttle = options == null ? null : options.getThrottle();
+    long throttleWaitedNanosBefore = throttle == null ? 0 : throttle.getWaitedNanos();
+    int throttleBackoffCntBefore = throttle == null ? 0 : throttle.getBackoffCount();
 
-    // 1st: delete the starting container.
-    if (visitor.getStartingContainer() != null) {
-      result.addInfoMessage(ContainerUtilsMessageProperties.get("info.deleting.object",
-          visitor.getStartingContainer().getDisplayName(), visitor.getStartingContainer().getId()));
-      deleteContainer(context, user, visitor.getStartingContainer(), log);
+    // 1st: delete the starting containers.
+    long phaseStart;
+    if (!plan.getStartingContainers().isEmpty()) {
+      phaseStart = System.nanoTime();
+      for (DeletionPlan.Entry start : plan.getStartingContainers()) {
+        result.addInfoMessage(start.getDisplayName() == null
+            ? ContainerUtilsMessageProperties.get("info.deleting.object.by.id", start.getId())
+            : ContainerUtilsMessageProperties.get("info.deleting.object", start.getDisplayName(),
+                start.getId()));
+        engine.deletePlannedContainer(start);
+      }
+      completePhase(OperationPhase.STARTING_CONTAINERS, phaseStart,
+          plan.getStartingContainers().size(), result);
     }
 
     /*
@@ -109,35 +716,75 @@ public class ContainerUtils {
      * container are no longer referenced by it. The idea is that those sooner in the list may
      * reference those later in the list (and not the other way around).
      */
-    if (visitor.getReferencedContentAssemblies() != null) {
-      for (ContentAssembly ca : visitor.getReferencedContentAssemblies()) {
-        result.addInfoMessage(ContainerUtilsMessageProperties.get("info.deleting.object",
-            ca.getDisplayName(), ca.getId()));
-        deleteContainer(context, user, ca, log);
-      }
-    }
+    phaseStart = System.nanoTime();
+    int containerFailureCnt = engine.deletePlannedContainers(plan.getContentAssemblies(), result);
+    completePhase(OperationPhase.CONTENT_ASSEMBLIES, phaseStart,
+        plan.getContentAssemblies().size(), result);
 
     /*
      * 3rd: delete the MOs, which are no longer referenced by the containers deleted above.
      */
-    if (visitor.getReferencedManagedObjects() != null) {
-      MOUtils moUtils = new MOUtils();
-      for (ManagedObject mo : visitor.getReferencedManagedObjects()) {
-        result.addInfoMessage(ContainerUtilsMessageProperties.get("info.deleting.object",
-            mo.getDisplayName(), mo.getId()));
-        try {
-          moUtils.checkout(context, user, mo.getId());
-          moService.destroy(user, mo.getId(), options);
-        } catch (RSuiteException e) {
-          result.addWarning(e);
-        }
+    int moWarningCnt = 0;
+    if (containerFailureCnt == 0) {
+      warnOfSharedManagedObjects(plan, result);
+      phaseStart = System.nanoTime();
+      moWarningCnt = engine.deletePlannedManagedObjects(plan.getManagedObjects(), result);
+      completePhase(OperationPhase.MANAGED_OBJECTS, phaseStart, plan.getManagedObjects().size(),
+          result);
+    } else {
+      result.addWarning(new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get(
+              "warn.skipped.managed.objects.after.container.failures",
+              plan.getManagedObjects().size(), containerFailureCnt)));
+    }
+
+    if (journal != null && containerFailureCnt == 0 && moWarningCnt == 0) {
+      journal.recordCompleted();
+    }
+
+    if (throttle != null) {
+      result.addInfoMessage(ContainerUtilsMessageProperties.get("info.deletion.throttled",
+          TimeUnit.NANOSECONDS.toMillis(throttle.getWaitedNanos() - throttleWaitedNanosBefore),
+          throttle.getBackoffCount() - throttleBackoffCntBefore));
+    }
+  }
+
+  /**
+   * Warn of the planned MOs the reverse reference index knows to be referenced by containers not
+   * being deleted.
+   */
+  private void warnOfSharedManagedObjects(DeletionPlan plan, OperationResult result) {
+    if (reverseReferenceIndex == null) {
+      return;
+    }
+    Set<String> containerIds = new HashSet<String>();
+    for (DeletionPlan.Entry entry : plan.getStartingContainers()) {
+      containerIds.add(entry.getId());
+    }
+    for (DeletionPlan.Entry entry : plan.getContentAssemblies()) {
+      containerIds.add(entry.getId());
+    }
+    int sharedCnt = 0;
+    for (DeletionPlan.Entry entry : plan.getManagedObjects()) {
+      if (reverseReferenceIndex.isReferencedOutside(entry.getId(), containerIds)) {
+        sharedCnt++;
       }
     }
+    if (sharedCnt > 0) {
+      result.addWarning(new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("warn.deleting.shared.managed.objects", sharedCnt)));
+    }
+  }
 
-    result.setDestroyedContentAssemblies(visitor.getReferencedContentAssemblies());
-    result.setDestroyedManagedObjects(visitor.getReferencedManagedObjects());
-    result.markEndOfOperation();
-    return result;
+  /**
+   * Report a completed phase to the instrumentation and the operation result.
+   */
+  private void completePhase(OperationPhase phase, long startNanos, int objectCount,
+      OperationResult result) throws RSuiteException {
+    long elapsedNanos = System.nanoTime() - startNanos;
+    instrumentation.phaseCompleted(phase, elapsedNanos, objectCount);
+    result.addInfoMessage(ContainerUtilsMessageProperties.get("info.operation.phase",
+        phase.getLabel(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), objectCount));
   }
 
   /**
@@ -153,11 +800,10 @@ public class ContainerUtils {
    */
   public void deleteContainer(ExecutionContext context, User user,
       ContentAssemblyNodeContainer container, Log log) throws RSuiteException {
-    if (container instanceof ContentAssembly) {
-      context.getContentAssemblyService().removeContentAssembly(user, container.getId());
-    } else {
-      context.getContentAssemblyService().deleteCANode(user, container.getId());
-    }
+    ContainerDeletionEngine engine = new ContainerDeletionEngine(context, user, null);
+    engine.setInstrumentation(instrumentation);
+    engine.deleteContainer(container);
+    invalidate(container.getId());
   }
 
   /**
@@ -177,16 +823,68 @@ public class ContainerUtils {
     // the name is different.
     if (container != null && StringUtils.isNotBlank(name)
         && !name.equals(container.getDisplayName())) {
-      if (container instanceof ContentAssembly) {
-        context.getContentAssemblyService().renameContentAssembly(user, container.getId(), name);
-      } else {
-        context.getContentAssemblyService().renameCANode(user, container.getId(), name);
+      long start = System.nanoTime();
+      try {
+        if (container instanceof ContentAssembly) {
+          context.getContentAssemblyService().renameContentAssembly(user, container.getId(),
+              name);
+        } else {
+          context.getContentAssemblyService().renameCANode(user, container.getId(), name);
+        }
+      } finally {
+        instrumentation.repositoryCallCompleted(RepositoryCall.RENAME, System.nanoTime() - start);
+        if (containerResolutionCache != null) {
+          containerResolutionCache.invalidate(container.getId());
+        }
+        if (session != null) {
+          session.invalidate(container.getId());
+        }
       }
       return true;
     }
     return false;
   }
 
+  /**
+   * Rename several CAs and CANodes, continuing past any that cannot be renamed. Each container is
+   * renamed as by {@link #renameContainer(ExecutionContext, User, ContentAssemblyNodeContainer,
+   * String)}.
+   * 
+   * @param context
+   * @param user
+   * @param newNamesByContainer The new name for each container, renamed in the map's iteration
+   *        order.
+   * @param log
+   * @return One result for all of the containers. Each container that could not be renamed is
+   *         reported as a failure.
+   * @throws RSuiteException Thrown if unable to start the operation.
+   */
+  public OperationResult renameContainers(ExecutionContext context, User user,
+      Map<? extends ContentAssemblyNodeContainer, String> newNamesByContainer, Log log)
+      throws RSuiteException {
+    OperationResult result = new BaseOperationResult(context.getIDGenerator().allocateId(),
+        "rename", log == null ? ContainerUtils.log : log);
+    result.markStartOfOperation();
+    int renamedCnt = 0;
+    int failedCnt = 0;
+    for (Map.Entry<? extends ContentAssemblyNodeContainer, String> entry : newNamesByContainer
+        .entrySet()) {
+      try {
+        if (renameContainer(context, user, entry.getKey(), entry.getValue())) {
+          renamedCnt++;
+        }
+      } catch (RSuiteException e) {
+        failedCnt++;
+        result.addFailure(e);
+      }
+    }
+    result.markEndOfOperation();
+    result.addInfoMessage(ContainerUtilsMessageProperties.get("info.renamed.containers",
+        renamedCnt, newNamesByContainer.size(),
+        newNamesByContainer.size() - renamedCnt - failedCnt, failedCnt));
+    return result;
+  }
+
   /**
    * Working backwards, get the first container in the content object path's objects with the
    * specified container type. When the container type is blank, the first container is returned.
@@ -202,14 +900,38 @@ public class ContainerUtils {
   public ContentAssemblyNodeContainer getContentAssemblyNodeContainer(
       ContentAssemblyService caService, User user, ContentObjectPath contentObjectPath,
       String containerType) throws RSuiteException {
+    return getContentAssemblyNodeContainer(caService, user, contentObjectPath, containerType,
+        null);
+  }
+
+  /**
+   * Working backwards, get the first container in the content object path's objects with the
+   * specified container type. When the container type is blank, the first container is returned.
+   * <p>
+   * Same as {@link #getContentAssemblyNodeContainer(ContentAssemblyService, User,
+   * ContentObjectPath, String)} but containers are first sought in, and retrieved containers added
+   * to, the given cache or, when null, the instance's cache.
+   * 
+   * @param caService
+   * @param user
+   * @param contentObjectPath
+   * @param containerType An optional requirement for the container. When blank, the first container
+   *        is accepted.
+   * @param cache Optional container cache. When null, the instance's cache, if any, is used.
+   * @return The first qualifying container, or null when there isn't one.
+   * @throws RSuiteException
+   */
+  public ContentAssemblyNodeContainer getContentAssemblyNodeContainer(
+      ContentAssemblyService caService, User user, ContentObjectPath contentObjectPath,
+      String containerType, ContainerResolutionCache cache) throws RSuiteException {
     // Determine the container by walking up the request's path objects until reaching a container
     // of the correct type.
     ContentAssemblyNodeContainer container;
     List<ContentDisplayObject> cdoList = contentObjectPath.getPathObjects();
     for (int i = cdoList.size() - 1; i > 0; i--) {
       if (ObjectType.CONTENT_ASSEMBLY_REF == cdoList.get(i).getManagedObject().getObjectType()) {
-        container = caService.getContentAssemblyNodeContainer(user,
-            cdoList.get(i).getManagedObject().getTargetId());
+        container = resolveContainer(caService, user,
+            cdoList.get(i).getManagedObject().getTargetId(), cache);
         if (StringUtils.isBlank(containerType) || container.getType().equals(containerType)) {
           return container;
         }
@@ -218,13 +940,89 @@ public class ContainerUtils {
     return null;
   }
 
+  /**
+   * Get every container in the content object path's objects, in a single pass. As with
+   * {@link #getContentAssemblyNodeContainer(ContentAssemblyService, User, ContentObjectPath,
+   * String)}, the first path object is not considered.
+   * 
+   * @param caService
+   * @param user
+   * @param contentObjectPath
+   * @param cache Optional container cache. When null, the instance's cache, if any, is used.
+   * @return The path's containers, in path order. Empty when there aren't any.
+   * @throws RSuiteException
+   */
+  public List<ContentAssemblyNodeContainer> getContentAssemblyNodeContainers(
+      ContentAssemblyService caService, User user, ContentObjectPath contentObjectPath,
+      ContainerResolutionCache cache) throws RSuiteException {
+    List<ContentAssemblyNodeContainer> containers = new ArrayList<ContentAssemblyNodeContainer>();
+    List<ContentDisplayObject> cdoList = contentObjectPath.getPathObjects();
+    for (int i = 1; i < cdoList.size(); i++) {
+      if (ObjectType.CONTENT_ASSEMBLY_REF == cdoList.get(i).getManagedObject().getObjectType()) {
+        containers.add(resolveContainer(caService, user,
+            cdoList.get(i).getManagedObject().getTargetId(), cache));
+      }
+    }
+    return containers;
+  }
+
+  private ContentAssemblyNodeContainer resolveContainer(ContentAssemblyService caService,
+      User user, String id, ContainerResolutionCache cache) throws RSuiteException {
+    if (session != null && session.isFor(caService, user)) {
+      return session.getContainer(id);
+    }
+    if (cache == null) {
+      cache = containerResolutionCache;
+    }
+    return cache == null ? caService.getContentAssemblyNodeContainer(user, id)
+        : cache.resolve(caService, user, id);
+  }
+
+  /**
+   * Evaluate several qualifiers against the MOs directly or indirectly referenced by the provided
+   * container, in one traversal. Each qualifier collects the first qualifying MO, all of them, up
+   * to a limit, or a count, per its mode. The traversal stops as soon as the collector is complete,
+   * which requires every qualifier to be of the first or limit modes.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @param collector The qualifiers, which also receive the results.
+   * @return The collector.
+   * @throws RSuiteException
+   */
+  public ManagedObjectCollector collectReferencedManagedObjects(ExecutionContext context,
+      User user, ContentAssemblyNodeContainer container, ManagedObjectCollector collector)
+      throws RSuiteException {
+    if (container != null && !collector.isComplete()) {
+      ReferencedContentIterator it =
+          new ReferencedContentIterator(getFetcher(context, user), container, true);
+      it.setInstrumentation(instrumentation);
+      it.setReverseReferenceIndex(reverseReferenceIndex);
+      try {
+        while (it.hasNext()) {
+          ManagedObject mo = it.next().getManagedObject();
+          if (mo != null && collector.accept(mo)) {
+            break;
+          }
+        }
+      } catch (ReferencedContentTraversalException e) {
+        throw e.getRSuiteException();
+      }
+    }
+    return collector;
+  }
+
   /**
    * Get the first qualifying MO directly or indirectly referenced by the provided container. The
    * provided MO qualifier provides the logic of which MOs qualify.
    * <p>
-   * The implementation defines "first".
+   * "First" is in the order {@link ListReferencedContentContainerVisitor} lists MOs. The traversal
+   * stops as soon as a qualifying MO is found.
    * <p>
-   * If the caller needs a list of all qualifying MOs, more work would be required.
+   * If the caller needs a list of all qualifying MOs, or to evaluate several qualifiers, see
+   * {@link #collectReferencedManagedObjects(ExecutionContext, User, ContentAssemblyNodeContainer,
+   * ManagedObjectCollector)}.
    * 
    * @param context
    * @param user
@@ -238,21 +1036,47 @@ public class ContainerUtils {
       throws RSuiteException {
 
     if (container != null && moQualifier != null) {
-      /*
-       * IDEA: Stop processing the container as soon as the first qualifying MO is found. Elected
-       * not to do this initially as this visitor already existed and the project containers are not
-       * expected to reference many objects.
-       */
-      ListReferencedContentContainerVisitor visitor =
-          new ListReferencedContentContainerVisitor(context, user, false);
+      FirstQualifyingManagedObjectContainerVisitor visitor =
+          new FirstQualifyingManagedObjectContainerVisitor(context, user, moQualifier);
+      visitor.setInstrumentation(instrumentation);
+      visitor.setReverseReferenceIndex(reverseReferenceIndex);
+      visitor.setFetcher(getSession(context, user));
       visitor.visitContentAssemblyNodeContainer(container);
+      return visitor.getQualifyingManagedObject();
+    }
 
-      List<ManagedObject> mos = visitor.getReferencedManagedObjects();
-      if (mos != null) {
-        for (ManagedObject mo : mos) {
-          if (moQualifier.accept(mo)) {
-            return mo;
-          }
+    return null;
+  }
+
+  /**
+   * Get the first qualifying MO directly or indirectly referenced by the provided container, using
+   * a parallel traversal when the parallelism is greater than one.
+   * <p>
+   * Unlike {@link #getFirstQualifyingReferencedManagedObject(ExecutionContext, User,
+   * ContentAssemblyNodeContainer, ManagedObjectQualifier)}, a parallel traversal retrieves every
+   * referenced object before the qualifier is applied, in the same order. It favors containers
+   * where the first qualifying MO tends to be near the end.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @param moQualifier
+   * @param parallelism The maximum number of objects to retrieve concurrently.
+   * @return The first qualifying MO, or null when there isn't a qualifying MO.
+   * @throws RSuiteException
+   */
+  public ManagedObject getFirstQualifyingReferencedManagedObject(ExecutionContext context,
+      User user, ContentAssemblyNodeContainer container, ManagedObjectQualifier moQualifier,
+      int parallelism) throws RSuiteException {
+    if (parallelism <= 1) {
+      return getFirstQualifyingReferencedManagedObject(context, user, container, moQualifier);
+    }
+
+    if (container != null && moQualifier != null) {
+      for (ManagedObject mo : listReferencedContent(context, user, container, parallelism)
+          .getReferencedManagedObjects()) {
+        if (moQualifier.accept(mo)) {
+          return mo;
         }
       }
     }
@@ -260,15 +1084,217 @@ public class ContainerUtils {
     return null;
   }
 
+  /**
+   * List the CAs and MOs directly or indirectly referenced by the provided container.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @param parallelism The maximum number of objects to retrieve concurrently. When one, the
+   *        container is traversed on the calling thread by
+   *        {@link ListReferencedContentContainerVisitor}; otherwise, by
+   *        {@link ParallelReferencedContentWalker}. Both produce the same lists.
+   * @return The referenced content.
+   * @throws RSuiteException
+   */
+  public ReferencedContent listReferencedContent(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container, int parallelism) throws RSuiteException {
+    if (parallelism <= 1) {
+      ListReferencedContentContainerVisitor visitor =
+          new ListReferencedContentContainerVisitor(context, user, false);
+      visitor.setInstrumentation(instrumentation);
+      visitor.setReverseReferenceIndex(reverseReferenceIndex);
+      visitor.setFetcher(getSession(context, user));
+      visitor.visitContentAssemblyNodeContainer(container);
+      return visitor;
+    }
+    ParallelReferencedContentWalker walker =
+        new ParallelReferencedContentWalker(getFetcher(context, user), null, parallelism);
+    walker.setInstrumentation(instrumentation);
+    return walker.walk(container);
+  }
+
+  /**
+   * List the CAs and MOs referenced by the provided container that the traversal options include,
+   * on the calling thread. Pruned subtrees are not retrieved.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @param traversalOptions When null, the entire tree is traversed.
+   * @return The referenced content.
+   * @throws RSuiteException
+   */
+  public ReferencedContent listReferencedContent(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container, TraversalOptions traversalOptions)
+      throws RSuiteException {
+    ListReferencedContentContainerVisitor visitor =
+        new ListReferencedContentContainerVisitor(context, user, false);
+    visitor.setInstrumentation(instrumentation);
+    visitor.setReverseReferenceIndex(reverseReferenceIndex);
+    visitor.setFetcher(getSession(context, user));
+    visitor.setTraversalOptions(traversalOptions);
+    visitor.visitContentAssemblyNodeContainer(container);
+    return visitor;
+  }
+
+  /**
+   * Capture the tree of the provided container in a snapshot, which answers sibling, ancestry and
+   * listing queries without the repository and may be written to a file for later use. The
+   * container is traversed once, on the calling thread.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @return The snapshot.
+   * @throws RSuiteException
+   */
+  public ContainerTreeSnapshot captureContainerTreeSnapshot(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container) throws RSuiteException {
+    SnapshotContainerVisitor visitor = new SnapshotContainerVisitor(context, user);
+    visitor.setInstrumentation(instrumentation);
+    visitor.setReverseReferenceIndex(reverseReferenceIndex);
+    visitor.setFetcher(getSession(context, user));
+    visitor.visitContentAssemblyNodeContainer(container);
+    return visitor.getSnapshot();
+  }
+
+  /**
+   * Compare the provided container's current tree to a snapshot captured earlier, such as by the
+   * previous run of a job, so that only the objects added, removed, moved or modified since need
+   * processing. The container is traversed once, on the calling thread.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @param previousSnapshot The earlier snapshot. When null, every object is reported as added.
+   * @return The changes, along with the current snapshot to compare against next time.
+   * @throws RSuiteException
+   */
+  public ContainerTreeDiff diffContainerTree(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container, ContainerTreeSnapshot previousSnapshot)
+      throws RSuiteException {
+    return ContainerTreeDiff.compare(previousSnapshot,
+        captureContainerTreeSnapshot(context, user, container));
+  }
+
+  /**
+   * Stream a manifest of the provided container's tree to the given channel, as newline-delimited
+   * JSON with one record per object the traversal yields. See {@link ContainerManifestWriter}.
+   * Each record is written as the object is reached, so memory use does not grow with the
+   * manifest; the traversal only retains the IDs it has visited and the path to the current
+   * object. The channel is left open.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @param traversalOptions When null, the entire tree is exported.
+   * @param channel
+   * @param gzip Submit true to compress the manifest with gzip.
+   * @return The number of records written.
+   * @throws RSuiteException Thrown if an object could not be retrieved or the manifest could not
+   *         be written.
+   */
+  public long exportContainerManifest(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container, TraversalOptions traversalOptions,
+      WritableByteChannel channel, boolean gzip) throws RSuiteException {
+    ContainerManifestWriter writer = new ContainerManifestWriter(channel, gzip);
+    try {
+      for (ReferencedItem item : iterateReferencedContent(context, user, container,
+          traversalOptions)) {
+        writer.write(item);
+      }
+    } catch (ReferencedContentTraversalException e) {
+      throw e.getRSuiteException();
+    }
+    writer.finish();
+    return writer.getRecordCount();
+  }
+
+  /**
+   * Same as {@link #exportContainerManifest(ExecutionContext, User, ContentAssemblyNodeContainer,
+   * TraversalOptions, WritableByteChannel, boolean)} but writes to an output stream, which is
+   * flushed and left open.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @param traversalOptions When null, the entire tree is exported.
+   * @param out
+   * @param gzip Submit true to compress the manifest with gzip.
+   * @return The number of records written.
+   * @throws RSuiteException Thrown if an object could not be retrieved or the manifest could not
+   *         be written.
+   */
+  public long exportContainerManifest(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container, TraversalOptions traversalOptions,
+      OutputStream out, boolean gzip) throws RSuiteException {
+    long recordCnt = exportContainerManifest(context, user, container, traversalOptions,
+        Channels.newChannel(out), gzip);
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("error.unable.to.write.manifest", e.getMessage()),
+          e);
+    }
+    return recordCnt;
+  }
+
+  /**
+   * Lazily traverse the provided container. Each iterator this returns starts a new traversal,
+   * yielding the container and then each CANode, CA and MO it directly or indirectly references,
+   * each once, retrieving objects only as the iteration reaches them. See
+   * {@link ReferencedContentIterator}.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @return The traversal.
+   */
+  public Iterable<ReferencedItem> iterateReferencedContent(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container) {
+    return iterateReferencedContent(context, user, container, null);
+  }
+
+  /**
+   * Same as {@link #iterateReferencedContent(ExecutionContext, User, ContentAssemblyNodeContainer)}
+   * but only yields the objects the traversal options include. Pruned subtrees are not retrieved.
+   * 
+   * @param context
+   * @param user
+   * @param container
+   * @param traversalOptions When null, the entire tree is traversed.
+   * @return The traversal.
+   */
+  public Iterable<ReferencedItem> iterateReferencedContent(final ExecutionContext context,
+      final User user, final ContentAssemblyNodeContainer container,
+      final TraversalOptions traversalOptions) {
+    return new Iterable<ReferencedItem>() {
+      @Override
+      public Iterator<ReferencedItem> iterator() {
+        ReferencedContentIterator it =
+            new ReferencedContentIterator(getFetcher(context, user), container, true);
+        it.setInstrumentation(instrumentation);
+        it.setReverseReferenceIndex(reverseReferenceIndex);
+        it.setTraversalOptions(traversalOptions);
+        return it;
+      }
+    };
+  }
+
   /**
    * Get the managed object referenced by the given container that comes before or after the
    * identified child, depending on the value of the "previous" parameter.
+   * <p>
+   * Only the container and the returned MO are retrieved.
    * 
    * @param context
    * @param user
    * @param container Container to look within.
    * @param childId ID of an object that the container already (directly) references. May be the
-   *        reference or target ID.
+   *        reference or target ID. When the container references it more than once, the
+   *        siblings are those of the first reference.
    * @param previous Submit true for the previous sibling or false for the next sibling.
    * @return The managed object that comes before or after the specified child. Returns null when
    *         there isn't a previous or next child, including when the container does not reference
@@ -278,20 +1304,109 @@ public class ContainerUtils {
   public ManagedObject getSiblingManagedObject(ExecutionContext context, User user,
       ContentAssemblyNodeContainer container, String childId, boolean previous)
       throws RSuiteException {
-    ListReferencedContentContainerVisitor visitor =
-        new ListReferencedContentContainerVisitor(context, user, true);
+    ChildrenInfoContainerVisitor visitor = new ChildrenInfoContainerVisitor(context, user);
+    visitor.setReverseReferenceIndex(reverseReferenceIndex);
     visitor.visitContentAssemblyNodeContainer(container);
-    List<ManagedObject> moList = visitor.getReferencedManagedObjects();
-    for (int i = 0; i < moList.size(); i++) {
-      if (moList.get(i).getId().equals(childId)) {
-        if (previous) {
-          return i > 0 ? moList.get(i - 1) : null;
-        } else {
-          return i < moList.size() - 1 ? moList.get(i + 1) : null;
-        }
+    int idx = visitor.getMoRefOrdinal(childId);
+    if (idx < 0) {
+      return null;
+    }
+    int siblingIdx = previous ? idx - 1 : idx + 1;
+    List<ManagedObject> moList = getManagedObjects(context, user, visitor.getMoRefs(), siblingIdx,
+        siblingIdx + 1);
+    return moList.isEmpty() ? null : moList.get(0);
+  }
+
+  /**
+   * Get a window of the managed objects referenced by the given container, centered on the
+   * identified child: up to the requested number of MOs before it, the child's MO, and up to the
+   * requested number after it. The window also reports the child's position and the total number
+   * of MOs the container directly references.
+   * <p>
+   * The container is visited once and only the MOs within the window are retrieved.
+   * 
+   * @param context
+   * @param user
+   * @param container Container to look within.
+   * @param childId ID of an MO that the container already (directly) references. May be the
+   *        reference or target ID.
+   * @param siblingCount The maximum number of MOs to include on either side of the child.
+   * @return The window, or null when the container does not reference the specified MO.
+   * @throws RSuiteException
+   */
+  public ManagedObjectWindow getSiblingManagedObjectWindow(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container, String childId, int siblingCount)
+      throws RSuiteException {
+    ChildrenInfoContainerVisitor visitor = new ChildrenInfoContainerVisitor(context, user);
+    visitor.setReverseReferenceIndex(reverseReferenceIndex);
+    visitor.visitContentAssemblyNodeContainer(container);
+    int idx = visitor.getMoRefOrdinal(childId);
+    if (idx < 0) {
+      return null;
+    }
+    List<ManagedObjectReference> moRefs = visitor.getMoRefs();
+    int fromIdx = Math.max(idx - Math.max(siblingCount, 0), 0);
+    int toIdx = Math.min(idx + Math.max(siblingCount, 0) + 1, moRefs.size());
+    return new ManagedObjectWindow(getManagedObjects(context, user, moRefs, fromIdx, toIdx),
+        fromIdx, moRefs.size(), idx);
+  }
+
+  /**
+   * Get a page of the managed objects referenced by the given container. Containers are not
+   * included, nor do they count towards the offset.
+   * <p>
+   * The container is visited once and only the MOs within the page are retrieved.
+   * 
+   * @param context
+   * @param user
+   * @param container Container to look within.
+   * @param offset Zero-based position of the first MO to include.
+   * @param limit The maximum number of MOs to include.
+   * @return The page, which is empty when the offset is beyond the last MO.
+   * @throws RSuiteException
+   */
+  public ManagedObjectWindow getManagedObjectPage(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer container, int offset, int limit) throws RSuiteException {
+    ChildrenInfoContainerVisitor visitor = new ChildrenInfoContainerVisitor(context, user);
+    visitor.setReverseReferenceIndex(reverseReferenceIndex);
+    visitor.visitContentAssemblyNodeContainer(container);
+    List<ManagedObjectReference> moRefs = visitor.getMoRefs();
+    int fromIdx = Math.min(Math.max(offset, 0), moRefs.size());
+    int toIdx = Math.min(fromIdx + Math.max(limit, 0), moRefs.size());
+    return new ManagedObjectWindow(getManagedObjects(context, user, moRefs, fromIdx, toIdx),
+        fromIdx, moRefs.size(), -1);
+  }
+
+  /**
+   * Retrieve the MOs targeted by a range of MO references.
+   * 
+   * @param context
+   * @param user
+   * @param moRefs
+   * @param fromIdx Inclusive. Negative values are treated as zero.
+   * @param toIdx Exclusive. Values beyond the end of the list are treated as its size.
+   * @return The MOs, in order.
+   * @throws RSuiteException
+   */
+  private List<ManagedObject> getManagedObjects(ExecutionContext context, User user,
+      List<ManagedObjectReference> moRefs, int fromIdx, int toIdx) throws RSuiteException {
+    ManagedObjectService moService = context.getManagedObjectService();
+    ContainerUtilsSession applicableSession = getSession(context, user);
+    List<ManagedObject> moList = new ArrayList<ManagedObject>();
+    for (int i = Math.max(fromIdx, 0); i < Math.min(toIdx, moRefs.size()); i++) {
+      if (applicableSession != null) {
+        moList.add(applicableSession.getManagedObject(moRefs.get(i).getTargetId()));
+        continue;
+      }
+      long start = System.nanoTime();
+      try {
+        moList.add(moService.getManagedObject(user, moRefs.get(i).getTargetId()));
+      } finally {
+        instrumentation.repositoryCallCompleted(RepositoryCall.GET_MANAGED_OBJECT,
+            System.nanoTime() - start);
       }
     }
-    return null;
+    return moList;
   }
 
 }
@@ -0,0 +1,218 @@
+package com.rsicms.rsuite.utils.container;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.reallysi.rsuite.service.ContentAssemblyService;
+import com.rsicms.rsuite.utils.container.metrics.ContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.NoOpContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.RepositoryCall;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedContentFetcher;
+
+/**
+ * Memoizes the containers and MOs retrieved for one request, as one user, so that the
+ * {@link ContainerUtils} methods called while handling the request retrieve each object once.
+ * Obtain an instance with {@link ContainerUtils#openSession(ExecutionContext, User)} and call
+ * methods on the instance returned by {@link ContainerUtils#withSession(ContainerUtilsSession)}.
+ * <p>
+ * Retrieved containers keep the children they loaded, so a memoized container's child list is not
+ * loaded again either. The session reports the retrievals it makes, not those it saves, to its
+ * instrumentation. Counters show how many round trips were saved.
+ * <p>
+ * Objects are served as first retrieved: a session is meant to live no longer than a request.
+ * Objects <code>ContainerUtils</code> deletes or renames through the session are invalidated;
+ * invalidate objects changed otherwise. Instances are safe for use by multiple threads.
+ */
+public class ContainerUtilsSession implements ReferencedContentFetcher {
+
+  private final ExecutionContext context;
+
+  private final User user;
+
+  private final ContainerInstrumentation instrumentation;
+
+  private final ConcurrentMap<String, ContentAssemblyNodeContainer> containers =
+      new ConcurrentHashMap<String, ContentAssemblyNodeContainer>();
+
+  private final ConcurrentMap<String, ManagedObject> managedObjects =
+      new ConcurrentHashMap<String, ManagedObject>();
+
+  private final AtomicLong containerRequestCount = new AtomicLong();
+
+  private final AtomicLong containerRetrievalCount = new AtomicLong();
+
+  private final AtomicLong managedObjectRequestCount = new AtomicLong();
+
+  private final AtomicLong managedObjectRetrievalCount = new AtomicLong();
+
+  /**
+   * Construct a session.
+   *
+   * @param context
+   * @param user The user to retrieve objects as.
+   * @param instrumentation Optional instrumentation to report retrievals to.
+   */
+  public ContainerUtilsSession(ExecutionContext context, User user,
+      ContainerInstrumentation instrumentation) {
+    this.context = context;
+    this.user = user;
+    this.instrumentation =
+        instrumentation == null ? NoOpContainerInstrumentation.INSTANCE : instrumentation;
+  }
+
+  public ExecutionContext getContext() {
+    return context;
+  }
+
+  public User getUser() {
+    return user;
+  }
+
+  /**
+   * @param context
+   * @param user
+   * @return True if this session may serve requests made with the given context and user.
+   */
+  public boolean isFor(ExecutionContext context, User user) {
+    return this.context == context && isForUser(user);
+  }
+
+  /**
+   * @param caService
+   * @param user
+   * @return True if this session may serve requests made with the given service and user.
+   */
+  public boolean isFor(ContentAssemblyService caService, User user) {
+    return context.getContentAssemblyService() == caService && isForUser(user);
+  }
+
+  private boolean isForUser(User user) {
+    return this.user == user
+        || (user != null && this.user.getUserId().equals(user.getUserId()));
+  }
+
+  /**
+   * Get a container, retrieving it unless already retrieved during this session.
+   *
+   * @param id
+   * @return The container.
+   * @throws RSuiteException
+   */
+  @Override
+  public ContentAssemblyNodeContainer getContainer(String id) throws RSuiteException {
+    containerRequestCount.incrementAndGet();
+    ContentAssemblyNodeContainer container = containers.get(id);
+    if (container == null) {
+      long start = System.nanoTime();
+      try {
+        container = context.getContentAssemblyService().getContentAssemblyNodeContainer(user, id);
+      } finally {
+        instrumentation.repositoryCallCompleted(RepositoryCall.GET_CONTAINER,
+            System.nanoTime() - start);
+      }
+      containerRetrievalCount.incrementAndGet();
+      if (container != null) {
+        containers.putIfAbsent(id, container);
+      }
+    }
+    return container;
+  }
+
+  /**
+   * Get an MO, retrieving it unless already retrieved during this session.
+   *
+   * @param id
+   * @return The MO.
+   * @throws RSuiteException
+   */
+  @Override
+  public ManagedObject getManagedObject(String id) throws RSuiteException {
+    managedObjectRequestCount.incrementAndGet();
+    ManagedObject mo = managedObjects.get(id);
+    if (mo == null) {
+      long start = System.nanoTime();
+      try {
+        mo = context.getManagedObjectService().getManagedObject(user, id);
+      } finally {
+        instrumentation.repositoryCallCompleted(RepositoryCall.GET_MANAGED_OBJECT,
+            System.nanoTime() - start);
+      }
+      managedObjectRetrievalCount.incrementAndGet();
+      if (mo != null) {
+        managedObjects.putIfAbsent(id, mo);
+      }
+    }
+    return mo;
+  }
+
+  /**
+   * Forget an object, such as after it is modified or deleted, so that it is retrieved again.
+   *
+   * @param id
+   */
+  public void invalidate(String id) {
+    containers.remove(id);
+    managedObjects.remove(id);
+  }
+
+  /**
+   * Forget every object. Counters are retained.
+   */
+  public void clear() {
+    containers.clear();
+    managedObjects.clear();
+  }
+
+  /**
+   * @return The number of containers requested from this session.
+   */
+  public long getContainerRequestCount() {
+    return containerRequestCount.get();
+  }
+
+  /**
+   * @return The number of containers this session retrieved from the repository.
+   */
+  public long getContainerRetrievalCount() {
+    return containerRetrievalCount.get();
+  }
+
+  /**
+   * @return The number of MOs requested from this session.
+   */
+  public long getManagedObjectRequestCount() {
+    return managedObjectRequestCount.get();
+  }
+
+  /**
+   * @return The number of MOs this session retrieved from the repository.
+   */
+  public long getManagedObjectRetrievalCount() {
+    return managedObjectRetrievalCount.get();
+  }
+
+  /**
+   * @return The number of repository round trips the session saved.
+   */
+  public long getRoundTripsSaved() {
+    return containerRequestCount.get() - containerRetrievalCount.get()
+        + managedObjectRequestCount.get() - managedObjectRetrievalCount.get();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("ContainerUtilsSession [user=").append(user.getUserId())
+        .append(", containers=").append(getContainerRetrievalCount()).append("/")
+        .append(getContainerRequestCount()).append(", MOs=")
+        .append(getManagedObjectRetrievalCount()).append("/")
+        .append(getManagedObjectRequestCount()).append(", saved=").append(getRoundTripsSaved())
+        .append("]").toString();
+  }
+
+}
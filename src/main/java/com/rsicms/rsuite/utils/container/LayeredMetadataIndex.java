@@ -0,0 +1,98 @@
+package com.rsicms.rsuite.utils.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.MetaDataItem;
+import com.reallysi.rsuite.api.RSuiteException;
+
+/**
+ * A case-insensitive index of an object's LMD, built with a single pass over its metadata items.
+ * Intended for callers needing several LMD values from the same object. The index is a snapshot;
+ * it does not reflect subsequent metadata changes.
+ */
+public class LayeredMetadataIndex {
+
+  /**
+   * LMD values by LMD name, ignoring case. Values retain the order the RSuite API provided them in.
+   */
+  private TreeMap<String, List<String>> valuesByName;
+
+  /**
+   * Index the given container's LMD.
+   *
+   * @param container
+   * @throws RSuiteException
+   */
+  public LayeredMetadataIndex(ContentAssemblyNodeContainer container) throws RSuiteException {
+    this(container == null ? null : container.getMetaDataItems());
+  }
+
+  /**
+   * Index the given metadata items.
+   *
+   * @param items May be null.
+   */
+  public LayeredMetadataIndex(List<MetaDataItem> items) {
+    valuesByName = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    if (items != null) {
+      for (MetaDataItem item : items) {
+        if (item.getName() == null) {
+          continue;
+        }
+        List<String> values = valuesByName.get(item.getName());
+        if (values == null) {
+          values = new ArrayList<String>(1);
+          valuesByName.put(item.getName(), values);
+        }
+        values.add(item.getValue());
+      }
+    }
+  }
+
+  /**
+   * Get an LMD value by LMD name. Should there be multiple LMD values with the same LMD name, the
+   * first one, as decided by the RSuite API, will be returned.
+   *
+   * @param lmdName
+   * @return LMD value or null when the requested LMD isn't set.
+   */
+  public String getValue(String lmdName) {
+    List<String> values = getValues(lmdName);
+    return values.isEmpty() ? null : values.get(0);
+  }
+
+  /**
+   * Get all of the values of an LMD.
+   *
+   * @param lmdName
+   * @return The LMD's values, in the order provided by the RSuite API. Empty when the requested LMD
+   *         isn't set.
+   */
+  public List<String> getValues(String lmdName) {
+    List<String> values = StringUtils.isBlank(lmdName) ? null : valuesByName.get(lmdName);
+    return values == null ? Collections.<String>emptyList() : Collections.unmodifiableList(values);
+  }
+
+  /**
+   * @param lmdName
+   * @return True if at least one value is set for the LMD.
+   */
+  public boolean hasValue(String lmdName) {
+    return StringUtils.isNotBlank(lmdName) && valuesByName.containsKey(lmdName);
+  }
+
+  /**
+   * @return The names of the set LMD, using the case of their first occurrence.
+   */
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(valuesByName.keySet());
+  }
+
+}
@@ -0,0 +1,99 @@
+package com.rsicms.rsuite.utils.container;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.reallysi.rsuite.api.ManagedObject;
+
+/**
+ * A contiguous range of the MOs a container directly references, along with where that range is
+ * within all of the container's MOs. Optionally identifies one MO within the range as the focus,
+ * making the MOs before and after it its siblings.
+ */
+public class ManagedObjectWindow {
+
+  private List<ManagedObject> managedObjects;
+
+  private int offset;
+
+  private int total;
+
+  private int focusIndex;
+
+  /**
+   * Construct a window.
+   *
+   * @param managedObjects The MOs within the window, in order.
+   * @param offset Zero-based position of the window's first MO among all of the container's MOs.
+   * @param total The number of MOs the container directly references.
+   * @param focusIndex Zero-based position of the focus MO among all of the container's MOs, or -1
+   *        when there isn't one.
+   */
+  public ManagedObjectWindow(List<ManagedObject> managedObjects, int offset, int total,
+      int focusIndex) {
+    this.managedObjects = Collections.unmodifiableList(managedObjects);
+    this.offset = offset;
+    this.total = total;
+    this.focusIndex = focusIndex;
+  }
+
+  /**
+   * @return The MOs within the window, in order.
+   */
+  public List<ManagedObject> getManagedObjects() {
+    return managedObjects;
+  }
+
+  /**
+   * @return Zero-based position of the window's first MO among all of the container's MOs.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return The number of MOs the container directly references.
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * @return Zero-based position of the focus MO among all of the container's MOs, or -1 when there
+   *         isn't one.
+   */
+  public int getFocusIndex() {
+    return focusIndex;
+  }
+
+  /**
+   * @return The focus MO, or null when there isn't one.
+   */
+  public ManagedObject getFocus() {
+    return focusIndex < 0 ? null : managedObjects.get(focusIndex - offset);
+  }
+
+  /**
+   * @return The window's MOs before the focus MO, nearest last. Empty when there isn't a focus MO.
+   */
+  public List<ManagedObject> getBefore() {
+    return focusIndex < 0 ? Collections.<ManagedObject>emptyList()
+        : managedObjects.subList(0, focusIndex - offset);
+  }
+
+  /**
+   * @return The window's MOs after the focus MO, nearest first. Empty when there isn't a focus MO.
+   */
+  public List<ManagedObject> getAfter() {
+    return focusIndex < 0 ? Collections.<ManagedObject>emptyList()
+        : managedObjects.subList(focusIndex - offset + 1, managedObjects.size());
+  }
+
+  /**
+   * @return True if the container references MOs beyond the end of this window.
+   */
+  public boolean hasMore() {
+    return offset + managedObjects.size() < total;
+  }
+
+}
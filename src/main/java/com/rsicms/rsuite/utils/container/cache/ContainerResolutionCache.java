@@ -0,0 +1,254 @@
+package com.rsicms.rsuite.utils.container.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.service.ContentAssemblyService;
+
+/**
+ * A bounded, time-to-live cache of containers by user and ID, intended to avoid retrieving the
+ * same ancestor containers repeatedly when resolving content object paths.
+ * <p>
+ * A container is only served to the user that retrieved it, so that a shared instance never
+ * bypasses the repository's access checks. When full, the least recently used entry is evicted.
+ * Expired entries are evicted when encountered. Instances are safe for use by multiple threads.
+ * <p>
+ * Invalidate a container when it is renamed, modified or deleted; <code>ContainerUtils</code>
+ * does so for the containers it renames or deletes when given the cache. Size the time-to-live to
+ * the acceptable staleness of changes made otherwise.
+ */
+public class ContainerResolutionCache {
+
+  private final int maxEntries;
+
+  private final long ttlNanos;
+
+  private final LinkedHashMap<Key, CachedContainer> entries;
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong missCount = new AtomicLong();
+
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * Construct a cache.
+   *
+   * @param maxEntries The maximum number of containers to retain. Must be positive.
+   * @param ttl How long a container may be served from the cache after being retrieved. Must be
+   *        positive.
+   * @param ttlUnit
+   */
+  public ContainerResolutionCache(int maxEntries, long ttl, TimeUnit ttlUnit) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be positive.");
+    }
+    if (ttl < 1) {
+      throw new IllegalArgumentException("ttl must be positive.");
+    }
+    this.maxEntries = maxEntries;
+    this.ttlNanos = ttlUnit.toNanos(ttl);
+    this.entries = new LinkedHashMap<Key, CachedContainer>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CachedContainer> eldest) {
+        if (size() > ContainerResolutionCache.this.maxEntries) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Get a container from the cache, or retrieve it as the user and cache it when not cached for
+   * the user or expired.
+   *
+   * @param caService
+   * @param user
+   * @param id The container's ID, or the target ID of a reference to it.
+   * @return The container.
+   * @throws RSuiteException
+   */
+  public ContentAssemblyNodeContainer resolve(ContentAssemblyService caService, User user,
+      String id) throws RSuiteException {
+    ContentAssemblyNodeContainer container = get(user, id);
+    if (container == null) {
+      container = caService.getContentAssemblyNodeContainer(user, id);
+      put(user, id, container);
+    }
+    return container;
+  }
+
+  /**
+   * Get a container from the cache.
+   *
+   * @param user
+   * @param id
+   * @return The container cached for the user, or null when not cached or expired.
+   */
+  public synchronized ContentAssemblyNodeContainer get(User user, String id) {
+    Key key = new Key(user, id);
+    CachedContainer entry = entries.get(key);
+    if (entry != null && System.nanoTime() - entry.cachedAt > ttlNanos) {
+      entries.remove(key);
+      evictionCount.incrementAndGet();
+      entry = null;
+    }
+    if (entry == null) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    return entry.container;
+  }
+
+  /**
+   * Get the type of a cached container.
+   *
+   * @param user
+   * @param id
+   * @return The type of the container cached for the user, or null when not cached or expired.
+   */
+  public String getContainerType(User user, String id) {
+    ContentAssemblyNodeContainer container = get(user, id);
+    return container == null ? null : container.getType();
+  }
+
+  /**
+   * Cache a container retrieved as the given user.
+   *
+   * @param user
+   * @param id The ID to cache the container under.
+   * @param container Ignored when null.
+   */
+  public synchronized void put(User user, String id, ContentAssemblyNodeContainer container) {
+    if (id != null && container != null) {
+      entries.put(new Key(user, id), new CachedContainer(container, System.nanoTime()));
+    }
+  }
+
+  /**
+   * Remove a container from the cache, for every user, such as after it is modified or deleted.
+   *
+   * @param id
+   */
+  public synchronized void invalidate(String id) {
+    Iterator<Key> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().id.equals(id)) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove every expired container from the cache.
+   */
+  public synchronized void evictExpired() {
+    long now = System.nanoTime();
+    Iterator<CachedContainer> it = entries.values().iterator();
+    while (it.hasNext()) {
+      if (now - it.next().cachedAt > ttlNanos) {
+        it.remove();
+        evictionCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Remove every container from the cache. Statistics are retained.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * @return The number of containers currently cached, including any that expired but have not
+   *         yet been evicted.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return The number of lookups served from the cache.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return The number of lookups not served from the cache.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return The number of containers evicted as the cache was full or they expired.
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * @return The fraction of lookups served from the cache, or zero before the first lookup.
+   */
+  public double getHitRatio() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("ContainerResolutionCache [size=").append(size()).append(", hits=")
+        .append(getHitCount()).append(", misses=").append(getMissCount()).append(", evictions=")
+        .append(getEvictionCount()).append("]").toString();
+  }
+
+  private static class Key {
+    private final String userId;
+    private final String id;
+
+    private Key(User user, String id) {
+      this.userId = user == null ? null : user.getUserId();
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return id.equals(other.id)
+          && (userId == null ? other.userId == null : userId.equals(other.userId));
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * id.hashCode() + (userId == null ? 0 : userId.hashCode());
+    }
+  }
+
+  private static class CachedContainer {
+    private final ContentAssemblyNodeContainer container;
+    private final long cachedAt;
+
+    private CachedContainer(ContentAssemblyNodeContainer container, long cachedAt) {
+      this.container = container;
+      this.cachedAt = cachedAt;
+    }
+  }
+
+}
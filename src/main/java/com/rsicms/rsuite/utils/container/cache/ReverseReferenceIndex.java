@@ -0,0 +1,356 @@
+package com.rsicms.rsuite.utils.container.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.reallysi.rsuite.api.ContentAssemblyItem;
+import com.reallysi.rsuite.api.ContentAssemblyNode;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ContentAssemblyReference;
+import com.reallysi.rsuite.api.ManagedObjectReference;
+import com.reallysi.rsuite.api.RSuiteException;
+
+/**
+ * A bounded, in-process index from the target IDs of MOs and containers to the containers that
+ * reference them, answering bottom-up questions such as which container an MO belongs to, what its
+ * siblings are, and whether it is shared, without walking the trees again.
+ * <p>
+ * The index is populated incrementally, from the containers traversals visit: give an instance to
+ * <code>ContainerUtils</code> or directly to a visitor or iterator, or index containers explicitly.
+ * It only knows the references of the containers it has indexed: lookups are authoritative for
+ * those, but a target may also be referenced by containers never indexed or since evicted.
+ * <p>
+ * When the index holds more than the maximum number of references, the least recently indexed or
+ * looked up containers are evicted. Invalidate a container when its children change, and an
+ * object when it is deleted; <code>ContainerUtils</code> does so for the objects it deletes.
+ * Instances are safe for use by multiple threads.
+ * <p>
+ * References are indexed without regard to the user that retrieved the containers. Only share an
+ * instance among users with access to the same containers.
+ */
+public class ReverseReferenceIndex {
+
+  private final int maxReferences;
+
+  /**
+   * The indexed containers, least recently used first.
+   */
+  private final LinkedHashMap<String, IndexedContainer> containers =
+      new LinkedHashMap<String, IndexedContainer>(16, 0.75f, true);
+
+  /**
+   * The IDs of the indexed containers referencing each target, in the order they were indexed.
+   */
+  private final Map<String, Set<String>> referencingContainerIds =
+      new HashMap<String, Set<String>>();
+
+  private int referenceCount;
+
+  private long evictionCount;
+
+  /**
+   * Construct an index.
+   *
+   * @param maxReferences The maximum number of references to retain, across all containers. Must
+   *        be positive. A container with more children than this is not indexed.
+   */
+  public ReverseReferenceIndex(int maxReferences) {
+    if (maxReferences < 1) {
+      throw new IllegalArgumentException("maxReferences must be positive.");
+    }
+    this.maxReferences = maxReferences;
+  }
+
+  /**
+   * Index the children of a container, replacing any references indexed for it before.
+   *
+   * @param container
+   * @throws RSuiteException Thrown if the container's children could not be read.
+   */
+  public void index(ContentAssemblyNodeContainer container) throws RSuiteException {
+    List<? extends ContentAssemblyItem> children = container.getChildrenObjects();
+    int childCnt = children == null ? 0 : children.size();
+    String[] childIds = new String[childCnt];
+    boolean[] managedObjects = new boolean[childCnt];
+    for (int i = 0; i < childCnt; i++) {
+      ContentAssemblyItem child = children.get(i);
+      if (child instanceof ManagedObjectReference) {
+        childIds[i] = ((ManagedObjectReference) child).getTargetId();
+        managedObjects[i] = true;
+      } else if (child instanceof ContentAssemblyReference) {
+        childIds[i] = ((ContentAssemblyReference) child).getTargetId();
+      } else if (child instanceof ContentAssemblyNode) {
+        childIds[i] = child.getId();
+      }
+    }
+
+    synchronized (this) {
+      remove(container.getId());
+      if (childCnt > maxReferences) {
+        return;
+      }
+      containers.put(container.getId(), new IndexedContainer(childIds, managedObjects));
+      for (String childId : childIds) {
+        if (childId != null) {
+          Set<String> containerIds = referencingContainerIds.get(childId);
+          if (containerIds == null) {
+            containerIds = new LinkedHashSet<String>();
+            referencingContainerIds.put(childId, containerIds);
+          }
+          containerIds.add(container.getId());
+        }
+      }
+      referenceCount += childCnt;
+
+      Iterator<Map.Entry<String, IndexedContainer>> eldest = containers.entrySet().iterator();
+      while (referenceCount > maxReferences) {
+        Map.Entry<String, IndexedContainer> entry = eldest.next();
+        eldest.remove();
+        unindex(entry.getKey(), entry.getValue());
+        evictionCount++;
+      }
+    }
+  }
+
+  /**
+   * Remove what the index knows about an object, such as after it is deleted or, for a container,
+   * its children change: its own references, and those of every indexed container referencing it.
+   *
+   * @param id ID of a container or the target ID of an MO.
+   */
+  public synchronized void invalidate(String id) {
+    remove(id);
+    Set<String> containerIds = referencingContainerIds.get(id);
+    if (containerIds != null) {
+      for (String containerId : new ArrayList<String>(containerIds)) {
+        remove(containerId);
+      }
+    }
+  }
+
+  /**
+   * Remove every reference from the index. Statistics are retained.
+   */
+  public synchronized void clear() {
+    containers.clear();
+    referencingContainerIds.clear();
+    referenceCount = 0;
+  }
+
+  private void remove(String containerId) {
+    IndexedContainer container = containers.remove(containerId);
+    if (container != null) {
+      unindex(containerId, container);
+    }
+  }
+
+  /**
+   * Remove a container's references, once it is no longer in the container map.
+   */
+  private void unindex(String containerId, IndexedContainer container) {
+    for (String childId : container.childIds) {
+      if (childId != null) {
+        Set<String> containerIds = referencingContainerIds.get(childId);
+        if (containerIds != null) {
+          containerIds.remove(containerId);
+          if (containerIds.isEmpty()) {
+            referencingContainerIds.remove(childId);
+          }
+        }
+      }
+    }
+    referenceCount -= container.childIds.length;
+  }
+
+  /**
+   * @param containerId
+   * @return True if the container's references are indexed.
+   */
+  public synchronized boolean isIndexed(String containerId) {
+    return containers.containsKey(containerId);
+  }
+
+  /**
+   * @param targetId
+   * @return The references to the target from the indexed containers, in the order the containers
+   *         were indexed. Empty when none are known.
+   */
+  public synchronized List<Reference> getReferences(String targetId) {
+    Set<String> containerIds = referencingContainerIds.get(targetId);
+    if (containerIds == null) {
+      return Collections.emptyList();
+    }
+    List<Reference> references = new ArrayList<Reference>(containerIds.size());
+    for (String containerId : containerIds) {
+      String[] childIds = containers.get(containerId).childIds;
+      for (int i = 0; i < childIds.length; i++) {
+        if (targetId.equals(childIds[i])) {
+          references.add(new Reference(containerId, i));
+        }
+      }
+    }
+    return references;
+  }
+
+  /**
+   * @param targetId
+   * @return The ID of the first indexed container referencing the target, or null when none is
+   *         known.
+   */
+  public synchronized String getParentContainerId(String targetId) {
+    Set<String> containerIds = referencingContainerIds.get(targetId);
+    return containerIds == null ? null : containerIds.iterator().next();
+  }
+
+  /**
+   * @param targetId
+   * @param containerIds IDs of containers whose references are to be disregarded, such as those
+   *        about to be deleted along with the target. The references of the CANodes within them,
+   *        as far as indexed, are disregarded too.
+   * @return True if an indexed container not among those given references the target.
+   */
+  public synchronized boolean isReferencedOutside(String targetId,
+      Collection<String> containerIds) {
+    Set<String> referencingIds = referencingContainerIds.get(targetId);
+    if (referencingIds != null) {
+      for (String referencingId : referencingIds) {
+        if (!isWithin(referencingId, containerIds, new HashSet<String>())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return True if the identified container is one of those given or, as a CANode, is within one
+   *         of them.
+   */
+  private boolean isWithin(String containerId, Collection<String> containerIds,
+      Set<String> checkedIds) {
+    if (containerIds.contains(containerId)) {
+      return true;
+    }
+    if (checkedIds.add(containerId)) {
+      Set<String> parentIds = referencingContainerIds.get(containerId);
+      if (parentIds != null) {
+        for (String parentId : parentIds) {
+          if (isWithin(parentId, containerIds, checkedIds)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The index counterpart of <code>ContainerUtils.getSiblingManagedObject</code>.
+   *
+   * @param containerId
+   * @param childId Target ID of an MO the container directly references.
+   * @param previous Submit true for the previous sibling or false for the next sibling.
+   * @return The ID of the MO the container references before or after the child, or null when
+   *         there isn't one, the container doesn't reference the child, or the container is not
+   *         indexed.
+   */
+  public synchronized String getSiblingManagedObjectId(String containerId, String childId,
+      boolean previous) {
+    IndexedContainer container = containers.get(containerId);
+    if (container == null) {
+      return null;
+    }
+    String[] childIds = container.childIds;
+    for (int i = 0; i < childIds.length; i++) {
+      if (container.managedObjects[i] && childId.equals(childIds[i])) {
+        int step = previous ? -1 : 1;
+        for (int j = i + step; j >= 0 && j < childIds.length; j += step) {
+          if (container.managedObjects[j]) {
+            return childIds[j];
+          }
+        }
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return The number of indexed containers.
+   */
+  public synchronized int size() {
+    return containers.size();
+  }
+
+  /**
+   * @return The number of indexed references.
+   */
+  public synchronized int getReferenceCount() {
+    return referenceCount;
+  }
+
+  /**
+   * @return The number of containers evicted as the index was full.
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("ReverseReferenceIndex [containers=").append(size())
+        .append(", references=").append(getReferenceCount()).append(", evictions=")
+        .append(getEvictionCount()).append("]").toString();
+  }
+
+  /**
+   * A container's reference to a target.
+   */
+  public static class Reference {
+
+    private final String containerId;
+
+    private final int ordinal;
+
+    Reference(String containerId, int ordinal) {
+      this.containerId = containerId;
+      this.ordinal = ordinal;
+    }
+
+    public String getContainerId() {
+      return containerId;
+    }
+
+    /**
+     * @return The zero-based position of the reference among the container's children.
+     */
+    public int getOrdinal() {
+      return ordinal;
+    }
+
+    @Override
+    public String toString() {
+      return containerId + "[" + ordinal + "]";
+    }
+  }
+
+  private static class IndexedContainer {
+    private final String[] childIds;
+    private final boolean[] managedObjects;
+
+    private IndexedContainer(String[] childIds, boolean[] managedObjects) {
+      this.childIds = childIds;
+      this.managedObjects = managedObjects;
+    }
+  }
+
+}
@@ -0,0 +1,866 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.control.ObjectDestroyOptions;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.ContainerUtilsMessageProperties;
+import com.rsicms.rsuite.utils.container.metrics.ContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.NoOpContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.RepositoryCall;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+import com.rsicms.rsuite.utils.mo.MOUtils;
+import com.rsicms.rsuite.utils.operation.result.OperationResult;
+
+/**
+ * Deletes lists of containers and MOs, either on the calling thread or, when the options call for
+ * more than one worker, concurrently on a bounded number of worker threads.
+ * <p>
+ * In parallel mode, the outcome of each deletion is recorded per object and only added to the
+ * <code>OperationResult</code> by the calling thread, once the phase completes. The result's
+ * messages therefore retain the order of the given lists. The "deleting" messages of a phase are
+ * added first, for only the objects whose deletion was attempted, followed by the failures.
+ * <p>
+ * When not in parallel mode, each object's "deleting" message is added just before the object is
+ * deleted. Either way, the result never reports a deletion that was not attempted. The IDs of the
+ * plan entries deleted are available from {@link #getDeletedIds()}.
+ * <p>
+ * In parallel mode, the order in which objects are deleted within a phase is not guaranteed. The
+ * RSuite services are used from the worker threads; the caller is responsible for only enabling
+ * parallel mode where that is permitted.
+ * <p>
+ * When the options call for summarized messages, the per-object "deleting" messages are not added
+ * to the result. Instead, progress is logged every progress interval, and the counts of each
+ * phase are added to the result once it completes.
+ */
+public class ContainerDeletionEngine {
+
+  private final static AtomicInteger threadCount = new AtomicInteger();
+
+  private Log log = LogFactory.getLog(ContainerDeletionEngine.class);
+
+  private ExecutionContext context;
+
+  private User user;
+
+  private ContainerDeletionOptions options;
+
+  private MOUtils moUtils;
+
+  private ObjectDestroyOptions destroyOptions;
+
+  private ContainerInstrumentation instrumentation = NoOpContainerInstrumentation.INSTANCE;
+
+  private final AtomicInteger skippedCheckOutCnt = new AtomicInteger();
+
+  private DeletionJournal journal;
+
+  private boolean resuming;
+
+  private final AtomicInteger alreadyDeletedCnt = new AtomicInteger();
+
+  /**
+   * The IDs of the plan entries this engine attempted to delete.
+   */
+  private final Set<String> attemptedIds =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * The IDs of the plan entries deleted by this engine.
+   */
+  private final Set<String> deletedIds =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * Construct an instance of this engine.
+   *
+   * @param context
+   * @param user The user to operate as.
+   * @param options Deletion options. When null, the defaults are used.
+   */
+  public ContainerDeletionEngine(ExecutionContext context, User user,
+      ContainerDeletionOptions options) {
+    this.context = context;
+    this.user = user;
+    this.options = options == null ? new ContainerDeletionOptions() : options;
+    this.moUtils = new MOUtils();
+    this.destroyOptions = new ObjectDestroyOptions();
+  }
+
+  /**
+   * Specify the log to write progress and, in summarized mode, per-object messages to. By default,
+   * this class' log is used.
+   *
+   * @param log
+   */
+  public void setLog(Log log) {
+    if (log != null) {
+      this.log = log;
+    }
+  }
+
+  /**
+   * Specify a journal to record each object of a plan in as it is deleted.
+   *
+   * @param journal
+   */
+  public void setJournal(DeletionJournal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Specify whether the plan being deleted is the remainder of an interrupted deletion. When
+   * resuming, a plan's object that cannot be deleted as it no longer exists, meaning retrieving it
+   * returns null, is counted as deleted, as it may have been deleted after the journal's last
+   * checkpoint was written.
+   *
+   * @param resuming
+   */
+  public void setResuming(boolean resuming) {
+    this.resuming = resuming;
+  }
+
+  /**
+   * Report the latency of each check out, destroy and container deletion to the given
+   * instrumentation.
+   *
+   * @param instrumentation Must be safe for use by multiple threads when in parallel mode.
+   */
+  public void setInstrumentation(ContainerInstrumentation instrumentation) {
+    this.instrumentation =
+        instrumentation == null ? NoOpContainerInstrumentation.INSTANCE : instrumentation;
+  }
+
+  /**
+   * Delete the given containers, in the list's order when not in parallel mode. Referenced content
+   * is not deleted.
+   *
+   * @param containers
+   * @param result The result to add messages and failures to.
+   * @return The number of containers that could not be deleted. Always zero when not in parallel
+   *         mode as the first failure is thrown.
+   * @throws RSuiteException Thrown when not in parallel mode and a container could not be deleted,
+   *         or when interrupted while waiting for the workers.
+   */
+  public int deleteContainers(List<? extends ContentAssemblyNodeContainer> containers,
+      OperationResult result) throws RSuiteException {
+    if (containers == null || containers.isEmpty()) {
+      return 0;
+    }
+    return deletePlannedContainers(DeletionPlan.toContainerEntries(containers), result);
+  }
+
+  /**
+   * Same as {@link #deleteContainers(List, OperationResult)} but for the containers of a plan.
+   *
+   * @param entries
+   * @param result
+   * @return The number of containers that could not be deleted.
+   * @throws RSuiteException
+   */
+  public int deletePlannedContainers(List<DeletionPlan.Entry> entries, OperationResult result)
+      throws RSuiteException {
+    if (entries == null || entries.isEmpty()) {
+      return 0;
+    }
+
+    final Progress progress = new Progress("info.deleted.containers.progress", entries.size());
+    if (!options.isParallel()) {
+      for (DeletionPlan.Entry entry : entries) {
+        addDeletingMessage(entry, result);
+        deletePlannedContainer(entry);
+        progress.increment();
+      }
+      addSummary("info.deleted.containers.summary", entries.size(), 0, result);
+      return 0;
+    }
+
+    Exception[] outcomes =
+        processInParallel(entries, new ObjectProcessor<DeletionPlan.Entry>() {
+          @Override
+          public void process(DeletionPlan.Entry entry) throws RSuiteException {
+            try {
+              deletePlannedContainer(entry);
+            } finally {
+              progress.increment();
+            }
+          }
+        });
+    addDeletingMessages(entries, result);
+    int failureCnt = 0;
+    for (Exception e : outcomes) {
+      if (e != null) {
+        result.addFailure(e);
+        failureCnt++;
+      }
+    }
+    addSummary("info.deleted.containers.summary", entries.size(), failureCnt, result);
+    return failureCnt;
+  }
+
+  /**
+   * Check out and destroy the given MOs, in the list's order when not in parallel mode. An MO that
+   * cannot be checked out or destroyed is reported as a warning.
+   * <p>
+   * The MOs are processed in batches of the configured size: every MO in a batch is checked out
+   * before any is destroyed. In parallel mode, each worker takes a batch at a time. When the
+   * options call for prefetching check-out state, the owner of every MO is determined before the
+   * first batch; MOs already checked out by the user are then not checked out again, and those not
+   * checked out are checked out directly. Otherwise, MOs are checked out through
+   * <code>MOUtils</code>.
+   *
+   * @param mos
+   * @param result The result to add messages and warnings to.
+   * @return The number of MOs that could not be destroyed.
+   * @throws RSuiteException Thrown when interrupted while waiting for the workers.
+   */
+  public int deleteManagedObjects(List<? extends ManagedObject> mos, OperationResult result)
+      throws RSuiteException {
+    if (mos == null || mos.isEmpty()) {
+      return 0;
+    }
+    return deletePlannedManagedObjects(DeletionPlan.toManagedObjectEntries(mos), result);
+  }
+
+  /**
+   * Same as {@link #deleteManagedObjects(List, OperationResult)} but for the MOs of a plan.
+   *
+   * @param entries
+   * @param result
+   * @return The number of MOs that could not be destroyed.
+   * @throws RSuiteException
+   */
+  public int deletePlannedManagedObjects(List<DeletionPlan.Entry> entries,
+      OperationResult result) throws RSuiteException {
+    if (entries == null || entries.isEmpty()) {
+      return 0;
+    }
+
+    final List<DeletionPlan.Entry> work = new ArrayList<DeletionPlan.Entry>(entries);
+    final Map<String, CheckOutState> checkOutStates = options.isPrefetchCheckOutState()
+        ? prefetchCheckOutStates(work) : Collections.<String, CheckOutState>emptyMap();
+    final AtomicReferenceArray<RSuiteException> outcomes =
+        new AtomicReferenceArray<RSuiteException>(work.size());
+    final Progress progress =
+        new Progress("info.destroyed.managed.objects.progress", work.size());
+    int skippedCheckOutCntBefore = skippedCheckOutCnt.get();
+
+    List<Batch> batches = new ArrayList<Batch>();
+    for (int i = 0; i < work.size(); i += options.getDestroyBatchSize()) {
+      batches.add(new Batch(i, Math.min(i + options.getDestroyBatchSize(), work.size())));
+    }
+
+    int warningCnt = 0;
+    if (!options.isParallel()) {
+      for (Batch batch : batches) {
+        destroyBatch(work, batch, checkOutStates, outcomes, progress, result);
+        warningCnt += addWarnings(outcomes, batch, result);
+      }
+    } else {
+      Exception[] batchOutcomes = processInParallel(batches, new ObjectProcessor<Batch>() {
+        @Override
+        public void process(Batch batch) throws RSuiteException {
+          destroyBatch(work, batch, checkOutStates, outcomes, progress, null);
+        }
+      });
+      addDeletingMessages(work, result);
+      for (int i = 0; i < batches.size(); i++) {
+        if (batchOutcomes[i] != null) {
+          markUnprocessed(work, batches.get(i), outcomes, batchOutcomes[i]);
+        }
+        warningCnt += addWarnings(outcomes, batches.get(i), result);
+      }
+    }
+
+    int skippedCnt = skippedCheckOutCnt.get() - skippedCheckOutCntBefore;
+    if (skippedCnt > 0) {
+      result.addInfoMessage(ContainerUtilsMessageProperties.get(
+          "info.skipped.redundant.check.outs", skippedCnt, user.getUserId()));
+    }
+    addSummary("info.destroyed.managed.objects.summary", work.size(), warningCnt, result);
+    return warningCnt;
+  }
+
+  /**
+   * @param id
+   * @return True if this engine deleted the plan entry with the given ID.
+   */
+  public boolean isDeleted(String id) {
+    return deletedIds.contains(id);
+  }
+
+  /**
+   * @return The IDs of the plan entries this engine deleted, in no particular order.
+   */
+  public Set<String> getDeletedIds() {
+    return Collections.unmodifiableSet(deletedIds);
+  }
+
+  /**
+   * @return When resuming, the number of plan entries counted as deleted as they no longer
+   *         existed.
+   */
+  public int getAlreadyDeletedCount() {
+    return alreadyDeletedCnt.get();
+  }
+
+  /**
+   * @return The number of MO check outs skipped as the user already had the MO checked out.
+   */
+  public int getSkippedCheckOutCount() {
+    return skippedCheckOutCnt.get();
+  }
+
+  /**
+   * Delete a content assembly node container, regardless of it being a CA or CANode. Referenced
+   * content is not deleted.
+   *
+   * @param container
+   * @throws RSuiteException
+   */
+  public void deleteContainer(ContentAssemblyNodeContainer container) throws RSuiteException {
+    deleteContainer(container.getId(), container instanceof ContentAssembly);
+  }
+
+  /**
+   * Delete a plan's container, then record it in the journal, if any.
+   *
+   * @param entry
+   * @throws RSuiteException
+   */
+  public void deletePlannedContainer(DeletionPlan.Entry entry) throws RSuiteException {
+    attemptedIds.add(entry.getId());
+    try {
+      deleteContainer(entry.getId(), entry.getKind() == ReferencedItem.Kind.CONTENT_ASSEMBLY);
+    } catch (RSuiteException e) {
+      checkAlreadyDeleted(entry, e);
+    }
+    recordDeleted(entry);
+  }
+
+  private void deleteContainer(String id, boolean isContentAssembly) throws RSuiteException {
+    acquireThrottle();
+    long start = System.nanoTime();
+    if (isContentAssembly) {
+      try {
+        context.getContentAssemblyService().removeContentAssembly(user, id);
+      } finally {
+        completeWrite(RepositoryCall.REMOVE_CONTENT_ASSEMBLY, start);
+      }
+    } else {
+      try {
+        context.getContentAssemblyService().deleteCANode(user, id);
+      } finally {
+        completeWrite(RepositoryCall.DELETE_CA_NODE, start);
+      }
+    }
+  }
+
+  private void recordDeleted(DeletionPlan.Entry entry) throws RSuiteException {
+    deletedIds.add(entry.getId());
+    if (journal != null) {
+      journal.recordDeleted(entry);
+    }
+  }
+
+  /**
+   * Check out then destroy an MO.
+   *
+   * @param moId
+   * @throws RSuiteException
+   */
+  public void deleteManagedObject(String moId) throws RSuiteException {
+    checkOut(moId, null);
+    destroy(moId);
+  }
+
+  /**
+   * Determine who has each of the given MOs checked out, concurrently in parallel mode. The state
+   * of an MO whose owner could not be determined is omitted.
+   *
+   * @param mos
+   * @return The check-out state of each MO, by ID.
+   * @throws RSuiteException Thrown when interrupted while waiting for the workers.
+   */
+  private Map<String, CheckOutState> prefetchCheckOutStates(List<DeletionPlan.Entry> mos)
+      throws RSuiteException {
+    final ConcurrentMap<String, CheckOutState> states =
+        new ConcurrentHashMap<String, CheckOutState>();
+    ObjectProcessor<DeletionPlan.Entry> prefetcher = new ObjectProcessor<DeletionPlan.Entry>() {
+      @Override
+      public void process(DeletionPlan.Entry mo) throws RSuiteException {
+        long start = System.nanoTime();
+        String owner;
+        try {
+          owner = context.getManagedObjectService().getCheckOutOwner(mo.getId());
+        } finally {
+          instrumentation.repositoryCallCompleted(RepositoryCall.GET_CHECK_OUT_OWNER,
+              System.nanoTime() - start);
+        }
+        if (owner == null) {
+          states.put(mo.getId(), CheckOutState.NOT_CHECKED_OUT);
+        } else if (owner.equals(user.getUserId())) {
+          states.put(mo.getId(), CheckOutState.CHECKED_OUT_BY_USER);
+        } else {
+          states.put(mo.getId(), CheckOutState.CHECKED_OUT_BY_OTHER);
+        }
+      }
+    };
+
+    // An MO whose state is unknown is checked out as though it wasn't prefetched.
+    if (!options.isParallel()) {
+      for (DeletionPlan.Entry mo : mos) {
+        try {
+          prefetcher.process(mo);
+        } catch (RSuiteException e) {
+          log.debug(e.getMessage());
+        }
+      }
+    } else {
+      processInParallel(mos, prefetcher);
+    }
+    return states;
+  }
+
+  /**
+   * Check out every MO in the batch, then destroy those that were checked out and record them in
+   * the journal, if any. The failure of each MO that could not be destroyed is recorded in the
+   * outcomes array.
+   * 
+   * @param result When not in parallel mode, the result to add each "deleting" message to, just
+   *        before the MO is destroyed; otherwise, null.
+   */
+  private void destroyBatch(List<DeletionPlan.Entry> mos, Batch batch,
+      Map<String, CheckOutState> checkOutStates, AtomicReferenceArray<RSuiteException> outcomes,
+      Progress progress, OperationResult result) throws RSuiteException {
+    for (int i = batch.fromIdx; i < batch.toIdx; i++) {
+      String moId = mos.get(i).getId();
+      try {
+        checkOut(moId, checkOutStates.get(moId));
+      } catch (RSuiteException e) {
+        outcomes.set(i, e);
+      }
+    }
+    for (int i = batch.fromIdx; i < batch.toIdx; i++) {
+      DeletionPlan.Entry mo = mos.get(i);
+      if (outcomes.get(i) == null) {
+        if (result != null) {
+          addDeletingMessage(mo, result);
+        }
+        attemptedIds.add(mo.getId());
+        try {
+          destroy(mo.getId());
+        } catch (RSuiteException e) {
+          outcomes.set(i, e);
+        }
+      }
+      try {
+        if (outcomes.get(i) != null) {
+          checkAlreadyDeleted(mo, outcomes.get(i));
+          outcomes.set(i, null);
+        }
+        recordDeleted(mo);
+      } catch (RSuiteException e) {
+        outcomes.set(i, e);
+      }
+      progress.increment();
+    }
+  }
+
+  /**
+   * Record the failure of a batch that did not complete as the outcome of each of its MOs that was
+   * neither destroyed nor already found to have failed.
+   *
+   * @param failure A {@link NotAttemptedException} when no worker took the batch; otherwise, what
+   *        stopped the batch.
+   */
+  private void markUnprocessed(List<DeletionPlan.Entry> mos, Batch batch,
+      AtomicReferenceArray<RSuiteException> outcomes, Exception failure) {
+    RSuiteException outcome = failure instanceof RSuiteException ? (RSuiteException) failure
+        : new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR, failure.getMessage(), failure);
+    for (int i = batch.fromIdx; i < batch.toIdx; i++) {
+      if (outcomes.get(i) == null && !deletedIds.contains(mos.get(i).getId())) {
+        outcomes.set(i, outcome);
+      }
+    }
+  }
+
+  /**
+   * Add a warning for every MO of the batch that could not be destroyed.
+   *
+   * @return The number of warnings added.
+   */
+  private int addWarnings(AtomicReferenceArray<RSuiteException> outcomes, Batch batch,
+      OperationResult result) {
+    int warningCnt = 0;
+    for (int i = batch.fromIdx; i < batch.toIdx; i++) {
+      if (outcomes.get(i) != null) {
+        result.addWarning(outcomes.get(i));
+        warningCnt++;
+      }
+    }
+    return warningCnt;
+  }
+
+  /**
+   * Check out an MO, unless the user already has it checked out.
+   *
+   * @param moId
+   * @param state The prefetched check-out state, or null when unknown. When the MO is not checked
+   *        out, it is checked out directly; otherwise, <code>MOUtils</code> determines how.
+   * @throws RSuiteException
+   */
+  private void checkOut(String moId, CheckOutState state) throws RSuiteException {
+    if (state == CheckOutState.CHECKED_OUT_BY_USER) {
+      skippedCheckOutCnt.incrementAndGet();
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      if (state == CheckOutState.NOT_CHECKED_OUT) {
+        context.getManagedObjectService().checkOut(user, moId);
+      } else {
+        moUtils.checkout(context, user, moId);
+      }
+    } finally {
+      instrumentation.repositoryCallCompleted(RepositoryCall.CHECK_OUT, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * When resuming, determine whether a plan's object that could not be deleted no longer exists.
+   * The lookup is only made after a failure, so it costs nothing when the deletion succeeds.
+   *
+   * @param entry
+   * @param failure The failure deleting the object.
+   * @throws RSuiteException The given failure, unless resuming and the object no longer exists.
+   */
+  private void checkAlreadyDeleted(DeletionPlan.Entry entry, RSuiteException failure)
+      throws RSuiteException {
+    if (!resuming || exists(entry, failure)) {
+      throw failure;
+    }
+    alreadyDeletedCnt.incrementAndGet();
+    if (log.isDebugEnabled()) {
+      log.debug(ContainerUtilsMessageProperties.get("info.object.already.deleted",
+          entry.getId()));
+    }
+  }
+
+  /**
+   * @return False if retrieving the plan's object returns null.
+   * @throws RSuiteException The given failure when the object could not be retrieved, as it is
+   *         then unknown whether the object exists.
+   */
+  private boolean exists(DeletionPlan.Entry entry, RSuiteException failure)
+      throws RSuiteException {
+    boolean isManagedObject = entry.getKind() == ReferencedItem.Kind.MANAGED_OBJECT;
+    long start = System.nanoTime();
+    try {
+      return isManagedObject
+          ? context.getManagedObjectService().getManagedObject(user, entry.getId()) != null
+          : context.getContentAssemblyService().getContentAssemblyNodeContainer(user,
+              entry.getId()) != null;
+    } catch (RSuiteException e) {
+      log.debug(e.getMessage());
+      throw failure;
+    } finally {
+      instrumentation.repositoryCallCompleted(
+          isManagedObject ? RepositoryCall.GET_MANAGED_OBJECT : RepositoryCall.GET_CONTAINER,
+          System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Check out an MO with a single call. When the check out fails, the MO's owner is looked up: an
+   * MO the user already has checked out is left as is.
+   *
+   * @param moId
+   * @throws RSuiteException Thrown when the MO is not checked out by the user and could not be
+   *         checked out.
+   */
+  private void checkOut(String moId) throws RSuiteException {
+    RSuiteException failure;
+    long start = System.nanoTime();
+    try {
+      context.getManagedObjectService().checkOut(user, moId);
+      return;
+    } catch (RSuiteException e) {
+      failure = e;
+    } finally {
+      instrumentation.repositoryCallCompleted(RepositoryCall.CHECK_OUT, System.nanoTime() - start);
+    }
+
+    String owner;
+    start = System.nanoTime();
+    try {
+      owner = context.getManagedObjectService().getCheckOutOwner(moId);
+    } catch (RSuiteException e) {
+      throw failure;
+    } finally {
+      instrumentation.repositoryCallCompleted(RepositoryCall.GET_CHECK_OUT_OWNER,
+          System.nanoTime() - start);
+    }
+    if (!user.getUserId().equals(owner)) {
+      throw failure;
+    }
+    skippedCheckOutCnt.incrementAndGet();
+  }
+
+  private void destroy(String moId) throws RSuiteException {
+    acquireThrottle();
+    long start = System.nanoTime();
+    try {
+      context.getManagedObjectService().destroy(user, moId, destroyOptions);
+    } finally {
+      completeWrite(RepositoryCall.DESTROY, start);
+    }
+  }
+
+  /**
+   * When the options specify a throttle, wait until it allows the next destroy or remove call.
+   *
+   * @throws RSuiteException Thrown when interrupted while waiting.
+   */
+  private void acquireThrottle() throws RSuiteException {
+    if (options.getThrottle() != null) {
+      try {
+        options.getThrottle().acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+            ContainerUtilsMessageProperties.get("error.interrupted.while.throttled"), e);
+      }
+    }
+  }
+
+  /**
+   * Report a destroy or remove call's latency to the instrumentation and, when specified, the
+   * throttle.
+   */
+  private void completeWrite(RepositoryCall call, long startNanos) {
+    long elapsedNanos = System.nanoTime() - startNanos;
+    instrumentation.repositoryCallCompleted(call, elapsedNanos);
+    if (options.getThrottle() != null) {
+      options.getThrottle().release(elapsedNanos);
+    }
+  }
+
+  /**
+   * Once a parallel phase completes, add the "deleting" message of each entry whose deletion was
+   * attempted, in the order of the given list.
+   */
+  private void addDeletingMessages(List<DeletionPlan.Entry> entries, OperationResult result)
+      throws RSuiteException {
+    if (options.isSummarizeMessages() && !log.isDebugEnabled()) {
+      return;
+    }
+    for (DeletionPlan.Entry entry : entries) {
+      if (attemptedIds.contains(entry.getId())) {
+        addDeletingMessage(entry, result);
+      }
+    }
+  }
+
+  /**
+   * Add the "deleting" message to the result or, in summarized mode, only format and log it when
+   * debug logging is enabled.
+   */
+  private void addDeletingMessage(DeletionPlan.Entry entry, OperationResult result)
+      throws RSuiteException {
+    if (!options.isSummarizeMessages() || log.isDebugEnabled()) {
+      String msg = entry.getDisplayName() == null
+          ? ContainerUtilsMessageProperties.get("info.deleting.object.by.id", entry.getId())
+          : ContainerUtilsMessageProperties.get("info.deleting.object", entry.getDisplayName(),
+              entry.getId());
+      if (!options.isSummarizeMessages()) {
+        result.addInfoMessage(msg);
+      } else {
+        log.debug(msg);
+      }
+    }
+  }
+
+  /**
+   * In summarized mode, add a phase's counts to the result.
+   */
+  private void addSummary(String messageKey, int total, int failureCnt, OperationResult result)
+      throws RSuiteException {
+    if (options.isSummarizeMessages()) {
+      result.addInfoMessage(
+          ContainerUtilsMessageProperties.get(messageKey, total - failureCnt, total, failureCnt));
+    }
+  }
+
+  /**
+   * Process the given objects using no more than the configured number of workers. Each worker
+   * takes the next object from the shared list until none remain.
+   *
+   * @param objects
+   * @param processor
+   * @return An array parallel to the given list, with the exception processing each object threw,
+   *         a {@link NotAttemptedException} for those no worker took as the workers were
+   *         interrupted, or null for those that were processed.
+   * @throws RSuiteException Thrown when interrupted while waiting for the workers, or when a worker
+   *         fails unexpectedly.
+   */
+  protected <T> Exception[] processInParallel(List<? extends T> objects,
+      final ObjectProcessor<T> processor) throws RSuiteException {
+    final List<T> work = new ArrayList<T>(objects);
+    final AtomicInteger nextIdx = new AtomicInteger();
+    final AtomicReferenceArray<Exception> outcomes =
+        new AtomicReferenceArray<Exception>(work.size());
+
+    int workerCnt = Math.min(options.getWorkerCount(), work.size());
+    ExecutorService executor = options.getExecutorService();
+    boolean ownExecutor = executor == null;
+    if (ownExecutor) {
+      executor = Executors.newFixedThreadPool(workerCnt, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t =
+              new Thread(r, "container-deletion-worker-" + threadCount.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+
+    List<Future<?>> futures = new ArrayList<Future<?>>(workerCnt);
+    try {
+      for (int i = 0; i < workerCnt; i++) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            int idx;
+            while (!Thread.currentThread().isInterrupted()
+                && (idx = nextIdx.getAndIncrement()) < work.size()) {
+              try {
+                processor.process(work.get(idx));
+              } catch (Exception e) {
+                outcomes.set(idx, e);
+              }
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      Thread.currentThread().interrupt();
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("error.interrupted.while.deleting", work.size()),
+          e);
+    } catch (ExecutionException e) {
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR, e.getCause().getMessage(),
+          e.getCause());
+    } finally {
+      if (ownExecutor) {
+        executor.shutdownNow();
+      }
+    }
+
+    /*
+     * An interrupted worker stops taking objects, so an object is only processed if it was taken.
+     * Those no worker took were not attempted, which must not pass for success.
+     */
+    Exception[] results = new Exception[work.size()];
+    int takenCnt = Math.min(nextIdx.get(), work.size());
+    for (int i = 0; i < results.length; i++) {
+      results[i] = i < takenCnt ? outcomes.get(i) : new NotAttemptedException();
+    }
+    return results;
+  }
+
+  /**
+   * In summarized mode, counts the objects a phase has processed and logs every progress
+   * interval. Safe for use by multiple threads.
+   */
+  private class Progress {
+
+    private final String messageKey;
+
+    private final int total;
+
+    private final AtomicInteger processedCnt = new AtomicInteger();
+
+    private Progress(String messageKey, int total) {
+      this.messageKey = messageKey;
+      this.total = total;
+    }
+
+    private void increment() throws RSuiteException {
+      int cnt = processedCnt.incrementAndGet();
+      if (options.isSummarizeMessages() && log.isInfoEnabled()
+          && (cnt % options.getProgressInterval() == 0 || cnt == total)) {
+        log.info(ContainerUtilsMessageProperties.get(messageKey, cnt, total));
+      }
+    }
+  }
+
+  /**
+   * Processes a single object, such as by deleting it.
+   */
+  protected interface ObjectProcessor<T> {
+    void process(T object) throws RSuiteException;
+  }
+
+  /**
+   * The outcome of an object no worker took, as the workers were interrupted.
+   */
+  protected static class NotAttemptedException extends RSuiteException {
+
+    private static final long serialVersionUID = 1L;
+
+    protected NotAttemptedException() {
+      super(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("error.not.attempted.after.interruption"));
+    }
+  }
+
+  /**
+   * The check-out state of an MO, as determined before its batch is processed.
+   */
+  private enum CheckOutState {
+    NOT_CHECKED_OUT, CHECKED_OUT_BY_USER, CHECKED_OUT_BY_OTHER
+  }
+
+  /**
+   * A range of the MOs being destroyed.
+   */
+  private static class Batch {
+    private final int fromIdx;
+    private final int toIdx;
+
+    private Batch(int fromIdx, int toIdx) {
+      this.fromIdx = fromIdx;
+      this.toIdx = toIdx;
+    }
+  }
+
+}
@@ -0,0 +1,224 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Options controlling how {@link ContainerDeletionEngine} deletes a container's referenced
+ * content. The defaults match the original, single-threaded behavior.
+ */
+public class ContainerDeletionOptions {
+
+  /**
+   * Number of objects that may be deleted concurrently within the CA and MO phases.
+   */
+  private int workerCount = 1;
+
+  /**
+   * Optional executor to run parallel deletions on. When null, one is created (and shut down) per
+   * operation.
+   */
+  private ExecutorService executorService;
+
+  /**
+   * Number of objects that may be retrieved concurrently while traversing the container.
+   */
+  private int traversalParallelism = 1;
+
+  /**
+   * When true, per-object messages are replaced by periodic progress and final counts.
+   */
+  private boolean summarizeMessages;
+
+  /**
+   * In summarized mode, the number of objects between progress messages.
+   */
+  private int progressInterval = 1000;
+
+  /**
+   * When true, the check-out state of every MO is determined before any is checked out.
+   */
+  private boolean prefetchCheckOutState;
+
+  /**
+   * Number of MOs to check out before destroying them.
+   */
+  private int destroyBatchSize = 1;
+
+  /**
+   * Optional limit on the rate and concurrency of destroy and remove calls.
+   */
+  private DeletionThrottle throttle;
+
+  /**
+   * Optional file to journal the deletion plan and progress to.
+   */
+  private File journalFile;
+
+  /**
+   * @return The number of objects that may be deleted concurrently. One means the calling thread
+   *         performs every deletion.
+   */
+  public int getWorkerCount() {
+    return workerCount;
+  }
+
+  /**
+   * @param workerCount The number of objects that may be deleted concurrently. Values less than
+   *        one are treated as one.
+   */
+  public void setWorkerCount(int workerCount) {
+    this.workerCount = workerCount < 1 ? 1 : workerCount;
+  }
+
+  /**
+   * @return The executor deletions are to run on, or null when one is to be created per operation.
+   */
+  public ExecutorService getExecutorService() {
+    return executorService;
+  }
+
+  /**
+   * Specify an executor to run parallel deletions on. The caller retains ownership; it is not shut
+   * down by this library. No more than the worker count of tasks are submitted to it at a time.
+   *
+   * @param executorService
+   */
+  public void setExecutorService(ExecutorService executorService) {
+    this.executorService = executorService;
+  }
+
+  /**
+   * @return The number of objects that may be retrieved concurrently while traversing the
+   *         container. One means the calling thread traverses the container.
+   */
+  public int getTraversalParallelism() {
+    return traversalParallelism;
+  }
+
+  /**
+   * @param traversalParallelism The number of objects that may be retrieved concurrently while
+   *        traversing the container. Values less than one are treated as one. Not used by the
+   *        sequential walk of a {@link DeletionPlanner}.
+   */
+  public void setTraversalParallelism(int traversalParallelism) {
+    this.traversalParallelism = traversalParallelism < 1 ? 1 : traversalParallelism;
+  }
+
+  /**
+   * @return True if per-object messages are to be replaced by progress and final counts.
+   */
+  public boolean isSummarizeMessages() {
+    return summarizeMessages;
+  }
+
+  /**
+   * Specify whether to replace the "deleting" message recorded in the operation result for every
+   * object with a progress message logged every progress interval and final counts per phase. Per
+   * object messages are then only formatted and logged when debug logging is enabled. Warnings and
+   * failures are always recorded individually.
+   *
+   * @param summarizeMessages
+   */
+  public void setSummarizeMessages(boolean summarizeMessages) {
+    this.summarizeMessages = summarizeMessages;
+  }
+
+  /**
+   * @return In summarized mode, the number of objects between progress messages.
+   */
+  public int getProgressInterval() {
+    return progressInterval;
+  }
+
+  /**
+   * @param progressInterval In summarized mode, the number of objects between progress messages.
+   *        Values less than one are treated as one.
+   */
+  public void setProgressInterval(int progressInterval) {
+    this.progressInterval = progressInterval < 1 ? 1 : progressInterval;
+  }
+
+  /**
+   * @return True if the check-out state of every MO is to be determined before any is checked
+   *         out.
+   */
+  public boolean isPrefetchCheckOutState() {
+    return prefetchCheckOutState;
+  }
+
+  /**
+   * Specify whether to determine who has each MO checked out before the MO phase's first batch,
+   * with one <code>getCheckOutOwner</code> call per MO, made concurrently in parallel mode. This
+   * takes the place of the state lookup <code>MOUtils</code> makes before each check out: an MO
+   * that is not checked out is then checked out with a single call, and one the user already has
+   * checked out is not checked out again. An MO checked out by another user, or whose state could
+   * not be determined, is still checked out through <code>MOUtils</code>. Off by default.
+   *
+   * @param prefetchCheckOutState
+   */
+  public void setPrefetchCheckOutState(boolean prefetchCheckOutState) {
+    this.prefetchCheckOutState = prefetchCheckOutState;
+  }
+
+  /**
+   * @return The number of MOs to check out before destroying them.
+   */
+  public int getDestroyBatchSize() {
+    return destroyBatchSize;
+  }
+
+  /**
+   * @param destroyBatchSize The number of MOs to check out before destroying any of them. In
+   *        parallel mode, also the number of MOs a worker takes at a time. RSuite has no bulk
+   *        check out or destroy, so each MO still takes its own calls. Values less than one are
+   *        treated as one, the default, which checks out and destroys one MO at a time.
+   */
+  public void setDestroyBatchSize(int destroyBatchSize) {
+    this.destroyBatchSize = destroyBatchSize < 1 ? 1 : destroyBatchSize;
+  }
+
+  /**
+   * @return The throttle limiting destroy and remove calls, or null when they are not limited.
+   */
+  public DeletionThrottle getThrottle() {
+    return throttle;
+  }
+
+  /**
+   * Specify a throttle to limit the rate and concurrency of destroy and remove calls, adapting to
+   * their latency. A throttle may be shared by multiple deletions. In parallel mode, the worker
+   * count remains the upper bound of concurrency.
+   *
+   * @param throttle
+   */
+  public void setThrottle(DeletionThrottle throttle) {
+    this.throttle = throttle;
+  }
+
+  /**
+   * @return The file to journal the deletion plan and progress to, or null when not journaling.
+   */
+  public File getJournalFile() {
+    return journalFile;
+  }
+
+  /**
+   * Specify a local file to write the deletion plan to, and to record each object in as it is
+   * deleted, allowing an incomplete deletion to be resumed. An existing file is replaced. See
+   * {@link DeletionJournal}.
+   *
+   * @param journalFile
+   */
+  public void setJournalFile(File journalFile) {
+    this.journalFile = journalFile;
+  }
+
+  /**
+   * @return True if deletions within a phase are to be performed concurrently.
+   */
+  public boolean isParallel() {
+    return workerCount > 1;
+  }
+
+}
@@ -0,0 +1,404 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.ContainerUtilsMessageProperties;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+
+/**
+ * A local file recording a {@link DeletionPlan} and the progress made executing it, allowing an
+ * interrupted deletion to be resumed without traversing the repository again.
+ * <p>
+ * The file is line-oriented text. A header line is followed by one line per plan entry, in
+ * sequence order: <code>S</code> for a starting container or <code>P</code> for any other
+ * entry, then the kind (<code>A</code> for a CA, <code>N</code> for a CANode or <code>M</code> for
+ * an MO) and the ID. A line with a single <code>-</code> ends the plan, after which a
+ * <code>D</code> line with the entry's sequence number is appended for every object deleted, and
+ * an <code>X</code> line once the deletion completes. For example:
+ *
+ * <pre>
+ * rsuite-container-deletion-journal 1
+ * S A 1000
+ * P A 1004
+ * P M 1002
+ * -
+ * D 0
+ * D 2
+ * </pre>
+ * <p>
+ * The plan is synced to disk before any object is deleted. Each checkpoint is flushed to the
+ * operating system as it is recorded, so it survives the process ending unexpectedly. A truncated
+ * last line is ignored, and removed when the journal is opened so that further progress is
+ * appended on a line of its own. Instances are safe for use by multiple threads.
+ */
+public class DeletionJournal implements Closeable {
+
+  private final static Log log = LogFactory.getLog(DeletionJournal.class);
+
+  private final static String HEADER = "rsuite-container-deletion-journal 1";
+
+  private final static Charset CHARSET = Charset.forName("UTF-8");
+
+  private File file;
+
+  private DeletionPlan plan;
+
+  private BitSet deleted;
+
+  private int deletedCnt;
+
+  private boolean completed;
+
+  private FileOutputStream out;
+
+  private Writer writer;
+
+  private DeletionJournal(File file, DeletionPlan plan, BitSet deleted, boolean completed) {
+    this.file = file;
+    this.plan = plan;
+    this.deleted = deleted;
+    this.deletedCnt = deleted.cardinality();
+    this.completed = completed;
+  }
+
+  /**
+   * Create a journal, writing the plan to the given file. An existing file is replaced.
+   * <p>
+   * The journal's plan is to be executed instead of the given one, as the given plan's entries are
+   * renumbered when not numbered from zero, such as when it is the remainder of another.
+   *
+   * @param file
+   * @param plan
+   * @return The journal, open for recording progress.
+   * @throws RSuiteException Thrown if the file cannot be written.
+   */
+  public static DeletionJournal create(File file, DeletionPlan plan) throws RSuiteException {
+    plan = plan.renumber();
+    DeletionJournal journal = new DeletionJournal(file, plan, new BitSet(), false);
+    try {
+      journal.openForAppend(false);
+      journal.writer.write(HEADER);
+      journal.writer.write('\n');
+      for (DeletionPlan.Entry entry : plan.getStartingContainers()) {
+        journal.writeEntry('S', entry);
+      }
+      for (DeletionPlan.Entry entry : plan.getContentAssemblies()) {
+        journal.writeEntry('P', entry);
+      }
+      for (DeletionPlan.Entry entry : plan.getManagedObjects()) {
+        journal.writeEntry('P', entry);
+      }
+      journal.writer.write("-\n");
+      journal.writer.flush();
+      journal.out.getFD().sync();
+    } catch (IOException e) {
+      journal.close();
+      throw newWriteException(file, e);
+    }
+    return journal;
+  }
+
+  /**
+   * Read a journal, then open it for recording further progress.
+   *
+   * @param file
+   * @return The journal.
+   * @throws RSuiteException Thrown if the file cannot be read, is not a journal, or its plan is
+   *         incomplete.
+   */
+  public static DeletionJournal open(File file) throws RSuiteException {
+    List<DeletionPlan.Entry> starts = new ArrayList<DeletionPlan.Entry>();
+    List<DeletionPlan.Entry> cas = new ArrayList<DeletionPlan.Entry>();
+    List<DeletionPlan.Entry> mos = new ArrayList<DeletionPlan.Entry>();
+    BitSet deleted = new BitSet();
+    boolean planComplete = false;
+    boolean completed = false;
+    int sequence = 0;
+
+    String[] lines = readLines(file);
+    if (lines.length == 0 || !HEADER.equals(lines[0])) {
+      throw newInvalidException(file, 1);
+    }
+    for (int i = 1; i < lines.length; i++) {
+      String line = lines[i];
+      if (!planComplete) {
+        if ("-".equals(line)) {
+          planComplete = true;
+          continue;
+        }
+        DeletionPlan.Entry entry = parseEntry(line, sequence);
+        // Starting containers precede the other entries.
+        if (entry == null || (line.charAt(0) == 'S' && starts.size() != sequence)) {
+          throw newInvalidException(file, i + 1);
+        }
+        sequence++;
+        if (line.charAt(0) == 'S') {
+          starts.add(entry);
+        } else if (entry.getKind() == ReferencedItem.Kind.MANAGED_OBJECT) {
+          mos.add(entry);
+        } else {
+          cas.add(entry);
+        }
+      } else if ("X".equals(line)) {
+        completed = true;
+      } else {
+        int deletedSeq = parseCheckpoint(line, sequence);
+        if (deletedSeq < 0) {
+          throw newInvalidException(file, i + 1);
+        }
+        deleted.set(deletedSeq);
+      }
+    }
+
+    if (!planComplete) {
+      throw new RSuiteException(RSuiteException.ERROR_PARAM_INVALID, ContainerUtilsMessageProperties
+          .get("error.incomplete.deletion.journal", file.getPath()));
+    }
+
+    DeletionJournal journal =
+        new DeletionJournal(file, new DeletionPlan(starts, cas, mos), deleted, completed);
+    try {
+      journal.openForAppend(true);
+    } catch (IOException e) {
+      journal.close();
+      throw newWriteException(file, e);
+    }
+    return journal;
+  }
+
+  /**
+   * Read the file's complete lines. A last line without a line terminator was only partially
+   * written, and is removed from the file.
+   */
+  private static String[] readLines(File file) throws RSuiteException {
+    StringBuilder sb = new StringBuilder((int) Math.min(file.length(), Integer.MAX_VALUE));
+    Reader reader = null;
+    try {
+      reader = new InputStreamReader(new FileInputStream(file), CHARSET);
+      char[] buf = new char[8192];
+      int cnt;
+      while ((cnt = reader.read(buf)) != -1) {
+        sb.append(buf, 0, cnt);
+      }
+    } catch (IOException e) {
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("error.unable.to.read.deletion.journal",
+              file.getPath(), e.getMessage()),
+          e);
+    } finally {
+      closeQuietly(reader);
+    }
+
+    int end = sb.lastIndexOf("\n");
+    if (end < sb.length() - 1) {
+      log.warn(ContainerUtilsMessageProperties.get("warn.ignored.truncated.deletion.journal.line",
+          file.getPath()));
+      removePartialLastLine(file);
+    }
+    return end < 0 ? new String[0] : sb.substring(0, end).split("\n", -1);
+  }
+
+  /**
+   * Truncate the file after its last line terminator. A newline byte is never part of a multibyte
+   * UTF-8 sequence, so the bytes are searched directly.
+   */
+  private static void removePartialLastLine(File file) throws RSuiteException {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "rw");
+      long length = raf.length();
+      while (length > 0) {
+        raf.seek(length - 1);
+        if (raf.read() == '\n') {
+          break;
+        }
+        length--;
+      }
+      raf.setLength(length);
+    } catch (IOException e) {
+      throw newWriteException(file, e);
+    } finally {
+      closeQuietly(raf);
+    }
+  }
+
+  private static DeletionPlan.Entry parseEntry(String line, int sequence) {
+    String[] parts = line.split(" ");
+    if (parts.length != 3 || !("S".equals(parts[0]) || "P".equals(parts[0]))
+        || parts[1].length() != 1 || parts[2].isEmpty()) {
+      return null;
+    }
+    ReferencedItem.Kind kind;
+    switch (parts[1].charAt(0)) {
+      case 'A':
+        kind = ReferencedItem.Kind.CONTENT_ASSEMBLY;
+        break;
+      case 'N':
+        kind = ReferencedItem.Kind.CA_NODE;
+        break;
+      case 'M':
+        kind = ReferencedItem.Kind.MANAGED_OBJECT;
+        break;
+      default:
+        return null;
+    }
+    return new DeletionPlan.Entry(kind, parts[2], null, sequence);
+  }
+
+  /**
+   * @return The checkpoint's sequence number, or -1 when the line is not a valid checkpoint.
+   */
+  private static int parseCheckpoint(String line, int planSize) {
+    if (line.length() < 3 || !line.startsWith("D ")) {
+      return -1;
+    }
+    try {
+      int sequence = Integer.parseInt(line.substring(2));
+      return sequence >= 0 && sequence < planSize ? sequence : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private void openForAppend(boolean append) throws IOException {
+    out = new FileOutputStream(file, append);
+    writer = new BufferedWriter(new OutputStreamWriter(out, CHARSET));
+  }
+
+  private void writeEntry(char type, DeletionPlan.Entry entry) throws IOException {
+    writer.write(type);
+    writer.write(' ');
+    switch (entry.getKind()) {
+      case CONTENT_ASSEMBLY:
+        writer.write('A');
+        break;
+      case CA_NODE:
+        writer.write('N');
+        break;
+      default:
+        writer.write('M');
+    }
+    writer.write(' ');
+    writer.write(entry.getId());
+    writer.write('\n');
+  }
+
+  /**
+   * Record that the given entry's object was deleted.
+   *
+   * @param entry
+   * @throws RSuiteException Thrown if the checkpoint cannot be written.
+   */
+  public synchronized void recordDeleted(DeletionPlan.Entry entry) throws RSuiteException {
+    try {
+      writer.write("D ");
+      writer.write(Integer.toString(entry.getSequence()));
+      writer.write('\n');
+      writer.flush();
+    } catch (IOException e) {
+      throw newWriteException(file, e);
+    }
+    if (!deleted.get(entry.getSequence())) {
+      deleted.set(entry.getSequence());
+      deletedCnt++;
+    }
+  }
+
+  /**
+   * Record that the deletion completed; no objects remain to be deleted, other than any that
+   * could not be.
+   *
+   * @throws RSuiteException Thrown if the record cannot be written.
+   */
+  public synchronized void recordCompleted() throws RSuiteException {
+    try {
+      writer.write("X\n");
+      writer.flush();
+    } catch (IOException e) {
+      throw newWriteException(file, e);
+    }
+    completed = true;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return The complete plan.
+   */
+  public DeletionPlan getPlan() {
+    return plan;
+  }
+
+  /**
+   * @return The entries of the plan whose objects have yet to be deleted.
+   */
+  public synchronized DeletionPlan getRemainingPlan() {
+    return plan.getRemainder(deleted);
+  }
+
+  /**
+   * @return The number of the plan's objects recorded as deleted.
+   */
+  public synchronized int getDeletedCount() {
+    return deletedCnt;
+  }
+
+  /**
+   * @return True if the deletion was recorded as completed.
+   */
+  public synchronized boolean isCompleted() {
+    return completed;
+  }
+
+  /**
+   * Close the file. Failures are logged rather than thrown, as every checkpoint has already been
+   * flushed.
+   */
+  @Override
+  public synchronized void close() {
+    closeQuietly(writer != null ? writer : out);
+    writer = null;
+    out = null;
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        log.warn(e.getMessage(), e);
+      }
+    }
+  }
+
+  private static RSuiteException newWriteException(File file, IOException e) {
+    return new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR, ContainerUtilsMessageProperties
+        .get("error.unable.to.write.deletion.journal", file.getPath(), e.getMessage()), e);
+  }
+
+  private static RSuiteException newInvalidException(File file, int lineNum) {
+    return new RSuiteException(RSuiteException.ERROR_PARAM_INVALID, ContainerUtilsMessageProperties
+        .get("error.invalid.deletion.journal", file.getPath(), lineNum));
+  }
+
+}
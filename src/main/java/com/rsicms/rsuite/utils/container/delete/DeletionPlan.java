@@ -0,0 +1,301 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+import com.rsicms.rsuite.utils.container.visitor.ReferencedContent;
+
+/**
+ * The objects a container deletion is to delete, in the order it is to delete them: the starting
+ * containers, the referenced CAs, then the referenced MOs. Each object is identified by its kind
+ * and ID, allowing the plan to be executed, persisted and resumed without retrieving the objects
+ * again. A plan usually has one starting container; bulk deletions have several.
+ * <p>
+ * Every entry has a sequence number: its zero-based position in the complete plan, with the
+ * first starting container being zero. Sequence numbers are retained by the remainder of a plan.
+ */
+public class DeletionPlan {
+
+  private List<Entry> startingContainers;
+
+  private List<Entry> contentAssemblies;
+
+  private List<Entry> managedObjects;
+
+  private DeletionPlanStatistics statistics;
+
+  /**
+   * Construct a plan.
+   *
+   * @param startingContainer Optional.
+   * @param contentAssemblies
+   * @param managedObjects
+   */
+  public DeletionPlan(Entry startingContainer, List<Entry> contentAssemblies,
+      List<Entry> managedObjects) {
+    this(startingContainer == null ? Collections.<Entry>emptyList()
+        : Collections.singletonList(startingContainer), contentAssemblies, managedObjects);
+  }
+
+  /**
+   * Construct a plan with any number of starting containers.
+   *
+   * @param startingContainers
+   * @param contentAssemblies
+   * @param managedObjects
+   */
+  public DeletionPlan(List<Entry> startingContainers, List<Entry> contentAssemblies,
+      List<Entry> managedObjects) {
+    this.startingContainers = Collections.unmodifiableList(startingContainers);
+    this.contentAssemblies = Collections.unmodifiableList(contentAssemblies);
+    this.managedObjects = Collections.unmodifiableList(managedObjects);
+  }
+
+  /**
+   * Plan the deletion of the given content, in the order it lists it.
+   *
+   * @param content
+   * @return The plan.
+   * @throws RSuiteException
+   */
+  public static DeletionPlan fromReferencedContent(ReferencedContent content)
+      throws RSuiteException {
+    return fromObjects(
+        content.getStartingContainer() == null
+            ? Collections.<ContentAssemblyNodeContainer>emptyList()
+            : Collections.singletonList(content.getStartingContainer()),
+        content.getReferencedContentAssemblies(), content.getReferencedManagedObjects());
+  }
+
+  /**
+   * Plan the deletion of the given objects, in the given order.
+   *
+   * @param startingContainers
+   * @param contentAssemblies
+   * @param managedObjects
+   * @return The plan.
+   * @throws RSuiteException
+   */
+  public static DeletionPlan fromObjects(
+      List<? extends ContentAssemblyNodeContainer> startingContainers,
+      List<? extends ContentAssembly> contentAssemblies,
+      List<? extends ManagedObject> managedObjects) throws RSuiteException {
+    List<Entry> starts = toContainerEntries(startingContainers);
+    int sequence = starts.size();
+    List<Entry> cas = new ArrayList<Entry>(contentAssemblies.size());
+    for (ContentAssembly ca : contentAssemblies) {
+      cas.add(newContainerEntry(ca, sequence++));
+    }
+    List<Entry> mos = new ArrayList<Entry>(managedObjects.size());
+    for (ManagedObject mo : managedObjects) {
+      mos.add(new Entry(ReferencedItem.Kind.MANAGED_OBJECT, mo.getId(), mo.getDisplayName(),
+          sequence++));
+    }
+    return new DeletionPlan(starts, cas, mos);
+  }
+
+  /**
+   * Create entries for the given containers, numbered from zero.
+   *
+   * @param containers
+   * @return The entries.
+   * @throws RSuiteException
+   */
+  public static List<Entry> toContainerEntries(
+      List<? extends ContentAssemblyNodeContainer> containers) throws RSuiteException {
+    List<Entry> entries = new ArrayList<Entry>(containers.size());
+    for (ContentAssemblyNodeContainer container : containers) {
+      entries.add(newContainerEntry(container, entries.size()));
+    }
+    return entries;
+  }
+
+  /**
+   * Create entries for the given MOs, numbered from zero.
+   *
+   * @param mos
+   * @return The entries.
+   * @throws RSuiteException
+   */
+  public static List<Entry> toManagedObjectEntries(List<? extends ManagedObject> mos)
+      throws RSuiteException {
+    List<Entry> entries = new ArrayList<Entry>(mos.size());
+    for (ManagedObject mo : mos) {
+      entries.add(new Entry(ReferencedItem.Kind.MANAGED_OBJECT, mo.getId(), mo.getDisplayName(),
+          entries.size()));
+    }
+    return entries;
+  }
+
+  private static Entry newContainerEntry(ContentAssemblyNodeContainer container, int sequence)
+      throws RSuiteException {
+    return new Entry(
+        container instanceof ContentAssembly ? ReferencedItem.Kind.CONTENT_ASSEMBLY
+            : ReferencedItem.Kind.CA_NODE,
+        container.getId(), container.getDisplayName(), sequence);
+  }
+
+  /**
+   * @param completed The sequence numbers of the entries to exclude.
+   * @return The rest of this plan.
+   */
+  public DeletionPlan getRemainder(BitSet completed) {
+    return new DeletionPlan(getRemainder(startingContainers, completed),
+        getRemainder(contentAssemblies, completed), getRemainder(managedObjects, completed));
+  }
+
+  private static List<Entry> getRemainder(List<Entry> entries, BitSet completed) {
+    List<Entry> remainder = new ArrayList<Entry>(entries.size());
+    for (Entry entry : entries) {
+      if (!completed.get(entry.getSequence())) {
+        remainder.add(entry);
+      }
+    }
+    return remainder;
+  }
+
+  /**
+   * @return This plan when its sequence numbers are its entries' positions; otherwise, such as for
+   *         the remainder of a plan, a copy of this plan with its entries renumbered.
+   */
+  public DeletionPlan renumber() {
+    if (isNumbered(startingContainers, 0)
+        && isNumbered(contentAssemblies, startingContainers.size())
+        && isNumbered(managedObjects, startingContainers.size() + contentAssemblies.size())) {
+      return this;
+    }
+    DeletionPlan plan = new DeletionPlan(renumber(startingContainers, 0),
+        renumber(contentAssemblies, startingContainers.size()),
+        renumber(managedObjects, startingContainers.size() + contentAssemblies.size()));
+    plan.statistics = statistics;
+    return plan;
+  }
+
+  private static boolean isNumbered(List<Entry> entries, int first) {
+    for (int i = 0; i < entries.size(); i++) {
+      if (entries.get(i).getSequence() != first + i) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<Entry> renumber(List<Entry> entries, int first) {
+    List<Entry> renumbered = new ArrayList<Entry>(entries.size());
+    for (Entry entry : entries) {
+      renumbered.add(new Entry(entry.getKind(), entry.getId(), entry.getDisplayName(),
+          first + renumbered.size()));
+    }
+    return renumbered;
+  }
+
+  /**
+   * @return The first starting container, or null when none is to be deleted.
+   */
+  public Entry getStartingContainer() {
+    return startingContainers.isEmpty() ? null : startingContainers.get(0);
+  }
+
+  /**
+   * @return The starting containers to delete, in order. Empty when none is to be deleted.
+   */
+  public List<Entry> getStartingContainers() {
+    return startingContainers;
+  }
+
+  public List<Entry> getContentAssemblies() {
+    return contentAssemblies;
+  }
+
+  public List<Entry> getManagedObjects() {
+    return managedObjects;
+  }
+
+  /**
+   * @return The statistics gathered while planning, or null when this plan was not produced by
+   *         {@link DeletionPlanner}, such as when read from a journal or the remainder of a plan.
+   */
+  public DeletionPlanStatistics getStatistics() {
+    return statistics;
+  }
+
+  void setStatistics(DeletionPlanStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  /**
+   * @return The number of objects in this plan.
+   */
+  public int size() {
+    return startingContainers.size() + contentAssemblies.size() + managedObjects.size();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("DeletionPlan [starts=").append(startingContainers).append(", CAs=")
+        .append(contentAssemblies.size()).append(", MOs=").append(managedObjects.size())
+        .append("]").toString();
+  }
+
+  /**
+   * An object to delete.
+   */
+  public static class Entry {
+
+    private ReferencedItem.Kind kind;
+
+    private String id;
+
+    private String displayName;
+
+    private int sequence;
+
+    /**
+     * Construct an entry.
+     *
+     * @param kind
+     * @param id
+     * @param displayName Optional; not persisted.
+     * @param sequence
+     */
+    public Entry(ReferencedItem.Kind kind, String id, String displayName, int sequence) {
+      this.kind = kind;
+      this.id = id;
+      this.displayName = displayName;
+      this.sequence = sequence;
+    }
+
+    public ReferencedItem.Kind getKind() {
+      return kind;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * @return The display name, or null when not known.
+     */
+    public String getDisplayName() {
+      return displayName;
+    }
+
+    public int getSequence() {
+      return sequence;
+    }
+
+    @Override
+    public String toString() {
+      return new StringBuilder(kind.name()).append(" ").append(id).append(" #").append(sequence)
+          .toString();
+    }
+  }
+
+}
@@ -0,0 +1,267 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.rsicms.rsuite.utils.container.metrics.RepositoryCall;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+
+/**
+ * What {@link DeletionPlanner} learned about a container while planning its deletion, and how long
+ * it estimates executing the plan will take.
+ */
+public class DeletionPlanStatistics {
+
+  private int contentAssemblyCount;
+
+  private int caNodeCount;
+
+  private int managedObjectCount;
+
+  private int duplicateReferenceCount;
+
+  private int maxDepth;
+
+  private int containerCount;
+
+  private long childCount;
+
+  private int maxFanOut;
+
+  private long traversalNanos;
+
+  private long estimatedNanos;
+
+  private Set<RepositoryCall> unmeasuredCalls = EnumSet.noneOf(RepositoryCall.class);
+
+  private List<StartingContainerStatistics> startingContainerStatistics =
+      new ArrayList<StartingContainerStatistics>();
+
+  /**
+   * @return The number of CAs referenced by the starting containers, directly or indirectly,
+   *         excluding the starting containers.
+   */
+  public int getContentAssemblyCount() {
+    return contentAssemblyCount;
+  }
+
+  void setContentAssemblyCount(int contentAssemblyCount) {
+    this.contentAssemblyCount = contentAssemblyCount;
+  }
+
+  /**
+   * @return The number of CANodes within the starting containers and the referenced CAs, which
+   *         are deleted along with their container.
+   */
+  public int getCaNodeCount() {
+    return caNodeCount;
+  }
+
+  void setCaNodeCount(int caNodeCount) {
+    this.caNodeCount = caNodeCount;
+  }
+
+  /**
+   * @return The number of distinct MOs referenced by the starting containers, directly or
+   *         indirectly.
+   */
+  public int getManagedObjectCount() {
+    return managedObjectCount;
+  }
+
+  void setManagedObjectCount(int managedObjectCount) {
+    this.managedObjectCount = managedObjectCount;
+  }
+
+  /**
+   * @return The number of references to objects already referenced elsewhere in the tree, or to
+   *         an ancestor.
+   */
+  public int getDuplicateReferenceCount() {
+    return duplicateReferenceCount;
+  }
+
+  void setDuplicateReferenceCount(int duplicateReferenceCount) {
+    this.duplicateReferenceCount = duplicateReferenceCount;
+  }
+
+  /**
+   * @return The depth of the deepest object, the starting containers being at zero.
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  void setMaxDepth(int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * @return The most children any one container has.
+   */
+  public int getMaxFanOut() {
+    return maxFanOut;
+  }
+
+  /**
+   * @return The mean number of children of the containers, including the starting containers.
+   */
+  public double getMeanFanOut() {
+    return containerCount == 0 ? 0 : (double) childCount / containerCount;
+  }
+
+  /**
+   * Account for a container's children.
+   */
+  void addContainer(int fanOut) {
+    containerCount++;
+    childCount += fanOut;
+    maxFanOut = Math.max(maxFanOut, fanOut);
+  }
+
+  /**
+   * @param unit
+   * @return How long planning took, which is not repeated when the plan is executed.
+   */
+  public long getTraversalDuration(TimeUnit unit) {
+    return unit.convert(traversalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  void setTraversalNanos(long traversalNanos) {
+    this.traversalNanos = traversalNanos;
+  }
+
+  /**
+   * @param unit
+   * @return The estimated duration of executing the plan.
+   */
+  public long getEstimatedDuration(TimeUnit unit) {
+    return unit.convert(estimatedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  void setEstimatedNanos(long estimatedNanos) {
+    this.estimatedNanos = estimatedNanos;
+  }
+
+  /**
+   * @return The types of calls the estimate needed but had no latency measurements for. Their
+   *         latency was assumed to be that of retrieving an MO, which likely makes the estimate
+   *         low.
+   */
+  public Set<RepositoryCall> getUnmeasuredCalls() {
+    return Collections.unmodifiableSet(unmeasuredCalls);
+  }
+
+  void addUnmeasuredCall(RepositoryCall call) {
+    unmeasuredCalls.add(call);
+  }
+
+  /**
+   * @return A breakdown by starting container, in the order they were given to the planner.
+   */
+  public List<StartingContainerStatistics> getStartingContainerStatistics() {
+    return Collections.unmodifiableList(startingContainerStatistics);
+  }
+
+  void addStartingContainerStatistics(StartingContainerStatistics statistics) {
+    startingContainerStatistics.add(statistics);
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("DeletionPlanStatistics [CAs=").append(contentAssemblyCount)
+        .append(", CANodes=").append(caNodeCount).append(", MOs=").append(managedObjectCount)
+        .append(", duplicate references=").append(duplicateReferenceCount).append(", max depth=")
+        .append(maxDepth).append(", max fan-out=").append(maxFanOut).append(", mean fan-out=")
+        .append(String.format("%.1f", getMeanFanOut())).append(", traversal=")
+        .append(getTraversalDuration(TimeUnit.MILLISECONDS)).append("ms, estimate=")
+        .append(getEstimatedDuration(TimeUnit.MILLISECONDS)).append("ms")
+        .append(unmeasuredCalls.isEmpty() ? "" : ", unmeasured=" + unmeasuredCalls).append("]")
+        .toString();
+  }
+
+  /**
+   * The objects a starting container contributed to the plan: those first reached from it, and not
+   * from an earlier starting container.
+   */
+  public static class StartingContainerStatistics {
+
+    private String id;
+
+    private String displayName;
+
+    private boolean reachedFromEarlierStartingContainer;
+
+    private int contentAssemblyCount;
+
+    private int caNodeCount;
+
+    private int managedObjectCount;
+
+    StartingContainerStatistics(String id, String displayName,
+        boolean reachedFromEarlierStartingContainer) {
+      this.id = id;
+      this.displayName = displayName;
+      this.reachedFromEarlierStartingContainer = reachedFromEarlierStartingContainer;
+    }
+
+    /**
+     * Account for an object first reached from this starting container.
+     */
+    void add(ReferencedItem.Kind kind) {
+      switch (kind) {
+        case CONTENT_ASSEMBLY:
+          contentAssemblyCount++;
+          break;
+        case CA_NODE:
+          caNodeCount++;
+          break;
+        default:
+          managedObjectCount++;
+      }
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getDisplayName() {
+      return displayName;
+    }
+
+    /**
+     * @return True if an earlier starting container references this one, making it one of the
+     *         plan's CAs or, for a CANode, deleted along with its container. It then contributed
+     *         nothing itself.
+     */
+    public boolean isReachedFromEarlierStartingContainer() {
+      return reachedFromEarlierStartingContainer;
+    }
+
+    public int getContentAssemblyCount() {
+      return contentAssemblyCount;
+    }
+
+    public int getCaNodeCount() {
+      return caNodeCount;
+    }
+
+    public int getManagedObjectCount() {
+      return managedObjectCount;
+    }
+
+    @Override
+    public String toString() {
+      return new StringBuilder("StartingContainerStatistics [id=").append(id).append(", CAs=")
+          .append(contentAssemblyCount).append(", CANodes=").append(caNodeCount)
+          .append(", MOs=").append(managedObjectCount)
+          .append(reachedFromEarlierStartingContainer ? ", reached from earlier" : "")
+          .append("]").toString();
+    }
+  }
+
+}
@@ -0,0 +1,201 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.delete.DeletionPlanStatistics.StartingContainerStatistics;
+import com.rsicms.rsuite.utils.container.metrics.LatencyHistogram;
+import com.rsicms.rsuite.utils.container.metrics.RecordingContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.RepositoryCall;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedContentIterator;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedContentTraversalException;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+import com.rsicms.rsuite.utils.container.traversal.ServiceReferencedContentFetcher;
+
+/**
+ * Plans the deletion of one or more containers and their referenced content without deleting
+ * anything. The containers are traversed once; the resulting {@link DeletionPlan} lists the same
+ * objects in the same order as a deletion would, carries {@link DeletionPlanStatistics}, and can
+ * be executed without traversing the container again.
+ * <p>
+ * The plan is produced by a sequential walk of its own, made directly through the RSuite services.
+ * It does not use the options' traversal parallelism, nor a <code>ContainerUtils</code> session or
+ * container resolution cache, so it makes one retrieval per object on the calling thread.
+ * <p>
+ * The duration estimate multiplies the number of repository calls the plan requires by the mean
+ * latency of each type of call, as recorded by the given latency measurements, dividing by the
+ * worker count for the phases performed concurrently and respecting the throttle's rate limit. The
+ * planning traversal's own retrievals are added to the measurements. Measurements recorded by
+ * earlier deletions, such as by a {@link RecordingContainerInstrumentation} given to
+ * <code>ContainerUtils</code>, make the estimate more accurate. As only mean latencies are used,
+ * the estimate does not reflect latency variance, contention between workers, or retries.
+ */
+public class DeletionPlanner {
+
+  private ExecutionContext context;
+
+  private User user;
+
+  private ContainerDeletionOptions options;
+
+  private RecordingContainerInstrumentation latencies;
+
+  /**
+   * Construct a planner.
+   *
+   * @param context
+   * @param user
+   * @param options The options the plan is to be executed with, which the estimate accounts for.
+   *        When null, the defaults are used.
+   * @param latencies Optional latency measurements to base the estimate on.
+   */
+  public DeletionPlanner(ExecutionContext context, User user, ContainerDeletionOptions options,
+      RecordingContainerInstrumentation latencies) {
+    this.context = context;
+    this.user = user;
+    this.options = options == null ? new ContainerDeletionOptions() : options;
+    this.latencies = latencies == null ? new RecordingContainerInstrumentation() : latencies;
+  }
+
+  /**
+   * Plan the deletion of the given container and everything it references.
+   *
+   * @param container
+   * @return The plan, with statistics.
+   * @throws RSuiteException Thrown if an object could not be retrieved.
+   */
+  public DeletionPlan plan(ContentAssemblyNodeContainer container) throws RSuiteException {
+    return plan(Collections.singletonList(container));
+  }
+
+  /**
+   * Plan the deletion of the given containers and everything they reference, in one traversal.
+   * Content shared by several of the containers is planned once, as is a container referenced by
+   * an earlier one.
+   *
+   * @param containers
+   * @return The plan, with statistics, including a breakdown by starting container.
+   * @throws RSuiteException Thrown if an object could not be retrieved.
+   */
+  public DeletionPlan plan(List<? extends ContentAssemblyNodeContainer> containers)
+      throws RSuiteException {
+    long start = System.nanoTime();
+    DeletionPlanStatistics stats = new DeletionPlanStatistics();
+    List<ContentAssemblyNodeContainer> starts = new ArrayList<ContentAssemblyNodeContainer>();
+    List<ContentAssembly> cas = new ArrayList<ContentAssembly>();
+    List<ManagedObject> mos = new ArrayList<ManagedObject>();
+    Map<String, StartingContainerStatistics> startStatsById =
+        new HashMap<String, StartingContainerStatistics>();
+
+    ReferencedContentIterator it = new ReferencedContentIterator(
+        new ServiceReferencedContentFetcher(context, user), containers, true);
+    it.setInstrumentation(latencies);
+    StartingContainerStatistics startStats = null;
+    try {
+      while (it.hasNext()) {
+        ReferencedItem item = it.next();
+        stats.setMaxDepth(Math.max(stats.getMaxDepth(), item.getDepth()));
+        if (item.isContainer()) {
+          List<?> children = item.getContainer().getChildrenObjects();
+          stats.addContainer(children == null ? 0 : children.size());
+        }
+        if (item.getDepth() == 0) {
+          starts.add(item.getContainer());
+          startStats = new StartingContainerStatistics(item.getId(),
+              item.getContainer().getDisplayName(), false);
+          startStatsById.put(item.getId(), startStats);
+          continue;
+        }
+        startStats.add(item.getKind());
+        switch (item.getKind()) {
+          case CONTENT_ASSEMBLY:
+            cas.add(item.getContentAssembly());
+            break;
+          case CA_NODE:
+            stats.setCaNodeCount(stats.getCaNodeCount() + 1);
+            break;
+          default:
+            mos.add(item.getManagedObject());
+        }
+      }
+    } catch (ReferencedContentTraversalException e) {
+      throw e.getRSuiteException();
+    }
+    for (ContentAssemblyNodeContainer container : containers) {
+      StartingContainerStatistics containerStats = startStatsById.remove(container.getId());
+      stats.addStartingContainerStatistics(containerStats != null ? containerStats
+          : new StartingContainerStatistics(container.getId(), container.getDisplayName(), true));
+    }
+    stats.setContentAssemblyCount(cas.size());
+    stats.setManagedObjectCount(mos.size());
+    stats.setDuplicateReferenceCount(it.getDuplicateReferenceCount());
+    stats.setTraversalNanos(System.nanoTime() - start);
+
+    DeletionPlan plan = DeletionPlan.fromObjects(starts, cas, mos);
+    stats.setEstimatedNanos(estimate(plan, stats));
+    plan.setStatistics(stats);
+    return plan;
+  }
+
+  /**
+   * Estimate how long executing the plan will take.
+   *
+   * @return The estimate, in nanoseconds.
+   */
+  protected long estimate(DeletionPlan plan, DeletionPlanStatistics stats) {
+    int workerCnt = options.getWorkerCount();
+    int caCnt = plan.getContentAssemblies().size();
+    int moCnt = plan.getManagedObjects().size();
+    int writeCnt = caCnt + moCnt;
+
+    long nanos = 0;
+    for (DeletionPlan.Entry start : plan.getStartingContainers()) {
+      writeCnt++;
+      nanos += getMeanNanos(start.getKind() == ReferencedItem.Kind.CONTENT_ASSEMBLY
+          ? RepositoryCall.REMOVE_CONTENT_ASSEMBLY : RepositoryCall.DELETE_CA_NODE, stats);
+    }
+    nanos +=
+        perWorker(caCnt, workerCnt) * getMeanNanos(RepositoryCall.REMOVE_CONTENT_ASSEMBLY, stats);
+    if (moCnt > 0) {
+      long moNanos = getMeanNanos(RepositoryCall.CHECK_OUT, stats)
+          + getMeanNanos(RepositoryCall.DESTROY, stats);
+      if (options.isPrefetchCheckOutState()) {
+        moNanos += getMeanNanos(RepositoryCall.GET_CHECK_OUT_OWNER, stats);
+      }
+      nanos += perWorker(moCnt, workerCnt) * moNanos;
+    }
+
+    DeletionThrottle throttle = options.getThrottle();
+    if (throttle != null && throttle.getMaxCallsPerSecond() > 0) {
+      nanos = Math.max(nanos, (long) (writeCnt * 1000000000d / throttle.getMaxCallsPerSecond()));
+    }
+    return nanos;
+  }
+
+  private static long perWorker(int objectCnt, int workerCnt) {
+    return (objectCnt + workerCnt - 1) / workerCnt;
+  }
+
+  /**
+   * @return The mean latency of the given type of call or, when it hasn't been measured, that of
+   *         retrieving an MO.
+   */
+  private long getMeanNanos(RepositoryCall call, DeletionPlanStatistics stats) {
+    LatencyHistogram histogram = latencies.getLatencyHistogram(call);
+    if (histogram.getCount() > 0) {
+      return histogram.getMeanNanos();
+    }
+    stats.addUnmeasuredCall(call);
+    return latencies.getLatencyHistogram(RepositoryCall.GET_MANAGED_OBJECT).getMeanNanos();
+  }
+
+}
@@ -0,0 +1,194 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the rate and concurrency of the destroy and remove calls {@link ContainerDeletionEngine}
+ * makes, in order to protect the interactive users of a shared repository.
+ * <p>
+ * The rate limit is a token bucket without burst: calls are spaced evenly at no more than the
+ * configured number per second. Concurrency is adapted to the latency of the calls, additive
+ * increase, multiplicative decrease: each call slower than the latency threshold reduces the
+ * number of calls allowed in flight by the back-off factor, no more often than once per threshold,
+ * and each run of as many calls within the threshold as the current limit raises it by one, up to
+ * the maximum. When already down to the minimum concurrency, a slow call instead delays the next
+ * call by as long as the slow call took.
+ * <p>
+ * An instance is safe for use by multiple threads, and may be shared by multiple operations to
+ * limit them collectively.
+ */
+public class DeletionThrottle {
+
+  private double maxCallsPerSecond;
+
+  private long latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(250);
+
+  private int minConcurrency = 1;
+
+  private int maxConcurrency = Integer.MAX_VALUE;
+
+  private double backoffFactor = 0.5;
+
+  /*
+   * The following are guarded by this instance.
+   */
+
+  private int concurrencyLimit = Integer.MAX_VALUE;
+
+  private int inFlight;
+
+  private long nextPermitNanos = System.nanoTime();
+
+  private long lastBackoffNanos = System.nanoTime() - latencyThresholdNanos;
+
+  private int fastCallCnt;
+
+  private int backoffCnt;
+
+  private final AtomicLong waitedNanos = new AtomicLong();
+
+  /**
+   * @param maxCallsPerSecond The maximum number of calls to allow per second. Zero or less means
+   *        no limit, which is the default.
+   */
+  public synchronized void setMaxCallsPerSecond(double maxCallsPerSecond) {
+    this.maxCallsPerSecond = maxCallsPerSecond;
+  }
+
+  /**
+   * @return The maximum number of calls allowed per second, or zero or less when unlimited.
+   */
+  public synchronized double getMaxCallsPerSecond() {
+    return maxCallsPerSecond;
+  }
+
+  /**
+   * @param latencyThreshold The call latency above which to back off. The default is 250 ms.
+   * @param unit
+   */
+  public synchronized void setLatencyThreshold(long latencyThreshold, TimeUnit unit) {
+    this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+  }
+
+  /**
+   * @param minConcurrency The number of calls in flight to never back off below. Values less than
+   *        one are treated as one.
+   */
+  public synchronized void setMinConcurrency(int minConcurrency) {
+    this.minConcurrency = minConcurrency < 1 ? 1 : minConcurrency;
+    this.concurrencyLimit = Math.max(concurrencyLimit, this.minConcurrency);
+  }
+
+  /**
+   * @param maxConcurrency The most calls to allow in flight, which is also where the concurrency
+   *        limit starts. By default, only the deletion's worker count limits it.
+   */
+  public synchronized void setMaxConcurrency(int maxConcurrency) {
+    this.maxConcurrency = Math.max(maxConcurrency, minConcurrency);
+    this.concurrencyLimit = this.maxConcurrency;
+  }
+
+  /**
+   * @param backoffFactor Greater than zero and less than one: what to multiply the concurrency
+   *        limit by when a call is slow. The default is one half.
+   * @throws IllegalArgumentException Thrown if the factor is not greater than zero and less than
+   *         one.
+   */
+  public synchronized void setBackoffFactor(double backoffFactor) {
+    if (!(backoffFactor > 0 && backoffFactor < 1)) {
+      throw new IllegalArgumentException(
+          "backoffFactor must be greater than zero and less than one.");
+    }
+    this.backoffFactor = backoffFactor;
+  }
+
+  /**
+   * Wait until a call is allowed, both by the concurrency limit and the rate limit. Every
+   * successful acquisition must be followed by a release.
+   *
+   * @throws InterruptedException
+   */
+  public void acquire() throws InterruptedException {
+    long start = System.nanoTime();
+    long delayNanos;
+    synchronized (this) {
+      while (inFlight >= concurrencyLimit) {
+        wait();
+      }
+      inFlight++;
+      long now = System.nanoTime();
+      long permitNanos = nextPermitNanos - now > 0 ? nextPermitNanos : now;
+      nextPermitNanos = maxCallsPerSecond > 0
+          ? permitNanos + (long) (TimeUnit.SECONDS.toNanos(1) / maxCallsPerSecond) : permitNanos;
+      delayNanos = permitNanos - now;
+    }
+    try {
+      if (delayNanos > 0) {
+        TimeUnit.NANOSECONDS.sleep(delayNanos);
+      }
+    } catch (InterruptedException e) {
+      synchronized (this) {
+        inFlight--;
+        notifyAll();
+      }
+      throw e;
+    } finally {
+      waitedNanos.addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Release an acquisition, adapting to the call's latency.
+   *
+   * @param elapsedNanos How long the call took.
+   */
+  public synchronized void release(long elapsedNanos) {
+    long now = System.nanoTime();
+    if (elapsedNanos > latencyThresholdNanos) {
+      fastCallCnt = 0;
+      if (concurrencyLimit > minConcurrency) {
+        if (now - lastBackoffNanos >= latencyThresholdNanos) {
+          concurrencyLimit = Math.max(minConcurrency,
+              (int) (Math.min(concurrencyLimit, inFlight) * backoffFactor));
+          lastBackoffNanos = now;
+          backoffCnt++;
+        }
+      } else {
+        // Already at the minimum: pause the next call.
+        long pauseUntilNanos = now + elapsedNanos;
+        if (pauseUntilNanos - nextPermitNanos > 0) {
+          nextPermitNanos = pauseUntilNanos;
+          backoffCnt++;
+        }
+      }
+    } else if (concurrencyLimit < maxConcurrency && ++fastCallCnt >= concurrencyLimit) {
+      concurrencyLimit++;
+      fastCallCnt = 0;
+    }
+    inFlight--;
+    notifyAll();
+  }
+
+  /**
+   * @return The number of calls currently allowed in flight.
+   */
+  public synchronized int getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  /**
+   * @return The number of times the throttle backed off.
+   */
+  public synchronized int getBackoffCount() {
+    return backoffCnt;
+  }
+
+  /**
+   * @return The total time callers spent waiting for the throttle.
+   */
+  public long getWaitedNanos() {
+    return waitedNanos.get();
+  }
+
+}
@@ -0,0 +1,272 @@
+package com.rsicms.rsuite.utils.container.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.MetaDataItem;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.ContainerUtilsMessageProperties;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+
+/**
+ * Writes a manifest of a container's tree as newline-delimited JSON: one UTF-8 encoded object
+ * per line, per item written, as the traversal yields them. Each object has the members
+ * <code>kind</code>, <code>id</code>, <code>parentId</code>, <code>ordinal</code>,
+ * <code>depth</code>, <code>displayName</code>, <code>type</code>, <code>lastModified</code> and
+ * <code>lmd</code>, in that order. For example:
+ *
+ * <pre>
+ * {"kind":"MANAGED_OBJECT","id":"1002","parentId":"1000","ordinal":0,"depth":1,
+ *  "displayName":"Preface","type":null,"lastModified":1476614400000,
+ *  "lmd":[{"name":"status","value":"draft"},{"name":"owner","value":"jdoe"}]}
+ * </pre>
+ * <p>
+ * The kind, ID, parent ID, ordinal and depth are those of the {@link ReferencedItem}. Written in
+ * traversal order, a container's record precedes those of its children. The type is the container
+ * type, and null for MOs. The last modified date is in milliseconds since the epoch, and null for
+ * containers, which do not expose one. The layered metadata (LMD) is the object's name/value
+ * pairs, in the order the object returns them; a name appears once per value. Objects without LMD
+ * have an empty array.
+ * <p>
+ * Records are encoded into a fixed-size buffer, which is written to the channel whenever full,
+ * so memory use does not depend on the size of the tree. When compressing, the buffer is written
+ * through a gzip stream instead. Call {@link #finish()} once every item is written. The target is
+ * never closed by the writer.
+ * <p>
+ * An instance writes one manifest, and is not safe for use by multiple threads.
+ */
+public class ContainerManifestWriter {
+
+  private final static Charset CHARSET = Charset.forName("UTF-8");
+
+  private final static int BUFFER_SIZE = 64 * 1024;
+
+  private WritableByteChannel channel;
+
+  private GZIPOutputStream gzipOut;
+
+  private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+  private CharsetEncoder encoder = CHARSET.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  private StringBuilder record = new StringBuilder(256);
+
+  private long recordCount;
+
+  private long byteCount;
+
+  private boolean finished;
+
+  /**
+   * Construct a writer.
+   *
+   * @param channel
+   * @param gzip Submit true to compress the manifest with gzip.
+   * @throws RSuiteException Thrown if the gzip header cannot be written.
+   */
+  public ContainerManifestWriter(WritableByteChannel channel, boolean gzip)
+      throws RSuiteException {
+    if (gzip) {
+      try {
+        gzipOut = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+      } catch (IOException e) {
+        throw newWriteException(e);
+      }
+      this.channel = Channels.newChannel(gzipOut);
+    } else {
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * Construct a writer.
+   *
+   * @param out
+   * @param gzip Submit true to compress the manifest with gzip.
+   * @throws RSuiteException Thrown if the gzip header cannot be written.
+   */
+  public ContainerManifestWriter(OutputStream out, boolean gzip) throws RSuiteException {
+    this(Channels.newChannel(out), gzip);
+  }
+
+  /**
+   * Write an item's record.
+   *
+   * @param item
+   * @throws RSuiteException Thrown if the record cannot be written, or the item's LMD or an MO's
+   *         display name or last modified date cannot be read.
+   */
+  public void write(ReferencedItem item) throws RSuiteException {
+    if (finished) {
+      throw new IllegalStateException("The manifest is finished.");
+    }
+    String displayName;
+    String type = null;
+    Long lastModified = null;
+    List<MetaDataItem> lmd;
+    if (item.isContainer()) {
+      ContentAssemblyNodeContainer container = item.getContainer();
+      displayName = container.getDisplayName();
+      type = container.getType();
+      lmd = container.getMetaDataItems();
+    } else {
+      ManagedObject mo = item.getManagedObject();
+      displayName = mo.getDisplayName();
+      Date dtModified = mo.getDtModified();
+      lastModified = dtModified == null ? null : dtModified.getTime();
+      lmd = mo.getMetaDataItems();
+    }
+
+    record.setLength(0);
+    record.append("{\"kind\":\"").append(item.getKind().name()).append("\",\"id\":");
+    appendString(item.getId());
+    record.append(",\"parentId\":");
+    appendString(item.getParentId());
+    record.append(",\"ordinal\":").append(item.getOrdinal()).append(",\"depth\":")
+        .append(item.getDepth()).append(",\"displayName\":");
+    appendString(displayName);
+    record.append(",\"type\":");
+    appendString(type);
+    record.append(",\"lastModified\":").append(lastModified).append(",\"lmd\":[");
+    if (lmd != null) {
+      for (int i = 0; i < lmd.size(); i++) {
+        record.append(i == 0 ? "{\"name\":" : ",{\"name\":");
+        appendString(lmd.get(i).getName());
+        record.append(",\"value\":");
+        appendString(lmd.get(i).getValue());
+        record.append('}');
+      }
+    }
+    record.append("]}\n");
+
+    try {
+      encode(record);
+    } catch (IOException e) {
+      throw newWriteException(e);
+    }
+    recordCount++;
+  }
+
+  private void appendString(String str) {
+    if (str == null) {
+      record.append("null");
+      return;
+    }
+    record.append('"');
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      switch (c) {
+        case '"':
+          record.append("\\\"");
+          break;
+        case '\\':
+          record.append("\\\\");
+          break;
+        case '\n':
+          record.append("\\n");
+          break;
+        case '\r':
+          record.append("\\r");
+          break;
+        case '\t':
+          record.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            record.append("\\u00").append(Character.forDigit(c >> 4, 16))
+                .append(Character.forDigit(c & 0xf, 16));
+          } else {
+            record.append(c);
+          }
+      }
+    }
+    record.append('"');
+  }
+
+  private void encode(CharSequence chars) throws IOException {
+    CharBuffer charBuf = CharBuffer.wrap(chars);
+    encoder.reset();
+    while (encoder.encode(charBuf, buffer, true) == CoderResult.OVERFLOW) {
+      drain();
+    }
+    while (encoder.flush(buffer) == CoderResult.OVERFLOW) {
+      drain();
+    }
+  }
+
+  /**
+   * Write the buffer's contents to the channel.
+   */
+  private void drain() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      byteCount += channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Write the buffered records and, when compressing, the end of the gzip stream. The target is
+   * left open. Nothing may be written after.
+   *
+   * @throws RSuiteException Thrown if the manifest cannot be written.
+   */
+  public void finish() throws RSuiteException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    try {
+      drain();
+      if (gzipOut != null) {
+        gzipOut.finish();
+        gzipOut.flush();
+      }
+    } catch (IOException e) {
+      throw newWriteException(e);
+    }
+  }
+
+  /**
+   * @return The number of records written.
+   */
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * @return The number of bytes of records written through to the target, before compression.
+   *         Excludes those still buffered.
+   */
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("ContainerManifestWriter [records=").append(recordCount)
+        .append(", bytes=").append(byteCount).append(", gzip=").append(gzipOut != null)
+        .append("]").toString();
+  }
+
+  private static RSuiteException newWriteException(IOException e) {
+    return new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+        ContainerUtilsMessageProperties.get("error.unable.to.write.manifest", e.getMessage()), e);
+  }
+
+}
@@ -0,0 +1,36 @@
+package com.rsicms.rsuite.utils.container.metrics;
+
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+
+/**
+ * Receives measurements from <code>ContainerUtils</code>, the visitors and the traversals.
+ * Implementations must be safe for use by multiple threads, and should be cheap as they are called
+ * once per object.
+ */
+public interface ContainerInstrumentation {
+
+  /**
+   * Called once per object a traversal visits.
+   *
+   * @param kind
+   */
+  void nodeVisited(ReferencedItem.Kind kind);
+
+  /**
+   * Called after each instrumented repository call, whether or not it succeeded.
+   *
+   * @param call
+   * @param elapsedNanos
+   */
+  void repositoryCallCompleted(RepositoryCall call, long elapsedNanos);
+
+  /**
+   * Called at the end of each phase of an operation, such as the traversal or the MO deletions.
+   *
+   * @param phase
+   * @param elapsedNanos
+   * @param objectCount The number of objects the phase processed.
+   */
+  void phaseCompleted(OperationPhase phase, long elapsedNanos, int objectCount);
+
+}
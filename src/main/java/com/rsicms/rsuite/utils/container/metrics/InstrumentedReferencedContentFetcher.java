@@ -0,0 +1,45 @@
+package com.rsicms.rsuite.utils.container.metrics;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedContentFetcher;
+
+/**
+ * Reports the latency of every retrieval another fetcher makes.
+ */
+public class InstrumentedReferencedContentFetcher implements ReferencedContentFetcher {
+
+  private ReferencedContentFetcher fetcher;
+
+  private ContainerInstrumentation instrumentation;
+
+  public InstrumentedReferencedContentFetcher(ReferencedContentFetcher fetcher,
+      ContainerInstrumentation instrumentation) {
+    this.fetcher = fetcher;
+    this.instrumentation = instrumentation;
+  }
+
+  @Override
+  public ContentAssemblyNodeContainer getContainer(String id) throws RSuiteException {
+    long start = System.nanoTime();
+    try {
+      return fetcher.getContainer(id);
+    } finally {
+      instrumentation.repositoryCallCompleted(RepositoryCall.GET_CONTAINER,
+          System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public ManagedObject getManagedObject(String id) throws RSuiteException {
+    long start = System.nanoTime();
+    try {
+      return fetcher.getManagedObject(id);
+    } finally {
+      instrumentation.repositoryCallCompleted(RepositoryCall.GET_MANAGED_OBJECT,
+          System.nanoTime() - start);
+    }
+  }
+
+}
@@ -0,0 +1,92 @@
+package com.rsicms.rsuite.utils.container.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with power-of-two nanosecond buckets. Percentiles are therefore
+ * approximate: they report the upper bound of the bucket the percentile falls in.
+ */
+public class LatencyHistogram {
+
+  private final static int BUCKET_COUNT = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+  private final AtomicLong count = new AtomicLong();
+
+  private final AtomicLong totalNanos = new AtomicLong();
+
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /**
+   * @param nanos A latency. Negative values are recorded as zero.
+   */
+  public void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    // Bucket i holds values from 2^i to 2^(i+1)-1; zero shares the first bucket.
+    buckets.incrementAndGet(value == 0 ? 0 : 63 - Long.numberOfLeadingZeros(value));
+    count.incrementAndGet();
+    totalNanos.addAndGet(value);
+    long max;
+    while (value > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, value)) {
+      // retry
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.get();
+  }
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  /**
+   * @return The mean latency in nanoseconds, or zero when nothing was recorded.
+   */
+  public long getMeanNanos() {
+    long cnt = count.get();
+    return cnt == 0 ? 0 : totalNanos.get() / cnt;
+  }
+
+  /**
+   * @param percentile Between 0 and 100.
+   * @return The approximate latency in nanoseconds at the given percentile, or zero when nothing
+   *         was recorded.
+   */
+  public long getPercentileNanos(double percentile) {
+    long cnt = count.get();
+    if (cnt == 0) {
+      return 0;
+    }
+    long threshold = (long) Math.ceil(cnt * Math.min(Math.max(percentile, 0), 100) / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += buckets.get(i);
+      if (seen >= Math.max(threshold, 1)) {
+        return Math.min(i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, getMaxNanos());
+      }
+    }
+    return getMaxNanos();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("count=").append(getCount()).append(", mean=")
+        .append(toMillis(getMeanNanos())).append("ms, p50=")
+        .append(toMillis(getPercentileNanos(50))).append("ms, p99=")
+        .append(toMillis(getPercentileNanos(99))).append("ms, max=")
+        .append(toMillis(getMaxNanos())).append("ms").toString();
+  }
+
+  private static double toMillis(long nanos) {
+    return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+}
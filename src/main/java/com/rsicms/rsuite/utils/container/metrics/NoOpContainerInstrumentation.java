@@ -0,0 +1,21 @@
+package com.rsicms.rsuite.utils.container.metrics;
+
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem.Kind;
+
+/**
+ * Instrumentation that discards every measurement; the default.
+ */
+public class NoOpContainerInstrumentation implements ContainerInstrumentation {
+
+  public final static NoOpContainerInstrumentation INSTANCE = new NoOpContainerInstrumentation();
+
+  @Override
+  public void nodeVisited(Kind kind) {}
+
+  @Override
+  public void repositoryCallCompleted(RepositoryCall call, long elapsedNanos) {}
+
+  @Override
+  public void phaseCompleted(OperationPhase phase, long elapsedNanos, int objectCount) {}
+
+}
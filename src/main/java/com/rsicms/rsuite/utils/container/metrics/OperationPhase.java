@@ -0,0 +1,25 @@
+package com.rsicms.rsuite.utils.container.metrics;
+
+import com.rsicms.rsuite.utils.container.ContainerUtilsMessageProperties;
+
+/**
+ * The phases of a <code>ContainerUtils</code> operation that are timed.
+ */
+public enum OperationPhase {
+  TRAVERSAL("label.phase.traversal"), STARTING_CONTAINERS("label.phase.starting.containers"),
+  CONTENT_ASSEMBLIES("label.phase.content.assemblies"),
+  MANAGED_OBJECTS("label.phase.managed.objects");
+
+  private final String labelKey;
+
+  private OperationPhase(String labelKey) {
+    this.labelKey = labelKey;
+  }
+
+  /**
+   * @return The phase's name, from this library's message properties.
+   */
+  public String getLabel() {
+    return ContainerUtilsMessageProperties.get(labelKey);
+  }
+}
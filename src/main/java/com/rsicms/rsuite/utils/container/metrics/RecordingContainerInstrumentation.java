@@ -0,0 +1,157 @@
+package com.rsicms.rsuite.utils.container.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+
+/**
+ * Instrumentation that accumulates measurements in memory: nodes visited by kind, a latency
+ * histogram per repository call type, and the timing of each completed phase. An instance may be
+ * shared by several operations to aggregate their measurements, or used for one operation to
+ * break it down.
+ */
+public class RecordingContainerInstrumentation implements ContainerInstrumentation {
+
+  private final AtomicLongArray nodesVisited =
+      new AtomicLongArray(ReferencedItem.Kind.values().length);
+
+  private final Map<RepositoryCall, LatencyHistogram> histograms;
+
+  private final List<PhaseTiming> phaseTimings =
+      Collections.synchronizedList(new ArrayList<PhaseTiming>());
+
+  public RecordingContainerInstrumentation() {
+    histograms = new EnumMap<RepositoryCall, LatencyHistogram>(RepositoryCall.class);
+    for (RepositoryCall call : RepositoryCall.values()) {
+      histograms.put(call, new LatencyHistogram());
+    }
+  }
+
+  @Override
+  public void nodeVisited(ReferencedItem.Kind kind) {
+    nodesVisited.incrementAndGet(kind.ordinal());
+  }
+
+  @Override
+  public void repositoryCallCompleted(RepositoryCall call, long elapsedNanos) {
+    histograms.get(call).record(elapsedNanos);
+  }
+
+  @Override
+  public void phaseCompleted(OperationPhase phase, long elapsedNanos, int objectCount) {
+    phaseTimings.add(new PhaseTiming(phase, elapsedNanos, objectCount));
+  }
+
+  /**
+   * @param kind
+   * @return The number of nodes of the given kind visited.
+   */
+  public long getNodesVisited(ReferencedItem.Kind kind) {
+    return nodesVisited.get(kind.ordinal());
+  }
+
+  /**
+   * @param call
+   * @return The latency histogram of the given call type.
+   */
+  public LatencyHistogram getLatencyHistogram(RepositoryCall call) {
+    return histograms.get(call);
+  }
+
+  /**
+   * @return The number of instrumented repository calls made, of every type.
+   */
+  public long getRepositoryCallCount() {
+    long count = 0;
+    for (LatencyHistogram histogram : histograms.values()) {
+      count += histogram.getCount();
+    }
+    return count;
+  }
+
+  /**
+   * @return The completed phases, in completion order.
+   */
+  public List<PhaseTiming> getPhaseTimings() {
+    synchronized (phaseTimings) {
+      return new ArrayList<PhaseTiming>(phaseTimings);
+    }
+  }
+
+  /**
+   * @return The completed phase that took the longest, or null when none have completed.
+   */
+  public PhaseTiming getSlowestPhase() {
+    PhaseTiming slowest = null;
+    for (PhaseTiming timing : getPhaseTimings()) {
+      if (slowest == null || timing.getElapsedNanos() > slowest.getElapsedNanos()) {
+        slowest = timing;
+      }
+    }
+    return slowest;
+  }
+
+  /**
+   * @return A multi-line summary of every measurement, suitable for logging.
+   */
+  public String getSummary() {
+    StringBuilder sb = new StringBuilder("Nodes visited:");
+    for (ReferencedItem.Kind kind : ReferencedItem.Kind.values()) {
+      sb.append(" ").append(kind).append("=").append(getNodesVisited(kind));
+    }
+    for (RepositoryCall call : RepositoryCall.values()) {
+      LatencyHistogram histogram = histograms.get(call);
+      if (histogram.getCount() > 0) {
+        sb.append("\n").append(call).append(": ").append(histogram);
+      }
+    }
+    for (PhaseTiming timing : getPhaseTimings()) {
+      sb.append("\nPhase ").append(timing);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * How long a phase took and how many objects it processed.
+   */
+  public static class PhaseTiming {
+
+    private final OperationPhase phase;
+
+    private final long elapsedNanos;
+
+    private final int objectCount;
+
+    public PhaseTiming(OperationPhase phase, long elapsedNanos, int objectCount) {
+      this.phase = phase;
+      this.elapsedNanos = elapsedNanos;
+      this.objectCount = objectCount;
+    }
+
+    public OperationPhase getPhase() {
+      return phase;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    public int getObjectCount() {
+      return objectCount;
+    }
+
+    @Override
+    public String toString() {
+      return new StringBuilder(phase.getLabel()).append(": ")
+          .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append("ms, ").append(objectCount)
+          .append(" object(s)").toString();
+    }
+  }
+
+}
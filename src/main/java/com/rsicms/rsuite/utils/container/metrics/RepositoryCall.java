@@ -0,0 +1,9 @@
+package com.rsicms.rsuite.utils.container.metrics;
+
+/**
+ * The types of repository calls this library makes that are instrumented.
+ */
+public enum RepositoryCall {
+  GET_CONTAINER, GET_MANAGED_OBJECT, GET_CHECK_OUT_OWNER, CHECK_OUT, DESTROY,
+  REMOVE_CONTENT_ASSEMBLY, DELETE_CA_NODE, RENAME
+}
@@ -0,0 +1,122 @@
+package com.rsicms.rsuite.utils.container.snapshot;
+
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+
+/**
+ * A change to one object of a container's tree, as found by {@link ContainerTreeDiff}. An object
+ * that was both moved and modified has a change of each type.
+ */
+public class ContainerTreeChange {
+
+  public enum Type {
+    /**
+     * The object was not in the previous tree.
+     */
+    ADDED,
+
+    /**
+     * The object is no longer in the tree.
+     */
+    REMOVED,
+
+    /**
+     * The object was first reached from a different container, or its order relative to its
+     * previous siblings changed. See {@link ContainerTreeDiff}.
+     */
+    MOVED,
+
+    /**
+     * The object's version, display name or container type changed. A container's version changes
+     * when its children do.
+     */
+    MODIFIED
+  }
+
+  private Type type;
+
+  private String id;
+
+  private ReferencedItem.Kind kind;
+
+  private String displayName;
+
+  private String previousParentId;
+
+  private int previousOrdinal;
+
+  private String parentId;
+
+  private int ordinal;
+
+  ContainerTreeChange(Type type, String id, ReferencedItem.Kind kind, String displayName,
+      String previousParentId, int previousOrdinal, String parentId, int ordinal) {
+    this.type = type;
+    this.id = id;
+    this.kind = kind;
+    this.displayName = displayName;
+    this.previousParentId = previousParentId;
+    this.previousOrdinal = previousOrdinal;
+    this.parentId = parentId;
+    this.ordinal = ordinal;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public ReferencedItem.Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * @return The current display name or, for a removed object, the last known one.
+   */
+  public String getDisplayName() {
+    return displayName;
+  }
+
+  /**
+   * @return The ID of the container the object was previously first reached from; null for added
+   *         objects and the starting container.
+   */
+  public String getPreviousParentId() {
+    return previousParentId;
+  }
+
+  /**
+   * @return The object's previous position among its container's children; -1 for added objects
+   *         and the starting container.
+   */
+  public int getPreviousOrdinal() {
+    return previousOrdinal;
+  }
+
+  /**
+   * @return The ID of the container the object is now first reached from; null for removed
+   *         objects and the starting container.
+   */
+  public String getParentId() {
+    return parentId;
+  }
+
+  /**
+   * @return The object's position among its container's children; -1 for removed objects and the
+   *         starting container.
+   */
+  public int getOrdinal() {
+    return ordinal;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("ContainerTreeChange [").append(type).append(" ").append(kind)
+        .append(" ").append(id).append(", parent=").append(previousParentId).append("[")
+        .append(previousOrdinal).append("] -> ").append(parentId).append("[").append(ordinal)
+        .append("]]").toString();
+  }
+
+}
@@ -0,0 +1,217 @@
+package com.rsicms.rsuite.utils.container.snapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes between two snapshots of a container's tree, so that a job may process only the
+ * objects added, removed, moved or modified since its last run. Objects are matched by ID.
+ * <p>
+ * An object moved when it is first reached from a different container, or when its order relative
+ * to the siblings it had before changed. An object whose ordinal merely shifted, as siblings were
+ * added or removed before it, did not move. When siblings were reordered, the fewest objects that
+ * account for the new order are reported as moved: those outside a longest sequence of siblings
+ * still in their previous relative order.
+ * <p>
+ * Changes are listed in the order the current tree was visited, followed by the removals, in the
+ * order the previous tree was visited. The current snapshot is retained, to be written and
+ * compared against on the next run.
+ */
+public class ContainerTreeDiff {
+
+  private ContainerTreeSnapshot currentSnapshot;
+
+  private List<ContainerTreeChange> changes;
+
+  private ContainerTreeDiff(ContainerTreeSnapshot currentSnapshot,
+      List<ContainerTreeChange> changes) {
+    this.currentSnapshot = currentSnapshot;
+    this.changes = changes;
+  }
+
+  /**
+   * Compare two snapshots.
+   *
+   * @param previous The earlier snapshot. When null, every current object is added.
+   * @param current
+   * @return The differences.
+   */
+  public static ContainerTreeDiff compare(ContainerTreeSnapshot previous,
+      ContainerTreeSnapshot current) {
+    List<ContainerTreeChange> changes = new ArrayList<ContainerTreeChange>();
+    boolean[] reordered = previous == null ? null : findReordered(previous, current);
+    int matchedCnt = 0;
+    for (int node = 0; node < current.size(); node++) {
+      String id = current.getId(node);
+      String parentId = getParentId(current, node);
+      int ordinal = current.getOrdinal(node);
+      int previousNode = previous == null ? -1 : previous.indexOf(id);
+      if (previousNode < 0) {
+        changes.add(new ContainerTreeChange(ContainerTreeChange.Type.ADDED, id,
+            current.getKind(node), current.getDisplayName(node), null, -1, parentId, ordinal));
+        continue;
+      }
+      matchedCnt++;
+      String previousParentId = getParentId(previous, previousNode);
+      int previousOrdinal = previous.getOrdinal(previousNode);
+      if (!equals(parentId, previousParentId) || reordered[node]) {
+        changes.add(new ContainerTreeChange(ContainerTreeChange.Type.MOVED, id,
+            current.getKind(node), current.getDisplayName(node), previousParentId,
+            previousOrdinal, parentId, ordinal));
+      }
+      if (current.getVersion(node) != previous.getVersion(previousNode)
+          || !equals(current.getDisplayName(node), previous.getDisplayName(previousNode))
+          || !equals(current.getContainerType(node), previous.getContainerType(previousNode))) {
+        changes.add(new ContainerTreeChange(ContainerTreeChange.Type.MODIFIED, id,
+            current.getKind(node), current.getDisplayName(node), previousParentId,
+            previousOrdinal, parentId, ordinal));
+      }
+    }
+
+    // Every previous object was matched unless some are absent from the current tree.
+    if (previous != null && matchedCnt < previous.size()) {
+      for (int node = 0; node < previous.size(); node++) {
+        String id = previous.getId(node);
+        if (current.indexOf(id) < 0) {
+          changes.add(new ContainerTreeChange(ContainerTreeChange.Type.REMOVED, id,
+              previous.getKind(node), previous.getDisplayName(node), getParentId(previous, node),
+              previous.getOrdinal(node), null, -1));
+        }
+      }
+    }
+    return new ContainerTreeDiff(current, changes);
+  }
+
+  /**
+   * For each container of the current tree, take the children first reached from it that were
+   * also first reached from it in the previous tree, in current order, and find a longest
+   * subsequence whose previous ordinals increase. The children outside it were reordered.
+   *
+   * @return Per current node, true if the object was reordered among its siblings.
+   */
+  private static boolean[] findReordered(ContainerTreeSnapshot previous,
+      ContainerTreeSnapshot current) {
+    boolean[] reordered = new boolean[current.size()];
+    int[] siblings = new int[0];
+    int[] previousOrdinals = new int[0];
+    for (int container = 0; container < current.size(); container++) {
+      int childCnt = current.getChildCount(container);
+      int previousContainer = childCnt == 0 ? -1 : previous.indexOf(current.getId(container));
+      if (previousContainer < 0) {
+        continue;
+      }
+      if (siblings.length < childCnt) {
+        siblings = new int[childCnt];
+        previousOrdinals = new int[childCnt];
+      }
+      int siblingCnt = 0;
+      for (int i = 0; i < childCnt; i++) {
+        int child = current.getChild(container, i);
+        if (current.getParent(child) != container || current.getOrdinal(child) != i) {
+          // A reference to an object first reached elsewhere, or a repeated reference.
+          continue;
+        }
+        int previousChild = previous.indexOf(current.getId(child));
+        if (previousChild >= 0 && previous.getParent(previousChild) == previousContainer) {
+          siblings[siblingCnt] = child;
+          previousOrdinals[siblingCnt++] = previous.getOrdinal(previousChild);
+        }
+      }
+      markOutsideLongestIncreasing(siblings, previousOrdinals, siblingCnt, reordered);
+    }
+    return reordered;
+  }
+
+  /**
+   * Mark the nodes outside a longest strictly increasing subsequence of the values, in
+   * O(n log n).
+   */
+  private static void markOutsideLongestIncreasing(int[] nodes, int[] values, int count,
+      boolean[] marks) {
+    // tails[len] is the index of the smallest value ending an increasing subsequence of len + 1.
+    int[] tails = new int[count];
+    int[] predecessors = new int[count];
+    int length = 0;
+    for (int i = 0; i < count; i++) {
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (values[tails[mid]] < values[i]) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      predecessors[i] = low == 0 ? -1 : tails[low - 1];
+      tails[low] = i;
+      if (low == length) {
+        length++;
+      }
+    }
+    boolean[] inSequence = new boolean[count];
+    for (int i = length == 0 ? -1 : tails[length - 1]; i >= 0; i = predecessors[i]) {
+      inSequence[i] = true;
+    }
+    for (int i = 0; i < count; i++) {
+      if (!inSequence[i]) {
+        marks[nodes[i]] = true;
+      }
+    }
+  }
+
+  private static String getParentId(ContainerTreeSnapshot snapshot, int node) {
+    int parent = snapshot.getParent(node);
+    return parent < 0 ? null : snapshot.getId(parent);
+  }
+
+  private static boolean equals(String str1, String str2) {
+    return str1 == null ? str2 == null : str1.equals(str2);
+  }
+
+  /**
+   * @return The snapshot the previous one was compared to.
+   */
+  public ContainerTreeSnapshot getCurrentSnapshot() {
+    return currentSnapshot;
+  }
+
+  /**
+   * @return All changes.
+   */
+  public List<ContainerTreeChange> getChanges() {
+    return Collections.unmodifiableList(changes);
+  }
+
+  /**
+   * @param type
+   * @return The changes of the given type.
+   */
+  public List<ContainerTreeChange> getChanges(ContainerTreeChange.Type type) {
+    List<ContainerTreeChange> changesOfType = new ArrayList<ContainerTreeChange>();
+    for (ContainerTreeChange change : changes) {
+      if (change.getType() == type) {
+        changesOfType.add(change);
+      }
+    }
+    return changesOfType;
+  }
+
+  /**
+   * @return True if nothing changed.
+   */
+  public boolean isEmpty() {
+    return changes.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("ContainerTreeDiff [added=")
+        .append(getChanges(ContainerTreeChange.Type.ADDED).size()).append(", removed=")
+        .append(getChanges(ContainerTreeChange.Type.REMOVED).size()).append(", moved=")
+        .append(getChanges(ContainerTreeChange.Type.MOVED).size()).append(", modified=")
+        .append(getChanges(ContainerTreeChange.Type.MODIFIED).size()).append("]").toString();
+  }
+
+}
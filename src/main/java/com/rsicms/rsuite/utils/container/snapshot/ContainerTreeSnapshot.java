@@ -0,0 +1,464 @@
+package com.rsicms.rsuite.utils.container.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.ContainerUtilsMessageProperties;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+
+/**
+ * A compact, immutable snapshot of a container's tree: every object a traversal reached, its kind,
+ * display name and, for containers, type, along with the references between them. Sibling,
+ * ancestry and listing queries are answered without the repository.
+ * <p>
+ * Objects are nodes, numbered in the order {@link SnapshotContainerVisitor} visited them, the
+ * starting container being node zero. Strings are stored once, in a string table. Everything else
+ * is primitive arrays: per node, its string indexes, kind, and the parent and ordinal of its first
+ * reference; per container, the nodes of all of its children in order, including references to
+ * objects first reached elsewhere. A node index sorted by ID supports lookups by binary search.
+ * Each node also carries a version, which {@link ContainerTreeDiff} compares to detect
+ * modifications.
+ * <p>
+ * The same layout is written to files, which {@link #map(File)} memory-maps rather than reads, so
+ * a snapshot of any size opens immediately and is paged in as queried. Instances are safe for use
+ * by multiple threads.
+ */
+public class ContainerTreeSnapshot {
+
+  /**
+   * "RCTS"
+   */
+  private final static int MAGIC = 0x52435453;
+
+  private final static int VERSION = 1;
+
+  /**
+   * Magic, version, node count, edge count, string count and string byte count.
+   */
+  private final static int HEADER_SIZE = 6 * 4;
+
+  private final static Charset CHARSET = Charset.forName("UTF-8");
+
+  private final static ReferencedItem.Kind[] KINDS = ReferencedItem.Kind.values();
+
+  private final int nodeCount;
+
+  private final LongBuffer versions;
+
+  private final IntBuffer idStrings;
+
+  private final IntBuffer nameStrings;
+
+  private final IntBuffer typeStrings;
+
+  private final IntBuffer parents;
+
+  private final IntBuffer ordinals;
+
+  private final IntBuffer childOffsets;
+
+  private final IntBuffer children;
+
+  private final IntBuffer nodesById;
+
+  private final IntBuffer stringOffsets;
+
+  private final ByteBuffer kinds;
+
+  private final ByteBuffer strings;
+
+  ContainerTreeSnapshot(int nodeCount, LongBuffer versions, IntBuffer idStrings,
+      IntBuffer nameStrings, IntBuffer typeStrings, IntBuffer parents, IntBuffer ordinals,
+      IntBuffer childOffsets, IntBuffer children, IntBuffer nodesById, IntBuffer stringOffsets,
+      ByteBuffer kinds, ByteBuffer strings) {
+    this.nodeCount = nodeCount;
+    this.versions = versions;
+    this.idStrings = idStrings;
+    this.nameStrings = nameStrings;
+    this.typeStrings = typeStrings;
+    this.parents = parents;
+    this.ordinals = ordinals;
+    this.childOffsets = childOffsets;
+    this.children = children;
+    this.nodesById = nodesById;
+    this.stringOffsets = stringOffsets;
+    this.kinds = kinds;
+    this.strings = strings;
+  }
+
+  /**
+   * @return The number of objects in the snapshot.
+   */
+  public int size() {
+    return nodeCount;
+  }
+
+  /**
+   * @param id
+   * @return The identified object's node, or -1 when the snapshot does not contain it.
+   */
+  public int indexOf(String id) {
+    byte[] key = id.getBytes(CHARSET);
+    int low = 0;
+    int high = nodeCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int node = nodesById.get(mid);
+      int cmp = compareString(idStrings.get(node), key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return node;
+      }
+    }
+    return -1;
+  }
+
+  public String getId(int node) {
+    return getString(idStrings.get(node));
+  }
+
+  /**
+   * @param node
+   * @return The display name, or null when the object did not have one.
+   */
+  public String getDisplayName(int node) {
+    return getString(nameStrings.get(node));
+  }
+
+  /**
+   * @param node
+   * @return The container type, or null for MOs and containers without one.
+   */
+  public String getContainerType(int node) {
+    return getString(typeStrings.get(node));
+  }
+
+  /**
+   * @param node
+   * @return For an MO, when it was last modified, in milliseconds since the epoch; for a container,
+   *         a hash of its children's IDs. Zero when unknown.
+   */
+  public long getVersion(int node) {
+    return versions.get(node);
+  }
+
+  public ReferencedItem.Kind getKind(int node) {
+    return KINDS[kinds.get(node)];
+  }
+
+  /**
+   * @param node
+   * @return The node of the container the object was first reached from, or -1 for the starting
+   *         container.
+   */
+  public int getParent(int node) {
+    return parents.get(node);
+  }
+
+  /**
+   * @param node
+   * @return The object's zero-based position among its parent's children, or -1 for the starting
+   *         container.
+   */
+  public int getOrdinal(int node) {
+    return ordinals.get(node);
+  }
+
+  /**
+   * @param node
+   * @return The object's depth, the starting container being at zero.
+   */
+  public int getDepth(int node) {
+    int depth = 0;
+    for (int parent = parents.get(node); parent >= 0; parent = parents.get(parent)) {
+      depth++;
+    }
+    return depth;
+  }
+
+  /**
+   * @param node
+   * @return The number of children the container has; zero for MOs.
+   */
+  public int getChildCount(int node) {
+    return childOffsets.get(node + 1) - childOffsets.get(node);
+  }
+
+  /**
+   * @param node
+   * @param idx
+   * @return The node of the container's child at the given position.
+   */
+  public int getChild(int node, int idx) {
+    return children.get(childOffsets.get(node) + idx);
+  }
+
+  /**
+   * @return The ID of the starting container.
+   */
+  public String getStartingContainerId() {
+    return getId(0);
+  }
+
+  /**
+   * @param id
+   * @return The IDs of the containers from the starting container to the identified object's
+   *         parent, along the path it was first reached by. Empty for the starting container; null
+   *         when the snapshot does not contain the object.
+   */
+  public List<String> getAncestorIds(String id) {
+    int node = indexOf(id);
+    if (node < 0) {
+      return null;
+    }
+    List<String> ancestorIds = new ArrayList<String>();
+    for (int parent = parents.get(node); parent >= 0; parent = parents.get(parent)) {
+      ancestorIds.add(getId(parent));
+    }
+    Collections.reverse(ancestorIds);
+    return ancestorIds;
+  }
+
+  /**
+   * The snapshot counterpart of <code>ContainerUtils.getSiblingManagedObject</code>: get the ID of
+   * the MO the container references before or after the identified child, considering only its MO
+   * children.
+   *
+   * @param containerId
+   * @param childId Target ID of an MO the container directly references.
+   * @param previous Submit true for the previous sibling or false for the next sibling.
+   * @return The sibling's ID, or null when there isn't one, including when the container or child
+   *         is not in the snapshot.
+   */
+  public String getSiblingManagedObjectId(String containerId, String childId, boolean previous) {
+    int container = indexOf(containerId);
+    int child = indexOf(childId);
+    if (container < 0 || child < 0) {
+      return null;
+    }
+    int sibling = -1;
+    int childCnt = getChildCount(container);
+    for (int i = 0; i < childCnt; i++) {
+      int node = getChild(container, i);
+      if (getKind(node) != ReferencedItem.Kind.MANAGED_OBJECT) {
+        continue;
+      }
+      if (node == child) {
+        if (previous) {
+          return sibling < 0 ? null : getId(sibling);
+        }
+        for (int j = i + 1; j < childCnt; j++) {
+          if (getKind(getChild(container, j)) == ReferencedItem.Kind.MANAGED_OBJECT) {
+            return getId(getChild(container, j));
+          }
+        }
+        return null;
+      }
+      sibling = node;
+    }
+    return null;
+  }
+
+  /**
+   * @return The IDs of the referenced CAs, in the order
+   *         <code>ListReferencedContentContainerVisitor</code> lists them.
+   */
+  public List<String> getContentAssemblyIds() {
+    return getIds(ReferencedItem.Kind.CONTENT_ASSEMBLY);
+  }
+
+  /**
+   * @return The IDs of the referenced MOs, in the order
+   *         <code>ListReferencedContentContainerVisitor</code> lists them.
+   */
+  public List<String> getManagedObjectIds() {
+    return getIds(ReferencedItem.Kind.MANAGED_OBJECT);
+  }
+
+  private List<String> getIds(ReferencedItem.Kind kind) {
+    List<String> ids = new ArrayList<String>();
+    for (int node = 1; node < nodeCount; node++) {
+      if (getKind(node) == kind) {
+        ids.add(getId(node));
+      }
+    }
+    return ids;
+  }
+
+  private String getString(int idx) {
+    if (idx < 0) {
+      return null;
+    }
+    int start = stringOffsets.get(idx);
+    byte[] bytes = new byte[stringOffsets.get(idx + 1) - start];
+    ByteBuffer buf = strings.duplicate();
+    buf.position(start);
+    buf.get(bytes);
+    return new String(bytes, CHARSET);
+  }
+
+  /**
+   * Compare a string in the table to the given UTF-8 bytes, unsigned byte by byte.
+   */
+  private int compareString(int idx, byte[] key) {
+    int start = stringOffsets.get(idx);
+    int len = stringOffsets.get(idx + 1) - start;
+    for (int i = 0; i < len && i < key.length; i++) {
+      int cmp = (strings.get(start + i) & 0xff) - (key[i] & 0xff);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return len - key.length;
+  }
+
+  /**
+   * The size of a snapshot file. Following the header, the file's sections are, in order: the
+   * node versions, which come first to keep them eight-byte aligned; per node, the ID, name and
+   * type string indexes, parent, ordinal and child offset, with a final child offset; the
+   * children; the node index sorted by ID; the string offsets, with a final offset; per node, the
+   * kind; and the string bytes. {@link #write(File)} and {@link #map(File)} follow this layout.
+   */
+  private static long getFileSize(int nodeCount, int edgeCount, int stringCount,
+      int stringByteCount) {
+    return HEADER_SIZE + 8L * nodeCount + 4L * (6L * nodeCount + 1) + 4L * edgeCount
+        + 4L * nodeCount + 4L * (stringCount + 1) + nodeCount + stringByteCount;
+  }
+
+  /**
+   * Write this snapshot to the given file, replacing any existing file.
+   *
+   * @param file
+   * @throws RSuiteException Thrown if the file cannot be written.
+   */
+  public void write(File file) throws RSuiteException {
+    int stringCount = stringOffsets.limit() - 1;
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(children.limit())
+        .putInt(stringCount).putInt(strings.limit());
+    header.flip();
+
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "rw");
+      raf.setLength(0);
+      FileChannel channel = raf.getChannel();
+      writeFully(channel, header);
+      ByteBuffer versionBuf = ByteBuffer.allocate(nodeCount * 8);
+      versionBuf.asLongBuffer().put(versions.duplicate());
+      writeFully(channel, versionBuf);
+      for (IntBuffer ints : new IntBuffer[] {idStrings, nameStrings, typeStrings, parents,
+          ordinals, childOffsets, children, nodesById, stringOffsets}) {
+        ByteBuffer buf = ByteBuffer.allocate(ints.limit() * 4);
+        buf.asIntBuffer().put(ints.duplicate());
+        writeFully(channel, buf);
+      }
+      writeFully(channel, kinds.duplicate());
+      writeFully(channel, strings.duplicate());
+      channel.force(false);
+    } catch (IOException e) {
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("error.unable.to.write.snapshot", file.getPath(),
+              e.getMessage()),
+          e);
+    } finally {
+      closeQuietly(raf);
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+    buf.position(0);
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+  }
+
+  /**
+   * Memory-map a snapshot file written by {@link #write(File)}. The mapping remains valid after
+   * the file is closed, until the snapshot is garbage collected.
+   *
+   * @param file
+   * @return The snapshot.
+   * @throws RSuiteException Thrown if the file cannot be read or is not a snapshot.
+   */
+  public static ContainerTreeSnapshot map(File file) throws RSuiteException {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "r");
+      ByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+      if (buf.limit() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+        throw newInvalidException(file);
+      }
+      int nodeCount = buf.getInt();
+      int edgeCount = buf.getInt();
+      int stringCount = buf.getInt();
+      int stringByteCount = buf.getInt();
+      if (nodeCount < 1 || edgeCount < 0 || stringCount < 0 || stringByteCount < 0
+          || getFileSize(nodeCount, edgeCount, stringCount, stringByteCount) != buf.limit()) {
+        throw newInvalidException(file);
+      }
+      return new ContainerTreeSnapshot(nodeCount, slice(buf, nodeCount * 8).asLongBuffer(),
+          sliceInts(buf, nodeCount), sliceInts(buf, nodeCount), sliceInts(buf, nodeCount),
+          sliceInts(buf, nodeCount), sliceInts(buf, nodeCount), sliceInts(buf, nodeCount + 1),
+          sliceInts(buf, edgeCount), sliceInts(buf, nodeCount), sliceInts(buf, stringCount + 1),
+          slice(buf, nodeCount), slice(buf, stringByteCount));
+    } catch (IOException e) {
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("error.unable.to.read.snapshot", file.getPath(),
+              e.getMessage()),
+          e);
+    } finally {
+      closeQuietly(raf);
+    }
+  }
+
+  private static IntBuffer sliceInts(ByteBuffer buf, int count) {
+    return slice(buf, count * 4).asIntBuffer();
+  }
+
+  /**
+   * @return The next bytes of the buffer, advancing past them.
+   */
+  private static ByteBuffer slice(ByteBuffer buf, int length) {
+    ByteBuffer slice = buf.slice();
+    slice.limit(length);
+    buf.position(buf.position() + length);
+    return slice;
+  }
+
+  private static RSuiteException newInvalidException(File file) {
+    return new RSuiteException(RSuiteException.ERROR_PARAM_INVALID,
+        ContainerUtilsMessageProperties.get("error.invalid.snapshot", file.getPath()));
+  }
+
+  private static void closeQuietly(RandomAccessFile raf) {
+    if (raf != null) {
+      try {
+        raf.close();
+      } catch (IOException e) {
+        // The data was already forced to disk or only read.
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder("ContainerTreeSnapshot [start=").append(getStartingContainerId())
+        .append(", objects=").append(nodeCount).append(", references=").append(children.limit())
+        .append("]").toString();
+  }
+
+}
@@ -0,0 +1,188 @@
+package com.rsicms.rsuite.utils.container.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+
+/**
+ * Accumulates the nodes of a {@link ContainerTreeSnapshot} in visiting order, interning their
+ * strings, and resolves the containers' children once every node is known.
+ */
+class ContainerTreeSnapshotBuilder {
+
+  private final static Charset CHARSET = Charset.forName("UTF-8");
+
+  private Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+
+  private List<byte[]> stringList = new ArrayList<byte[]>();
+
+  private Map<String, Integer> nodesById = new HashMap<String, Integer>();
+
+  private List<int[]> nodeList = new ArrayList<int[]>();
+
+  private List<Long> versionList = new ArrayList<Long>();
+
+  private List<ReferencedItem.Kind> kindList = new ArrayList<ReferencedItem.Kind>();
+
+  /**
+   * Per node, the target IDs of its children; null for MOs.
+   */
+  private List<List<String>> childIdList = new ArrayList<List<String>>();
+
+  /**
+   * Add a node, unless one with the same ID was already added.
+   *
+   * @param id
+   * @param kind
+   * @param displayName
+   * @param containerType
+   * @param version See {@link ContainerTreeSnapshot#getVersion(int)}.
+   * @param parent The parent's node, or -1 for the starting container.
+   * @param ordinal The position among the parent's children, or -1 for the starting container.
+   * @param childIds The target IDs of a container's children, in order; null for MOs.
+   * @return The node.
+   */
+  int add(String id, ReferencedItem.Kind kind, String displayName, String containerType,
+      long version, int parent, int ordinal, List<String> childIds) {
+    Integer existing = nodesById.get(id);
+    if (existing != null) {
+      return existing;
+    }
+    int node = nodeList.size();
+    nodesById.put(id, node);
+    nodeList.add(new int[] {intern(id), intern(displayName), intern(containerType), parent,
+        ordinal});
+    versionList.add(version);
+    kindList.add(kind);
+    childIdList.add(childIds);
+    return node;
+  }
+
+  /**
+   * @param id
+   * @return The node, or -1 when no node with the ID was added.
+   */
+  int indexOf(String id) {
+    Integer node = nodesById.get(id);
+    return node == null ? -1 : node;
+  }
+
+  private int intern(String str) {
+    if (str == null) {
+      return -1;
+    }
+    Integer idx = stringIndexes.get(str);
+    if (idx == null) {
+      idx = stringList.size();
+      stringIndexes.put(str, idx);
+      stringList.add(str.getBytes(CHARSET));
+    }
+    return idx;
+  }
+
+  /**
+   * @return The snapshot, or null when no node was added. Children that were not visited, such as
+   *         those of a pruned subtree, are left out.
+   */
+  ContainerTreeSnapshot build() {
+    final int nodeCount = nodeList.size();
+    if (nodeCount == 0) {
+      return null;
+    }
+
+    LongBuffer versions = LongBuffer.allocate(nodeCount);
+    IntBuffer idStrings = IntBuffer.allocate(nodeCount);
+    IntBuffer nameStrings = IntBuffer.allocate(nodeCount);
+    IntBuffer typeStrings = IntBuffer.allocate(nodeCount);
+    IntBuffer parents = IntBuffer.allocate(nodeCount);
+    IntBuffer ordinals = IntBuffer.allocate(nodeCount);
+    ByteBuffer kinds = ByteBuffer.allocate(nodeCount);
+    for (int node = 0; node < nodeCount; node++) {
+      int[] fields = nodeList.get(node);
+      versions.put(versionList.get(node));
+      idStrings.put(fields[0]);
+      nameStrings.put(fields[1]);
+      typeStrings.put(fields[2]);
+      parents.put(fields[3]);
+      ordinals.put(fields[4]);
+      kinds.put((byte) kindList.get(node).ordinal());
+    }
+
+    IntBuffer childOffsets = IntBuffer.allocate(nodeCount + 1);
+    List<Integer> childList = new ArrayList<Integer>();
+    for (int node = 0; node < nodeCount; node++) {
+      childOffsets.put(childList.size());
+      List<String> childIds = childIdList.get(node);
+      if (childIds != null) {
+        for (String childId : childIds) {
+          Integer child = nodesById.get(childId);
+          if (child != null) {
+            childList.add(child);
+          }
+        }
+      }
+    }
+    childOffsets.put(childList.size());
+    IntBuffer children = IntBuffer.allocate(childList.size());
+    for (Integer child : childList) {
+      children.put(child);
+    }
+
+    IntBuffer stringOffsets = IntBuffer.allocate(stringList.size() + 1);
+    ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+    for (byte[] bytes : stringList) {
+      stringOffsets.put(stringBytes.size());
+      stringBytes.write(bytes, 0, bytes.length);
+    }
+    stringOffsets.put(stringBytes.size());
+
+    // Order the nodes by ID as ContainerTreeSnapshot#indexOf compares them: unsigned UTF-8 bytes.
+    Integer[] sorted = new Integer[nodeCount];
+    for (int node = 0; node < nodeCount; node++) {
+      sorted[node] = node;
+    }
+    Arrays.sort(sorted, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer node1, Integer node2) {
+        return compareBytes(stringList.get(nodeList.get(node1)[0]),
+            stringList.get(nodeList.get(node2)[0]));
+      }
+    });
+    IntBuffer nodesByIdBuf = IntBuffer.allocate(nodeCount);
+    for (Integer node : sorted) {
+      nodesByIdBuf.put(node);
+    }
+
+    versions.flip();
+    return new ContainerTreeSnapshot(nodeCount, versions, flip(idStrings), flip(nameStrings),
+        flip(typeStrings), flip(parents), flip(ordinals), flip(childOffsets), flip(children),
+        flip(nodesByIdBuf), flip(stringOffsets), (ByteBuffer) kinds.flip(),
+        ByteBuffer.wrap(stringBytes.toByteArray()));
+  }
+
+  private static IntBuffer flip(IntBuffer buf) {
+    buf.flip();
+    return buf;
+  }
+
+  private static int compareBytes(byte[] bytes1, byte[] bytes2) {
+    for (int i = 0; i < bytes1.length && i < bytes2.length; i++) {
+      int cmp = (bytes1[i] & 0xff) - (bytes2[i] & 0xff);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return bytes1.length - bytes2.length;
+  }
+
+}
@@ -0,0 +1,156 @@
+package com.rsicms.rsuite.utils.container.snapshot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyItem;
+import com.reallysi.rsuite.api.ContentAssemblyNode;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ContentAssemblyReference;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.ManagedObjectReference;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+import com.rsicms.rsuite.utils.container.traversal.TraversalOptions;
+import com.rsicms.rsuite.utils.container.visitor.ListReferencedContentContainerVisitor;
+
+/**
+ * Lists the referenced content as {@link ListReferencedContentContainerVisitor} does while
+ * recording the tree in a {@link ContainerTreeSnapshot}. Each object is recorded once, under the
+ * container it was first reached from; every reference is recorded as a child of its container.
+ * <p>
+ * The entire tree is always captured: traversal options are not supported.
+ */
+public class SnapshotContainerVisitor extends ListReferencedContentContainerVisitor {
+
+  private ContainerTreeSnapshotBuilder builder = new ContainerTreeSnapshotBuilder();
+
+  /**
+   * The containers whose children are being visited, innermost first.
+   */
+  private Deque<OpenContainer> openContainers = new ArrayDeque<OpenContainer>();
+
+  /**
+   * Construct an instance of this visitor.
+   *
+   * @param context
+   * @param user
+   */
+  public SnapshotContainerVisitor(ExecutionContext context, User user) {
+    super(context, user, false);
+  }
+
+  @Override
+  public void visitContentAssemblyNodeContainer(ContentAssemblyNodeContainer container)
+      throws RSuiteException {
+    List<String> childIds = new ArrayList<String>();
+    long childIdsHash = 1;
+    List<? extends ContentAssemblyItem> children = container.getChildrenObjects();
+    if (children != null) {
+      for (ContentAssemblyItem child : children) {
+        String childId = getTargetId(child);
+        if (childId != null) {
+          childIds.add(childId);
+          childIdsHash = 31 * childIdsHash + childId.hashCode();
+        }
+      }
+    }
+    int node = add(container.getId(),
+        container instanceof ContentAssembly ? ReferencedItem.Kind.CONTENT_ASSEMBLY
+            : ReferencedItem.Kind.CA_NODE,
+        container.getDisplayName(), container.getType(), childIdsHash, childIds);
+    openContainers.push(new OpenContainer(node, childIds));
+    try {
+      super.visitContentAssemblyNodeContainer(container);
+    } finally {
+      openContainers.pop();
+    }
+  }
+
+  @Override
+  public void visitManagedObject(ManagedObject mo) throws RSuiteException {
+    super.visitManagedObject(mo);
+    Date dtModified = mo.getDtModified();
+    add(mo.getId(), ReferencedItem.Kind.MANAGED_OBJECT, mo.getDisplayName(), null,
+        dtModified == null ? 0 : dtModified.getTime(), null);
+  }
+
+  private int add(String id, ReferencedItem.Kind kind, String displayName, String containerType,
+      long version, List<String> childIds) {
+    OpenContainer parent = openContainers.peek();
+    return builder.add(id, kind, displayName, containerType, version,
+        parent == null ? -1 : parent.node, parent == null ? -1 : parent.nextOrdinal(id), childIds);
+  }
+
+  /**
+   * @return The ID of the object the child is or references, or null for other types of children.
+   */
+  private static String getTargetId(ContentAssemblyItem child) throws RSuiteException {
+    if (child instanceof ManagedObjectReference) {
+      return ((ManagedObjectReference) child).getTargetId();
+    } else if (child instanceof ContentAssemblyReference) {
+      return ((ContentAssemblyReference) child).getTargetId();
+    } else if (child instanceof ContentAssemblyNode) {
+      return child.getId();
+    }
+    return null;
+  }
+
+  /**
+   * Not supported: a snapshot is of the entire tree.
+   *
+   * @throws UnsupportedOperationException Thrown unless the options are null.
+   */
+  @Override
+  public void setTraversalOptions(TraversalOptions traversalOptions) {
+    if (traversalOptions != null) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * @return The snapshot of the tree visited, or null when nothing was visited.
+   */
+  public ContainerTreeSnapshot getSnapshot() {
+    return builder.build();
+  }
+
+  /**
+   * A container whose children are being visited, and how far the visit has progressed.
+   */
+  private static class OpenContainer {
+    private final int node;
+    private final List<String> childIds;
+    private int nextChildIdx;
+
+    private OpenContainer(int node, List<String> childIds) {
+      this.node = node;
+      this.childIds = childIds;
+    }
+
+    /**
+     * Children are visited in order, but those already visited elsewhere are skipped, so the
+     * search resumes after the previous child's ordinal. Each container's children are scanned
+     * once in total.
+     *
+     * @param id
+     * @return The ordinal of the child being visited, or -1 when not a remaining child.
+     */
+    private int nextOrdinal(String id) {
+      for (int i = nextChildIdx; i < childIds.size(); i++) {
+        if (childIds.get(i).equals(id)) {
+          nextChildIdx = i + 1;
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+}
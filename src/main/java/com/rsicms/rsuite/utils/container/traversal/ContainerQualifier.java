@@ -0,0 +1,19 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.RSuiteException;
+
+/**
+ * Decides which containers a traversal is to include. The container counterpart of
+ * <code>ManagedObjectQualifier</code>.
+ */
+public interface ContainerQualifier {
+
+  /**
+   * @param container
+   * @return True if the container qualifies.
+   * @throws RSuiteException
+   */
+  boolean accept(ContentAssemblyNodeContainer container) throws RSuiteException;
+
+}
@@ -0,0 +1,88 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.MetaDataItem;
+import com.reallysi.rsuite.api.RSuiteException;
+
+/**
+ * Factory of commonly needed {@link ContainerQualifier}s.
+ */
+public class ContainerQualifiers {
+
+  private ContainerQualifiers() {}
+
+  /**
+   * @param types
+   * @return A qualifier accepting containers of any of the given types.
+   */
+  public static ContainerQualifier ofType(String... types) {
+    final Set<String> typeSet = new HashSet<String>(Arrays.asList(types));
+    return new ContainerQualifier() {
+      @Override
+      public boolean accept(ContentAssemblyNodeContainer container) {
+        return typeSet.contains(container.getType());
+      }
+    };
+  }
+
+  /**
+   * @param lmdName
+   * @param lmdValue
+   * @return A qualifier accepting containers with the given LMD value. LMD names are compared
+   *         ignoring case; values are not.
+   */
+  public static ContainerQualifier withLayeredMetadataValue(final String lmdName,
+      final String lmdValue) {
+    return new ContainerQualifier() {
+      @Override
+      public boolean accept(ContentAssemblyNodeContainer container) throws RSuiteException {
+        List<MetaDataItem> items = container.getMetaDataItems();
+        if (items != null) {
+          for (MetaDataItem item : items) {
+            if (lmdName.equalsIgnoreCase(item.getName()) && lmdValue.equals(item.getValue())) {
+              return true;
+            }
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @param qualifier
+   * @return A qualifier accepting the containers the given one does not.
+   */
+  public static ContainerQualifier not(final ContainerQualifier qualifier) {
+    return new ContainerQualifier() {
+      @Override
+      public boolean accept(ContentAssemblyNodeContainer container) throws RSuiteException {
+        return !qualifier.accept(container);
+      }
+    };
+  }
+
+  /**
+   * @param qualifiers
+   * @return A qualifier accepting the containers every given qualifier accepts.
+   */
+  public static ContainerQualifier allOf(final ContainerQualifier... qualifiers) {
+    return new ContainerQualifier() {
+      @Override
+      public boolean accept(ContentAssemblyNodeContainer container) throws RSuiteException {
+        for (ContainerQualifier qualifier : qualifiers) {
+          if (!qualifier.accept(container)) {
+            return false;
+          }
+        }
+        return true;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,206 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.mo.qualifiers.ManagedObjectQualifier;
+
+/**
+ * Evaluates several named {@link ManagedObjectQualifier}s against the MOs of one traversal, each
+ * with its own mode: the first qualifying MO, all of them, up to a limit, or only a count.
+ * <p>
+ * Qualifiers are evaluated in the order they were added, against MOs in the order
+ * <code>ListReferencedContentContainerVisitor</code> lists them. A qualifier is no longer
+ * evaluated once it has what it needs. When every qualifier is of the first or limit modes and
+ * satisfied, the collector is complete and the traversal may stop.
+ * <p>
+ * An instance collects for one traversal, and is not safe for use by multiple threads.
+ */
+public class ManagedObjectCollector {
+
+  public enum Mode {
+    /**
+     * Collect the first qualifying MO.
+     */
+    FIRST,
+
+    /**
+     * Collect every qualifying MO.
+     */
+    ALL,
+
+    /**
+     * Count the qualifying MOs without retaining them.
+     */
+    COUNT,
+
+    /**
+     * Collect qualifying MOs up to a limit.
+     */
+    LIMIT
+  }
+
+  private Map<String, QualifierState> states = new LinkedHashMap<String, QualifierState>();
+
+  /**
+   * The number of qualifiers that may need more MOs.
+   */
+  private int incompleteCnt;
+
+  /**
+   * The number of qualifiers that need every MO.
+   */
+  private int unboundedCnt;
+
+  /**
+   * Add a qualifier to evaluate.
+   *
+   * @param name Unique name to get the results by.
+   * @param qualifier
+   * @param mode Any mode but {@link Mode#LIMIT}, which requires a limit.
+   * @return This collector.
+   */
+  public ManagedObjectCollector add(String name, ManagedObjectQualifier qualifier, Mode mode) {
+    if (mode == Mode.LIMIT) {
+      throw new IllegalArgumentException("The limit mode requires a limit.");
+    }
+    return add(name, qualifier, mode, mode == Mode.FIRST ? 1 : Integer.MAX_VALUE);
+  }
+
+  /**
+   * Add a qualifier to collect up to the given number of qualifying MOs for.
+   *
+   * @param name Unique name to get the results by.
+   * @param qualifier
+   * @param limit Must be positive.
+   * @return This collector.
+   */
+  public ManagedObjectCollector addLimit(String name, ManagedObjectQualifier qualifier,
+      int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("limit must be positive.");
+    }
+    return add(name, qualifier, Mode.LIMIT, limit);
+  }
+
+  private ManagedObjectCollector add(String name, ManagedObjectQualifier qualifier, Mode mode,
+      int limit) {
+    if (states.containsKey(name)) {
+      throw new IllegalArgumentException("Duplicate name: " + name);
+    }
+    states.put(name, new QualifierState(qualifier, mode, limit));
+    incompleteCnt++;
+    if (mode == Mode.ALL || mode == Mode.COUNT) {
+      unboundedCnt++;
+    }
+    return this;
+  }
+
+  /**
+   * Evaluate the qualifiers still in need of MOs against the given MO.
+   *
+   * @param mo
+   * @return True if the collector is now complete.
+   * @throws RSuiteException Thrown if a qualifier fails.
+   */
+  public boolean accept(ManagedObject mo) throws RSuiteException {
+    for (QualifierState state : states.values()) {
+      if (state.count < state.limit && state.qualifier.accept(mo)) {
+        state.count++;
+        if (state.mode != Mode.COUNT) {
+          state.managedObjects.add(mo);
+        }
+        if (state.count == state.limit) {
+          incompleteCnt--;
+        }
+      }
+    }
+    return isComplete();
+  }
+
+  /**
+   * @return True if no qualifier needs the rest of the tree: every one is of the first or limit
+   *         modes and has found as many MOs as it needs. Always false when there is a qualifier of
+   *         the all or count modes.
+   */
+  public boolean isComplete() {
+    return unboundedCnt == 0 && incompleteCnt == 0;
+  }
+
+  /**
+   * @return The qualifier names, in the order they were added.
+   */
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(states.keySet());
+  }
+
+  /**
+   * @param name
+   * @return The qualifying MOs collected for the named qualifier, in traversal order. Empty for the
+   *         count mode.
+   */
+  public List<ManagedObject> getManagedObjects(String name) {
+    return Collections.unmodifiableList(getState(name).managedObjects);
+  }
+
+  /**
+   * @param name
+   * @return The first qualifying MO found for the named qualifier, or null when none was. Null for
+   *         the count mode.
+   */
+  public ManagedObject getFirstManagedObject(String name) {
+    List<ManagedObject> managedObjects = getState(name).managedObjects;
+    return managedObjects.isEmpty() ? null : managedObjects.get(0);
+  }
+
+  /**
+   * @param name
+   * @return The number of qualifying MOs found for the named qualifier. Not a total for the first
+   *         and limit modes when the traversal stopped early.
+   */
+  public int getCount(String name) {
+    return getState(name).count;
+  }
+
+  private QualifierState getState(String name) {
+    QualifierState state = states.get(name);
+    if (state == null) {
+      throw new IllegalArgumentException("Unknown name: " + name);
+    }
+    return state;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("ManagedObjectCollector [");
+    for (Map.Entry<String, QualifierState> entry : states.entrySet()) {
+      if (sb.charAt(sb.length() - 1) != '[') {
+        sb.append(", ");
+      }
+      sb.append(entry.getKey()).append("=").append(entry.getValue().mode).append(":")
+          .append(entry.getValue().count);
+    }
+    return sb.append("]").toString();
+  }
+
+  private static class QualifierState {
+    private final ManagedObjectQualifier qualifier;
+    private final Mode mode;
+    private final int limit;
+    private final List<ManagedObject> managedObjects = new ArrayList<ManagedObject>();
+    private int count;
+
+    private QualifierState(ManagedObjectQualifier qualifier, Mode mode, int limit) {
+      this.qualifier = qualifier;
+      this.mode = mode;
+      this.limit = limit;
+    }
+  }
+
+}
@@ -0,0 +1,324 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyItem;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ContentAssemblyReference;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.ManagedObjectReference;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.ContainerUtilsMessageProperties;
+import com.rsicms.rsuite.utils.container.ContainerUtilsSession;
+import com.rsicms.rsuite.utils.container.metrics.ContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.InstrumentedReferencedContentFetcher;
+import com.rsicms.rsuite.utils.container.metrics.NoOpContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.visitor.ListReferencedContentContainerVisitor;
+import com.rsicms.rsuite.utils.container.visitor.ReferencedContent;
+
+/**
+ * Lists the content directly or indirectly referenced by a container, retrieving sibling subtrees
+ * concurrently on a fork-join pool. The resulting lists have the same order as those of
+ * {@link ListReferencedContentContainerVisitor}.
+ * <p>
+ * The walk has two steps. First, every reachable object is retrieved exactly once, concurrently,
+ * with each container recording its children's IDs in order. Then the retrieved structure is
+ * flattened depth-first on the calling thread, listing each object at its first reference.
+ * <p>
+ * The RSuite services are used from the pool's threads; the caller is responsible for only using
+ * this walker where that is permitted.
+ */
+public class ParallelReferencedContentWalker {
+
+  private ReferencedContentFetcher fetcher;
+
+  private ForkJoinPool pool;
+
+  private int parallelism;
+
+  private ContainerInstrumentation instrumentation = NoOpContainerInstrumentation.INSTANCE;
+
+  /**
+   * Construct a walker that creates a pool per walk.
+   *
+   * @param context
+   * @param user
+   * @param parallelism The maximum number of objects to retrieve concurrently.
+   */
+  public ParallelReferencedContentWalker(ExecutionContext context, User user, int parallelism) {
+    this(new ServiceReferencedContentFetcher(context, user), null, parallelism);
+  }
+
+  /**
+   * Construct a walker.
+   *
+   * @param fetcher Retrieves the referenced objects. Must be safe for use by multiple threads.
+   * @param pool Optional pool to walk on. The caller retains ownership. When null, a pool is
+   *        created and shut down per walk.
+   * @param parallelism The maximum number of objects to retrieve concurrently when creating a pool
+   *        per walk. Ignored when a pool is provided.
+   */
+  public ParallelReferencedContentWalker(ReferencedContentFetcher fetcher, ForkJoinPool pool,
+      int parallelism) {
+    this.fetcher = fetcher;
+    this.pool = pool;
+    this.parallelism = Math.max(parallelism, 1);
+  }
+
+  /**
+   * Report each object listed and the latency of each retrieval to the given instrumentation.
+   *
+   * @param instrumentation Must be safe for use by multiple threads.
+   */
+  public void setInstrumentation(ContainerInstrumentation instrumentation) {
+    this.instrumentation =
+        instrumentation == null ? NoOpContainerInstrumentation.INSTANCE : instrumentation;
+  }
+
+  /**
+   * List the content directly or indirectly referenced by the given container.
+   *
+   * @param startingContainer
+   * @return The referenced content.
+   * @throws RSuiteException Thrown if an object could not be retrieved, or if the calling thread
+   *         was interrupted, in which case the retrievals yet to start are abandoned.
+   */
+  public ReferencedContent walk(ContentAssemblyNodeContainer startingContainer)
+      throws RSuiteException {
+    ConcurrentMap<String, Node> nodesById = new ConcurrentHashMap<String, Node>();
+    Node root = new Node(startingContainer.getId());
+    root.object = startingContainer;
+    nodesById.put(root.id, root);
+
+    // A session reports its own retrievals, and not those it saves.
+    ReferencedContentFetcher walkFetcher = instrumentation == NoOpContainerInstrumentation.INSTANCE
+        || fetcher instanceof ContainerUtilsSession ? fetcher
+            : new InstrumentedReferencedContentFetcher(fetcher, instrumentation);
+    ForkJoinPool walkPool = pool == null ? new ForkJoinPool(parallelism) : pool;
+    AtomicBoolean cancelled = new AtomicBoolean();
+    ForkJoinTask<Void> task =
+        walkPool.submit(new ExpandContainerTask(walkFetcher, nodesById, root, cancelled));
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      // Stop the tasks yet to start, then restore the interrupt status for the caller.
+      cancelled.set(true);
+      task.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("error.interrupted.while.traversing"), e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ReferencedContentTraversalException) {
+        throw ((ReferencedContentTraversalException) e.getCause()).getRSuiteException();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw (RuntimeException) e.getCause();
+    } finally {
+      if (pool == null) {
+        walkPool.shutdown();
+      }
+    }
+
+    WalkResult result = new WalkResult(startingContainer);
+    Set<String> listedIds = new HashSet<String>();
+    listedIds.add(root.id);
+    instrumentation.nodeVisited(kindOf(startingContainer));
+    flatten(root, nodesById, listedIds, result);
+    return result;
+  }
+
+  /**
+   * Depth-first, list each object at its first reference.
+   */
+  private void flatten(Node node, ConcurrentMap<String, Node> nodesById, Set<String> listedIds,
+      WalkResult result) {
+    for (Object child : node.children) {
+      if (child instanceof Node) {
+        // A CANode; it isn't listed, but its children are.
+        instrumentation.nodeVisited(ReferencedItem.Kind.CA_NODE);
+        flatten((Node) child, nodesById, listedIds, result);
+      } else if (!listedIds.add((String) child)) {
+        result.duplicateReferenceCount++;
+      } else {
+        Node target = nodesById.get(child);
+        instrumentation.nodeVisited(kindOf(target.object));
+        if (target.object instanceof ManagedObject) {
+          result.managedObjects.add((ManagedObject) target.object);
+        } else {
+          if (target.object instanceof ContentAssembly) {
+            result.contentAssemblies.add((ContentAssembly) target.object);
+          }
+          flatten(target, nodesById, listedIds, result);
+        }
+      }
+    }
+  }
+
+  private static ReferencedItem.Kind kindOf(Object object) {
+    if (object instanceof ManagedObject) {
+      return ReferencedItem.Kind.MANAGED_OBJECT;
+    }
+    return object instanceof ContentAssembly ? ReferencedItem.Kind.CONTENT_ASSEMBLY
+        : ReferencedItem.Kind.CA_NODE;
+  }
+
+  /**
+   * A retrieved object. For containers, the children are either the target ID of a reference or,
+   * for a CANode, its own node.
+   */
+  private static class Node {
+    private final String id;
+    private volatile Object object;
+    private final List<Object> children = new ArrayList<Object>();
+
+    private Node(String id) {
+      this.id = id;
+    }
+  }
+
+  /**
+   * Record a container's children, then concurrently retrieve and expand the references this task
+   * is the first to encounter.
+   */
+  private class ExpandContainerTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ReferencedContentFetcher fetcher;
+
+    private final ConcurrentMap<String, Node> nodesById;
+
+    private final Node node;
+
+    private final AtomicBoolean cancelled;
+
+    private ExpandContainerTask(ReferencedContentFetcher fetcher,
+        ConcurrentMap<String, Node> nodesById, Node node, AtomicBoolean cancelled) {
+      this.fetcher = fetcher;
+      this.nodesById = nodesById;
+      this.node = node;
+      this.cancelled = cancelled;
+    }
+
+    @Override
+    protected void compute() {
+      if (cancelled.get()) {
+        return;
+      }
+      List<RecursiveAction> subtasks = new ArrayList<RecursiveAction>();
+      try {
+        if (node.object == null) {
+          node.object = fetcher.getContainer(node.id);
+        }
+        List<? extends ContentAssemblyItem> items =
+            ((ContentAssemblyNodeContainer) node.object).getChildrenObjects();
+        if (items != null) {
+          for (ContentAssemblyItem item : items) {
+            if (item instanceof ManagedObjectReference) {
+              final Node target = claim(((ManagedObjectReference) item).getTargetId());
+              if (target != null) {
+                subtasks.add(new RecursiveAction() {
+                  private static final long serialVersionUID = 1L;
+
+                  @Override
+                  protected void compute() {
+                    if (cancelled.get()) {
+                      return;
+                    }
+                    try {
+                      target.object = fetcher.getManagedObject(target.id);
+                    } catch (RSuiteException e) {
+                      throw new ReferencedContentTraversalException(e);
+                    }
+                  }
+                });
+              }
+            } else if (item instanceof ContentAssemblyReference) {
+              Node target = claim(((ContentAssemblyReference) item).getTargetId());
+              if (target != null) {
+                subtasks.add(new ExpandContainerTask(fetcher, nodesById, target, cancelled));
+              }
+            } else if (item instanceof ContentAssemblyNodeContainer) {
+              Node caNode = new Node(item.getId());
+              caNode.object = item;
+              node.children.add(caNode);
+              subtasks.add(new ExpandContainerTask(fetcher, nodesById, caNode, cancelled));
+            }
+          }
+        }
+      } catch (RSuiteException e) {
+        throw new ReferencedContentTraversalException(e);
+      }
+      invokeAll(subtasks);
+    }
+
+    /**
+     * Record a reference as the node's next child.
+     *
+     * @param targetId
+     * @return A new node for the target when this is the first reference to it, or null when
+     *         another reference already claimed it.
+     */
+    private Node claim(String targetId) {
+      node.children.add(targetId);
+      Node target = new Node(targetId);
+      return nodesById.putIfAbsent(targetId, target) == null ? target : null;
+    }
+  }
+
+  /**
+   * The walk's lists.
+   */
+  private static class WalkResult implements ReferencedContent {
+    private final ContentAssemblyNodeContainer startingContainer;
+    private final List<ContentAssembly> contentAssemblies = new ArrayList<ContentAssembly>();
+    private final List<ManagedObject> managedObjects = new ArrayList<ManagedObject>();
+    private int duplicateReferenceCount;
+
+    private WalkResult(ContentAssemblyNodeContainer startingContainer) {
+      this.startingContainer = startingContainer;
+    }
+
+    @Override
+    public ContentAssemblyNodeContainer getStartingContainer() {
+      return startingContainer;
+    }
+
+    @Override
+    public List<ContentAssembly> getReferencedContentAssemblies() {
+      return contentAssemblies;
+    }
+
+    @Override
+    public List<ManagedObject> getReferencedManagedObjects() {
+      return managedObjects;
+    }
+
+    @Override
+    public int getDuplicateReferenceCount() {
+      return duplicateReferenceCount;
+    }
+
+    @Override
+    public String toString() {
+      return new StringBuilder("ReferencedContent [CAs=").append(contentAssemblies.size())
+          .append(", MOs=").append(managedObjects.size()).append(", duplicate references=")
+          .append(duplicateReferenceCount).append("]").toString();
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+
+/**
+ * Retrieves the objects references target. Traversals retrieve everything through an instance of
+ * this interface, allowing the retrieval to be decorated.
+ */
+public interface ReferencedContentFetcher {
+
+  /**
+   * @param id ID of a CA or CANode, such as the target ID of a container reference.
+   * @return The container.
+   * @throws RSuiteException
+   */
+  ContentAssemblyNodeContainer getContainer(String id) throws RSuiteException;
+
+  /**
+   * @param id ID of an MO, such as the target ID of an MO reference.
+   * @return The MO.
+   * @throws RSuiteException
+   */
+  ManagedObject getManagedObject(String id) throws RSuiteException;
+
+}
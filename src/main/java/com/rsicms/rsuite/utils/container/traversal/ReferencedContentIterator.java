@@ -0,0 +1,321 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyItem;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ContentAssemblyReference;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.ManagedObjectReference;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.ContainerUtilsMessageProperties;
+import com.rsicms.rsuite.utils.container.ContainerUtilsSession;
+import com.rsicms.rsuite.utils.container.cache.ReverseReferenceIndex;
+import com.rsicms.rsuite.utils.container.metrics.ContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.InstrumentedReferencedContentFetcher;
+import com.rsicms.rsuite.utils.container.metrics.NoOpContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.visitor.ListReferencedContentContainerVisitor;
+
+/**
+ * Lazily traverses a container, yielding the starting container and then each CANode, CA and MO
+ * it directly or indirectly references, depth-first. Objects are only retrieved as the iteration
+ * reaches them; the CAs and MOs are yielded in the same order as
+ * {@link ListReferencedContentContainerVisitor} lists them.
+ * <p>
+ * Only the containers on the path to the current object are retained, making memory proportional
+ * to the tree's depth rather than its size. When de-duplicating, the IDs of the visited objects
+ * are also retained. Either way, reference cycles are not followed. {@link TraversalOptions} may
+ * limit the traversal's depth and prune subtrees before their children are retrieved.
+ * <p>
+ * As <code>Iterator</code> methods may not throw checked exceptions, an
+ * <code>RSuiteException</code> encountered while retrieving an object is thrown wrapped in a
+ * {@link ReferencedContentTraversalException}. Interrupting the iterating thread stops the
+ * traversal: the next advance fails, leaving the thread's interrupt status set. Instances are not
+ * safe for use by multiple threads.
+ */
+public class ReferencedContentIterator implements Iterator<ReferencedItem> {
+
+  private ReferencedContentFetcher fetcher;
+
+  private List<? extends ContentAssemblyNodeContainer> startingContainers;
+
+  private int nextStartingContainerIdx;
+
+  /**
+   * IDs of every object yielded, when de-duplicating; otherwise, IDs of the containers on the
+   * current path.
+   */
+  private Set<String> visitedIds;
+
+  private boolean deduplicate;
+
+  private Deque<Frame> path;
+
+  private ReferencedItem nextItem;
+
+  private boolean started;
+
+  private int duplicateReferenceCount;
+
+  private ContainerInstrumentation instrumentation = NoOpContainerInstrumentation.INSTANCE;
+
+  private TraversalOptions traversalOptions = new TraversalOptions();
+
+  private ReverseReferenceIndex reverseReferenceIndex;
+
+  /**
+   * Construct a de-duplicating iterator that retrieves objects from the RSuite services.
+   *
+   * @param context
+   * @param user
+   * @param startingContainer
+   */
+  public ReferencedContentIterator(ExecutionContext context, User user,
+      ContentAssemblyNodeContainer startingContainer) {
+    this(new ServiceReferencedContentFetcher(context, user), startingContainer, true);
+  }
+
+  /**
+   * Construct an iterator.
+   *
+   * @param fetcher Retrieves the referenced objects.
+   * @param startingContainer
+   * @param deduplicate Submit true to yield each object once, at its first reference, or false to
+   *        yield it at every reference.
+   */
+  public ReferencedContentIterator(ReferencedContentFetcher fetcher,
+      ContentAssemblyNodeContainer startingContainer, boolean deduplicate) {
+    this(fetcher,
+        startingContainer == null ? Collections.<ContentAssemblyNodeContainer>emptyList()
+            : Collections.singletonList(startingContainer),
+        deduplicate);
+  }
+
+  /**
+   * Construct an iterator over several starting containers. Each is yielded at depth zero and
+   * traversed in turn, unless already reached from an earlier one. When de-duplicating, each
+   * object is yielded once across all of them.
+   *
+   * @param fetcher Retrieves the referenced objects.
+   * @param startingContainers
+   * @param deduplicate Submit true to yield each object once, at its first reference, or false to
+   *        yield it at every reference.
+   */
+  public ReferencedContentIterator(ReferencedContentFetcher fetcher,
+      List<? extends ContentAssemblyNodeContainer> startingContainers, boolean deduplicate) {
+    this.fetcher = fetcher;
+    this.startingContainers = startingContainers;
+    this.deduplicate = deduplicate;
+    this.visitedIds = new HashSet<String>();
+    this.path = new ArrayDeque<Frame>();
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextItem == null) {
+      try {
+        nextItem = advance();
+      } catch (RSuiteException e) {
+        throw new ReferencedContentTraversalException(e);
+      }
+    }
+    return nextItem != null;
+  }
+
+  @Override
+  public ReferencedItem next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    ReferencedItem item = nextItem;
+    nextItem = null;
+    return item;
+  }
+
+  /**
+   * Not supported.
+   */
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @return The number of references not followed as their target was already visited or is an
+   *         ancestor.
+   */
+  public int getDuplicateReferenceCount() {
+    return duplicateReferenceCount;
+  }
+
+  /**
+   * Report each object yielded and the latency of each retrieval to the given instrumentation. Must
+   * be called before iterating.
+   *
+   * @param instrumentation
+   */
+  public void setInstrumentation(ContainerInstrumentation instrumentation) {
+    if (started) {
+      throw new IllegalStateException();
+    }
+    this.instrumentation =
+        instrumentation == null ? NoOpContainerInstrumentation.INSTANCE : instrumentation;
+  }
+
+  /**
+   * Limit the traversal. Must be called before iterating.
+   *
+   * @param traversalOptions When null, the entire tree is traversed.
+   */
+  public void setTraversalOptions(TraversalOptions traversalOptions) {
+    if (started) {
+      throw new IllegalStateException();
+    }
+    this.traversalOptions = traversalOptions == null ? new TraversalOptions() : traversalOptions;
+  }
+
+  /**
+   * Index the references of each container whose children are iterated. Must be called before
+   * iterating.
+   *
+   * @param reverseReferenceIndex Optional.
+   */
+  public void setReverseReferenceIndex(ReverseReferenceIndex reverseReferenceIndex) {
+    if (started) {
+      throw new IllegalStateException();
+    }
+    this.reverseReferenceIndex = reverseReferenceIndex;
+  }
+
+  /**
+   * Find, retrieve and return the next object.
+   *
+   * @return The next object, or null when there are no more.
+   * @throws RSuiteException Thrown if an object could not be retrieved, or if the current thread
+   *         was interrupted.
+   */
+  protected ReferencedItem advance() throws RSuiteException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("error.interrupted.while.traversing"));
+    }
+    if (!started) {
+      started = true;
+      // A session reports its own retrievals, and not those it saves.
+      if (instrumentation != NoOpContainerInstrumentation.INSTANCE
+          && !(fetcher instanceof ContainerUtilsSession)) {
+        fetcher = new InstrumentedReferencedContentFetcher(fetcher, instrumentation);
+      }
+    }
+
+    while (!path.isEmpty()) {
+      Frame frame = path.peek();
+      if (frame.nextIdx >= frame.children.size()) {
+        path.pop();
+        if (!deduplicate) {
+          visitedIds.remove(frame.id);
+        }
+        continue;
+      }
+
+      int ordinal = frame.nextIdx++;
+      ContentAssemblyItem child = frame.children.get(ordinal);
+      ReferencedItem item = null;
+      if (child instanceof ManagedObjectReference) {
+        String id = ((ManagedObjectReference) child).getTargetId();
+        if (deduplicate && !visitedIds.add(id)) {
+          duplicateReferenceCount++;
+          continue;
+        }
+        ManagedObject mo = fetcher.getManagedObject(id);
+        instrumentation.nodeVisited(ReferencedItem.Kind.MANAGED_OBJECT);
+        if (traversalOptions.acceptManagedObject(mo)) {
+          item = new ReferencedItem(ReferencedItem.Kind.MANAGED_OBJECT, id, frame.id, ordinal,
+              frame.depth + 1, mo);
+        }
+      } else if (child instanceof ContentAssemblyReference) {
+        String id = ((ContentAssemblyReference) child).getTargetId();
+        if (visitedIds.contains(id)) {
+          duplicateReferenceCount++;
+          continue;
+        }
+        if (traversalOptions.isContainerToBeRetrieved(id, frame.depth + 1)) {
+          item = enter(fetcher.getContainer(id), id, frame, ordinal);
+        }
+      } else if (child instanceof ContentAssemblyNodeContainer) {
+        if (traversalOptions.isContainerToBeRetrieved(child.getId(), frame.depth + 1)) {
+          item = enter((ContentAssemblyNodeContainer) child, child.getId(), frame, ordinal);
+        }
+      }
+      if (item != null) {
+        return item;
+      }
+    }
+
+    while (nextStartingContainerIdx < startingContainers.size()) {
+      ContentAssemblyNodeContainer start = startingContainers.get(nextStartingContainerIdx++);
+      if (deduplicate && visitedIds.contains(start.getId())) {
+        duplicateReferenceCount++;
+        continue;
+      }
+      return enter(start, start.getId(), null, -1);
+    }
+    return null;
+  }
+
+  /**
+   * Make the given container the current one, so that its children are next.
+   *
+   * @return The container's item, or null when the container is pruned.
+   */
+  private ReferencedItem enter(ContentAssemblyNodeContainer container, String id, Frame parent,
+      int ordinal) throws RSuiteException {
+    ReferencedItem.Kind kind = container instanceof ContentAssembly
+        ? ReferencedItem.Kind.CONTENT_ASSEMBLY : ReferencedItem.Kind.CA_NODE;
+    instrumentation.nodeVisited(kind);
+    if (parent != null && !traversalOptions.acceptContainer(container)) {
+      if (deduplicate) {
+        visitedIds.add(id);
+      }
+      return null;
+    }
+    visitedIds.add(id);
+    int depth = parent == null ? 0 : parent.depth + 1;
+    List<? extends ContentAssemblyItem> children = container.getChildrenObjects();
+    boolean withinMaxDepth = traversalOptions.isWithinMaxDepth(depth + 1);
+    if (reverseReferenceIndex != null && withinMaxDepth) {
+      reverseReferenceIndex.index(container);
+    }
+    path.push(new Frame(id, depth, children == null || !withinMaxDepth
+        ? Collections.<ContentAssemblyItem>emptyList() : children));
+    return new ReferencedItem(kind, id, parent == null ? null : parent.id, ordinal, depth,
+        container);
+  }
+
+  /**
+   * A container on the current path, and how far through its children the traversal is.
+   */
+  private static class Frame {
+    private final String id;
+    private final int depth;
+    private final List<? extends ContentAssemblyItem> children;
+    private int nextIdx;
+
+    private Frame(String id, int depth, List<? extends ContentAssemblyItem> children) {
+      this.id = id;
+      this.depth = depth;
+      this.children = children;
+    }
+  }
+
+}
@@ -0,0 +1,24 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import com.reallysi.rsuite.api.RSuiteException;
+
+/**
+ * Unchecked wrapper for an <code>RSuiteException</code> encountered where checked exceptions may
+ * not be thrown, such as within a fork-join task or an <code>Iterator</code>.
+ */
+public class ReferencedContentTraversalException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ReferencedContentTraversalException(RSuiteException cause) {
+    super(cause.getMessage(), cause);
+  }
+
+  /**
+   * @return The wrapped exception.
+   */
+  public RSuiteException getRSuiteException() {
+    return (RSuiteException) getCause();
+  }
+
+}
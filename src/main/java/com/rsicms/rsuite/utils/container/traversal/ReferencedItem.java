@@ -0,0 +1,108 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+
+/**
+ * An object encountered while traversing a container, along with where it was encountered.
+ */
+public class ReferencedItem {
+
+  /**
+   * The kinds of objects a traversal encounters.
+   */
+  public enum Kind {
+    CONTENT_ASSEMBLY, CA_NODE, MANAGED_OBJECT
+  }
+
+  private Kind kind;
+
+  private String id;
+
+  private String parentId;
+
+  private int ordinal;
+
+  private int depth;
+
+  private Object object;
+
+  /**
+   * Construct an item.
+   *
+   * @param kind
+   * @param id ID of the object. For referenced objects, the target ID.
+   * @param parentId ID of the container the object was encountered in, or null for the starting
+   *        container.
+   * @param ordinal Zero-based position among the parent container's children, or -1 for the
+   *        starting container.
+   * @param depth Zero for the starting container, one for its children, and so on.
+   * @param object The container or MO.
+   */
+  public ReferencedItem(Kind kind, String id, String parentId, int ordinal, int depth,
+      Object object) {
+    this.kind = kind;
+    this.id = id;
+    this.parentId = parentId;
+    this.ordinal = ordinal;
+    this.depth = depth;
+    this.object = object;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getParentId() {
+    return parentId;
+  }
+
+  public int getOrdinal() {
+    return ordinal;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return True for CAs and CANodes.
+   */
+  public boolean isContainer() {
+    return kind != Kind.MANAGED_OBJECT;
+  }
+
+  /**
+   * @return The container, or null when this item is an MO.
+   */
+  public ContentAssemblyNodeContainer getContainer() {
+    return isContainer() ? (ContentAssemblyNodeContainer) object : null;
+  }
+
+  /**
+   * @return The CA, or null when this item is not a CA.
+   */
+  public ContentAssembly getContentAssembly() {
+    return kind == Kind.CONTENT_ASSEMBLY ? (ContentAssembly) object : null;
+  }
+
+  /**
+   * @return The MO, or null when this item is a container.
+   */
+  public ManagedObject getManagedObject() {
+    return kind == Kind.MANAGED_OBJECT ? (ManagedObject) object : null;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder(kind.name()).append(" ").append(id).append(" [parent=")
+        .append(parentId).append(", ordinal=").append(ordinal).append(", depth=").append(depth)
+        .append("]").toString();
+  }
+
+}
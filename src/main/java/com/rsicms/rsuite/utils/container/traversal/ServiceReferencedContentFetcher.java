@@ -0,0 +1,33 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+
+/**
+ * Retrieves objects from the RSuite services, as the given user.
+ */
+public class ServiceReferencedContentFetcher implements ReferencedContentFetcher {
+
+  private ExecutionContext context;
+
+  private User user;
+
+  public ServiceReferencedContentFetcher(ExecutionContext context, User user) {
+    this.context = context;
+    this.user = user;
+  }
+
+  @Override
+  public ContentAssemblyNodeContainer getContainer(String id) throws RSuiteException {
+    return context.getContentAssemblyService().getContentAssemblyNodeContainer(user, id);
+  }
+
+  @Override
+  public ManagedObject getManagedObject(String id) throws RSuiteException {
+    return context.getManagedObjectService().getManagedObject(user, id);
+  }
+
+}
@@ -0,0 +1,136 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.visitor.ListReferencedContentContainerVisitor;
+import com.rsicms.rsuite.utils.mo.qualifiers.ManagedObjectQualifier;
+
+/**
+ * Options limiting which parts of a container's tree {@link ReferencedContentIterator} and
+ * {@link ListReferencedContentContainerVisitor} traverse. The defaults traverse the entire tree.
+ * <p>
+ * The starting container is at depth zero, and is always included. A container beyond the maximum
+ * depth, with an excluded ID, or that the container qualifier rejects is pruned: it is not
+ * included, and its children are not visited. References to objects beyond the maximum depth or
+ * with an excluded ID are not followed, so those objects are never retrieved. Qualifiers are
+ * applied to objects once retrieved; an MO the MO qualifier rejects is not included.
+ * <p>
+ * An object pruned at one reference is still visited at a later reference that qualifies, such as
+ * a shallower one.
+ */
+public class TraversalOptions {
+
+  /**
+   * Depth of the deepest objects to include.
+   */
+  private int maxDepth = Integer.MAX_VALUE;
+
+  /**
+   * IDs of containers to prune without retrieving them.
+   */
+  private Set<String> excludedContainerIds = Collections.emptySet();
+
+  /**
+   * Optional qualifier of the containers to include.
+   */
+  private ContainerQualifier containerQualifier;
+
+  /**
+   * Optional qualifier of the MOs to include.
+   */
+  private ManagedObjectQualifier managedObjectQualifier;
+
+  /**
+   * @return The depth of the deepest objects to include.
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * @param maxDepth The depth of the deepest objects to include. One includes the starting
+   *        container's children only. Values less than zero are treated as zero. The default is
+   *        unlimited.
+   */
+  public void setMaxDepth(int maxDepth) {
+    this.maxDepth = maxDepth < 0 ? 0 : maxDepth;
+  }
+
+  public Set<String> getExcludedContainerIds() {
+    return excludedContainerIds;
+  }
+
+  /**
+   * @param excludedContainerIds IDs of CAs and CANodes to prune without retrieving them. May be
+   *        null.
+   */
+  public void setExcludedContainerIds(Collection<String> excludedContainerIds) {
+    this.excludedContainerIds = excludedContainerIds == null ? Collections.<String>emptySet()
+        : Collections.unmodifiableSet(new HashSet<String>(excludedContainerIds));
+  }
+
+  public ContainerQualifier getContainerQualifier() {
+    return containerQualifier;
+  }
+
+  /**
+   * @param containerQualifier Optional qualifier of the CAs and CANodes to include. See
+   *        {@link ContainerQualifiers}.
+   */
+  public void setContainerQualifier(ContainerQualifier containerQualifier) {
+    this.containerQualifier = containerQualifier;
+  }
+
+  public ManagedObjectQualifier getManagedObjectQualifier() {
+    return managedObjectQualifier;
+  }
+
+  /**
+   * @param managedObjectQualifier Optional qualifier of the MOs to include.
+   */
+  public void setManagedObjectQualifier(ManagedObjectQualifier managedObjectQualifier) {
+    this.managedObjectQualifier = managedObjectQualifier;
+  }
+
+  /**
+   * @param depth
+   * @return True if objects at the given depth are to be retrieved.
+   */
+  public boolean isWithinMaxDepth(int depth) {
+    return depth <= maxDepth;
+  }
+
+  /**
+   * @param id
+   * @param depth
+   * @return True if the identified container, at the given depth, is to be retrieved.
+   */
+  public boolean isContainerToBeRetrieved(String id, int depth) {
+    return depth <= maxDepth && !excludedContainerIds.contains(id);
+  }
+
+  /**
+   * @param container A retrieved container other than the starting container.
+   * @return True if the container is to be included.
+   * @throws RSuiteException
+   */
+  public boolean acceptContainer(ContentAssemblyNodeContainer container) throws RSuiteException {
+    return containerQualifier == null || containerQualifier.accept(container);
+  }
+
+  /**
+   * @param mo A retrieved MO.
+   * @return True if the MO is to be included.
+   * @throws RSuiteException
+   */
+  public boolean acceptManagedObject(ManagedObject mo) throws RSuiteException {
+    return managedObjectQualifier == null || managedObjectQualifier.accept(mo);
+  }
+
+}
@@ -1,7 +1,10 @@
 package com.rsicms.rsuite.utils.container.visitor;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -15,10 +18,18 @@ import com.reallysi.rsuite.api.RSuiteException;
 import com.reallysi.rsuite.api.User;
 import com.reallysi.rsuite.api.extensions.ExecutionContext;
 import com.rsicms.rsuite.helpers.tree.impl.TreeDescendingContentAssemblyVisitorBase;
+import com.rsicms.rsuite.utils.container.cache.ReverseReferenceIndex;
 
 /**
  * Collects info on the container children (excludes descendants) and provides some
  * "sibling navigation" convenience methods/logic for the visited container's children.
+ * <p>
+ * Children are indexed by reference and target ID as they are visited, and each child knows the
+ * position of the nearest MO reference on either side of it, making the sibling and MO reference
+ * lookups constant-time.
+ * <p>
+ * When the container references the same object more than once, the "before" lookups are relative
+ * to the first reference to it, and the "after" lookups to the last.
  */
 public class ChildrenInfoContainerVisitor extends TreeDescendingContentAssemblyVisitorBase {
 
@@ -32,9 +43,46 @@ public class ChildrenInfoContainerVisitor extends TreeDescendingContentAssemblyV
 
   private List<ChildObject> children;
 
+  /**
+   * Position of the first child with a given reference ID.
+   */
+  private Map<String, Integer> positionsByRefId;
+
+  /**
+   * Position of the first child with a given target ID.
+   */
+  private Map<String, Integer> positionsByTargetId;
+
+  /**
+   * Position of the last child with a given reference ID.
+   */
+  private Map<String, Integer> lastPositionsByRefId;
+
+  /**
+   * Position of the last child with a given target ID.
+   */
+  private Map<String, Integer> lastPositionsByTargetId;
+
+  /**
+   * Position of the last MO reference added, or -1.
+   */
+  private int lastMoRefPosition = -1;
+
+  /**
+   * The child MO references, in order.
+   */
+  private List<ManagedObjectReference> moRefs;
+
+  private ReverseReferenceIndex reverseReferenceIndex;
+
   public ChildrenInfoContainerVisitor(ExecutionContext context, User user) {
     super(context, user);
     children = new ArrayList<ChildObject>();
+    positionsByRefId = new HashMap<String, Integer>();
+    positionsByTargetId = new HashMap<String, Integer>();
+    lastPositionsByRefId = new HashMap<String, Integer>();
+    lastPositionsByTargetId = new HashMap<String, Integer>();
+    moRefs = new ArrayList<ManagedObjectReference>();
   }
 
   /*
@@ -49,6 +97,9 @@ public class ChildrenInfoContainerVisitor extends TreeDescendingContentAssemblyV
 
     if (startingContainer == null) {
       startingContainer = container;
+      if (reverseReferenceIndex != null) {
+        reverseReferenceIndex.index(container);
+      }
       super.visitContentAssemblyNodeContainer(container);
     }
 
@@ -56,23 +107,66 @@ public class ChildrenInfoContainerVisitor extends TreeDescendingContentAssemblyV
 
   @Override
   public void visitContentAssemblyNode(ContentAssemblyNode caNode) throws RSuiteException {
-    children.add(new ChildObject(caNode));
+    addChild(new ChildObject(caNode));
   }
 
   @Override
   public void visitDynamicContentAssembly(ContentAssemblyNode caNode) throws RSuiteException {
-    children.add(new ChildObject(caNode));
+    addChild(new ChildObject(caNode));
   }
 
   @Override
   public void visitContentAssemblyReference(ContentAssemblyReference containerRef)
       throws RSuiteException {
-    children.add(new ChildObject(containerRef));
+    addChild(new ChildObject(containerRef));
   }
 
   @Override
   public void visitManagedObjectReference(ManagedObjectReference moRef) throws RSuiteException {
-    children.add(new ChildObject(moRef));
+    addChild(new ChildObject(moRef));
+  }
+
+  /**
+   * Also index the visited container's references in the given index.
+   * 
+   * @param reverseReferenceIndex Optional.
+   */
+  public void setReverseReferenceIndex(ReverseReferenceIndex reverseReferenceIndex) {
+    this.reverseReferenceIndex = reverseReferenceIndex;
+  }
+
+  /**
+   * Append a child, index its IDs, and link it to the nearest MO references.
+   * 
+   * @param child
+   */
+  protected void addChild(ChildObject child) {
+    child.position = children.size();
+    children.add(child);
+
+    if (child.refId != null) {
+      if (!positionsByRefId.containsKey(child.refId)) {
+        positionsByRefId.put(child.refId, child.position);
+      }
+      lastPositionsByRefId.put(child.refId, child.position);
+    }
+    if (child.targetId != null) {
+      if (!positionsByTargetId.containsKey(child.targetId)) {
+        positionsByTargetId.put(child.targetId, child.position);
+      }
+      lastPositionsByTargetId.put(child.targetId, child.position);
+    }
+
+    child.previousMoRefPosition = lastMoRefPosition;
+    if (child.caItem instanceof ManagedObjectReference) {
+      // Every child since the last MO reference, and that MO reference, now has a following one.
+      for (int i = Math.max(lastMoRefPosition, 0); i < child.position; i++) {
+        children.get(i).nextMoRefPosition = child.position;
+      }
+      lastMoRefPosition = child.position;
+      child.moRefOrdinal = moRefs.size();
+      moRefs.add((ManagedObjectReference) child.caItem);
+    }
   }
 
   /**
@@ -132,40 +226,82 @@ public class ChildrenInfoContainerVisitor extends TreeDescendingContentAssemblyV
   /**
    * Underlying logic to find the preceding or following sibling of a specified class.
    * 
-   * @param qualifyingClass The class the sibling must have to qualify.
+   * @param qualifyingClass The class the sibling must have to qualify. The identified object must
+   *        also have this class.
    * @param before Submit true for the previous sibling or false for the following.
-   * @param id ID of object to return the sibling of.
-   * @return Qualifying sibling, or null when there isn't one.
-   * @throws RSuiteException
+   * @param id ID of object to return the sibling of. When the container has more than one child
+   *        with this ID, the first is used for the previous sibling, and the last for the
+   *        following.
+   * @return Nearest qualifying sibling, or null when there isn't one.
+   * @throws RSuiteException Thrown if the provided ID does not identify a child of the qualifying
+   *         class.
    */
   protected ContentAssemblyItem getSibling(Class<? extends ContentAssemblyItem> qualifyingClass,
       boolean before, String id) throws RSuiteException {
-    ContentAssemblyItem candidateItem = null;
-    ChildObject child;
-
-    int loopCnt = 0;
-    int stopAt = before ? children.size() : -1;
-    int loopIncrement = before ? 1 : -1;
-
-    for (int i = before ? 0 : children.size() - 1; i != stopAt; i = i + loopIncrement) {
-      // protect from infinite loop
-      if (++loopCnt > children.size()) {
-        throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
-            "Avoiding infinite loop; invalid loop logic.");
-      }
+    ChildObject child = before ? getChild(id) : getLastChild(id);
+    // had trouble getting instanceof working.
+    if (child == null || !qualifyingClass.isAssignableFrom(child.caItem.getClass())) {
+      throw new RSuiteException(RSuiteException.ERROR_PARAM_INVALID,
+          new StringBuilder(id).append(" does not identify a child in the '")
+              .append(startingContainer.getDisplayName()).append("' (ID: ")
+              .append(startingContainer.getId())
+              .append(") container; unable to retrieve a sibling thereof.").toString());
+    }
 
-      child = children.get(i);
-      // had trouble getting instanceof working.
-      if (child.hasId(id) && qualifyingClass.isAssignableFrom(child.caItem.getClass())) {
-        return candidateItem;
+    int siblingPosition;
+    if (ContentAssemblyItem.class.equals(qualifyingClass)) {
+      siblingPosition = before ? child.position - 1 : child.position + 1;
+    } else if (ManagedObjectReference.class.equals(qualifyingClass)) {
+      siblingPosition = before ? child.previousMoRefPosition : child.nextMoRefPosition;
+    } else {
+      siblingPosition = -1;
+      int increment = before ? -1 : 1;
+      for (int i = child.position + increment; i >= 0 && i < children.size(); i += increment) {
+        if (qualifyingClass.isAssignableFrom(children.get(i).caItem.getClass())) {
+          siblingPosition = i;
+          break;
+        }
       }
-      candidateItem = child.caItem;
     }
-    throw new RSuiteException(RSuiteException.ERROR_PARAM_INVALID,
-        new StringBuilder(id).append(" does not identify a child in the '")
-            .append(startingContainer.getDisplayName()).append("' (ID: ")
-            .append(startingContainer.getId())
-            .append(") container; unable to retrieve a sibling thereof.").toString());
+
+    return siblingPosition >= 0 && siblingPosition < children.size()
+        ? children.get(siblingPosition).caItem : null;
+  }
+
+  /**
+   * Get one of the visited container's children by either of its IDs.
+   * 
+   * @param id ID to match on.
+   * @return The first child with a matching reference or target ID, or null when there isn't one.
+   */
+  protected ChildObject getChild(String id) {
+    Integer refPosition = positionsByRefId.get(id);
+    Integer targetPosition = positionsByTargetId.get(id);
+    if (refPosition == null) {
+      return targetPosition == null ? null : children.get(targetPosition);
+    }
+    if (targetPosition == null || refPosition < targetPosition) {
+      return children.get(refPosition);
+    }
+    return children.get(targetPosition);
+  }
+
+  /**
+   * Get the last of the visited container's children with either of its IDs.
+   * 
+   * @param id ID to match on.
+   * @return The last child with a matching reference or target ID, or null when there isn't one.
+   */
+  protected ChildObject getLastChild(String id) {
+    Integer refPosition = lastPositionsByRefId.get(id);
+    Integer targetPosition = lastPositionsByTargetId.get(id);
+    if (refPosition == null) {
+      return targetPosition == null ? null : children.get(targetPosition);
+    }
+    if (targetPosition == null || refPosition > targetPosition) {
+      return children.get(refPosition);
+    }
+    return children.get(targetPosition);
   }
 
   /**
@@ -176,10 +312,9 @@ public class ChildrenInfoContainerVisitor extends TreeDescendingContentAssemblyV
    * @throws RSuiteException Thrown if the container doesn't have such an MO ref.
    */
   public ManagedObjectReference getMoRef(String id) throws RSuiteException {
-    for (ChildObject child : children) {
-      if (child.hasId(id) && child.caItem instanceof ManagedObjectReference) {
-        return (ManagedObjectReference) child.caItem;
-      }
+    ChildObject child = getChild(id);
+    if (child != null && child.caItem instanceof ManagedObjectReference) {
+      return (ManagedObjectReference) child.caItem;
     }
     throw new RSuiteException(RSuiteException.ERROR_PARAM_INVALID,
         new StringBuilder(id).append(" does not identify an MO reference in the '")
@@ -187,6 +322,25 @@ public class ChildrenInfoContainerVisitor extends TreeDescendingContentAssemblyV
             .append(startingContainer.getId()).append(") container.").toString());
   }
 
+  /**
+   * @return The visited container's child MO references, in order.
+   */
+  public List<ManagedObjectReference> getMoRefs() {
+    return Collections.unmodifiableList(moRefs);
+  }
+
+  /**
+   * Get the position of a child MO reference among the visited container's child MO references.
+   * 
+   * @param id Reference or target ID of the child MO reference.
+   * @return Zero-based position within {@link #getMoRefs()}, or -1 when the ID does not identify a
+   *         child MO reference.
+   */
+  public int getMoRefOrdinal(String id) {
+    ChildObject child = getChild(id);
+    return child == null ? -1 : child.moRefOrdinal;
+  }
+
   /**
    * A child of the visited container. Supports an ID comparison that will match on the object's ID
    * as well as that of the object it references (when a reference).
@@ -196,6 +350,10 @@ public class ChildrenInfoContainerVisitor extends TreeDescendingContentAssemblyV
     private ContentAssemblyItem caItem;
     private String refId;
     private String targetId;
+    private int position;
+    private int previousMoRefPosition = -1;
+    private int nextMoRefPosition = -1;
+    private int moRefOrdinal = -1;
 
     protected ChildObject(ContentAssemblyNode caNode) {
       this.caItem = caNode;
@@ -0,0 +1,106 @@
+package com.rsicms.rsuite.utils.container.visitor;
+
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ContentAssemblyReference;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.ManagedObjectReference;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.mo.qualifiers.ManagedObjectQualifier;
+
+/**
+ * Find the first <code>ManagedObject</code> directly or indirectly referenced by the starting
+ * <code>ContentAssemblyNodeContainer</code> that the given qualifier accepts. MOs are visited in
+ * the same order as {@link ListReferencedContentContainerVisitor} lists them, as this visitor
+ * traverses as that one does.
+ * <p>
+ * The qualifier is applied as each MO is visited. Once an MO qualifies, no further containers or
+ * MOs are retrieved.
+ */
+public class FirstQualifyingManagedObjectContainerVisitor
+    extends ListReferencedContentContainerVisitor {
+
+  /**
+   * Decides which MO qualifies.
+   */
+  private ManagedObjectQualifier moQualifier;
+
+  /**
+   * The first qualifying MO, once found.
+   */
+  private ManagedObject qualifyingManagedObject;
+
+  /**
+   * Construct an instance of this visitor.
+   *
+   * @param context
+   * @param user
+   * @param moQualifier The qualifier MOs are to satisfy.
+   */
+  public FirstQualifyingManagedObjectContainerVisitor(ExecutionContext context, User user,
+      ManagedObjectQualifier moQualifier) {
+    super(context, user, false);
+    this.moQualifier = moQualifier;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.rsicms.rsuite.utils.container.visitor.ListReferencedContentContainerVisitor#
+   * visitContentAssemblyNodeContainer(com.reallysi.rsuite.api. ContentAssemblyNodeContainer)
+   */
+  @Override
+  public void visitContentAssemblyNodeContainer(ContentAssemblyNodeContainer container)
+      throws RSuiteException {
+    if (!isFound()) {
+      super.visitContentAssemblyNodeContainer(container);
+    }
+  }
+
+  @Override
+  public void visitContentAssemblyReference(ContentAssemblyReference containerRef)
+      throws RSuiteException {
+    // Skipping the super call avoids retrieving the referenced container.
+    if (!isFound()) {
+      super.visitContentAssemblyReference(containerRef);
+    }
+  }
+
+  @Override
+  public void visitManagedObjectReference(ManagedObjectReference moRef) throws RSuiteException {
+    // Skipping the super call avoids retrieving the referenced MO.
+    if (!isFound()) {
+      super.visitManagedObjectReference(moRef);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.rsicms.rsuite.utils.container.visitor.ListReferencedContentContainerVisitor#
+   * visitManagedObject(com.reallysi .rsuite.api.ManagedObject)
+   */
+  @Override
+  public void visitManagedObject(ManagedObject mo) throws RSuiteException {
+    super.visitManagedObject(mo);
+    if (!isFound() && moQualifier != null && moQualifier.accept(mo)) {
+      qualifyingManagedObject = mo;
+    }
+  }
+
+  /**
+   * @return True once a qualifying MO has been found.
+   */
+  public boolean isFound() {
+    return qualifyingManagedObject != null;
+  }
+
+  /**
+   * @return The first qualifying MO, or null when none of the visited MOs qualified.
+   */
+  public ManagedObject getQualifyingManagedObject() {
+    return qualifyingManagedObject;
+  }
+
+}
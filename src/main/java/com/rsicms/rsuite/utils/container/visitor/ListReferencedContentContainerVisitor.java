@@ -1,25 +1,46 @@
 package com.rsicms.rsuite.utils.container.visitor;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.reallysi.rsuite.api.ContentAssembly;
 import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ContentAssemblyReference;
 import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.ManagedObjectReference;
 import com.reallysi.rsuite.api.RSuiteException;
 import com.reallysi.rsuite.api.User;
 import com.reallysi.rsuite.api.extensions.ExecutionContext;
 import com.rsicms.rsuite.helpers.tree.impl.TreeDescendingContentAssemblyVisitorBase;
+import com.rsicms.rsuite.utils.container.ContainerUtilsMessageProperties;
+import com.rsicms.rsuite.utils.container.cache.ReverseReferenceIndex;
+import com.rsicms.rsuite.utils.container.metrics.ContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.NoOpContainerInstrumentation;
+import com.rsicms.rsuite.utils.container.metrics.RepositoryCall;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedContentFetcher;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+import com.rsicms.rsuite.utils.container.traversal.TraversalOptions;
 
 /**
  * Populate lists of all <code>ContentAssembly</code> and <code>ManagedObject</code> instances
  * directly or indirectly referenced by the starting <code>ContentAssemblyNodeContainer</code>.
+ * <p>
+ * Each object is listed once, at the position of its first reference. Subsequent references to an
+ * object already visited are counted but not followed, which also protects against reference
+ * cycles.
+ * <p>
+ * Interrupting the visiting thread stops the traversal before the next reference is followed.
+ * <p>
+ * {@link TraversalOptions} may limit the traversal's depth and prune subtrees before their
+ * children are retrieved.
  */
 public class ListReferencedContentContainerVisitor
-    extends TreeDescendingContentAssemblyVisitorBase {
+    extends TreeDescendingContentAssemblyVisitorBase implements ReferencedContent {
 
   /**
    * Class log
@@ -49,6 +70,36 @@ public class ListReferencedContentContainerVisitor
    */
   private List<ManagedObject> referencedManagedObjectList;
 
+  /**
+   * IDs of the starting container and every object a followed reference targeted.
+   */
+  private Set<String> visitedIds;
+
+  /**
+   * The number of references not followed as their target was already visited.
+   */
+  private int duplicateReferenceCount;
+
+  private ContainerInstrumentation instrumentation = NoOpContainerInstrumentation.INSTANCE;
+
+  private TraversalOptions traversalOptions = new TraversalOptions();
+
+  private ReverseReferenceIndex reverseReferenceIndex;
+
+  private ReferencedContentFetcher fetcher;
+
+  /**
+   * Depth of the container whose children are being visited, the starting container being at
+   * zero.
+   */
+  private int depth = -1;
+
+  /**
+   * When the superclass is retrieving a reference's target, when it started doing so; otherwise,
+   * zero. The retrieval ends when the superclass visits the target.
+   */
+  private long retrievalStartNanos;
+
   /**
    * Construct an instance of this visitor.
    * 
@@ -63,6 +114,7 @@ public class ListReferencedContentContainerVisitor
     this.visitChildrenOnly = visitChildrenOnly;
     this.referencedContentAssemblyList = new ArrayList<ContentAssembly>();
     this.referencedManagedObjectList = new ArrayList<ManagedObject>();
+    this.visitedIds = new HashSet<String>();
   }
 
   /*
@@ -75,18 +127,101 @@ public class ListReferencedContentContainerVisitor
   public void visitContentAssemblyNodeContainer(ContentAssemblyNodeContainer container)
       throws RSuiteException {
 
+    endRetrieval(RepositoryCall.GET_CONTAINER);
+    int containerDepth = depth + 1;
+    if (startingContainer != null && !(container instanceof ContentAssembly)
+        && !traversalOptions.isContainerToBeRetrieved(container.getId(), containerDepth)) {
+      // A pruned CANode; unlike CAs, they arrive without a reference to check first.
+      return;
+    }
+    instrumentation.nodeVisited(container instanceof ContentAssembly
+        ? ReferencedItem.Kind.CONTENT_ASSEMBLY : ReferencedItem.Kind.CA_NODE);
+
     boolean justSetStartingContainer = false;
     if (startingContainer == null) {
       startingContainer = container;
+      visitedIds.add(container.getId());
       justSetStartingContainer = true;
+    } else if (!traversalOptions.acceptContainer(container)) {
+      return;
     } else if (container instanceof ContentAssembly) {
       referencedContentAssemblyList.add((ContentAssembly) container);
     }
 
     // Conditionally process the container's contents
-    if (justSetStartingContainer || !visitChildrenOnly) {
-      super.visitContentAssemblyNodeContainer(container);
+    if ((justSetStartingContainer || !visitChildrenOnly)
+        && traversalOptions.isWithinMaxDepth(containerDepth + 1)) {
+      if (reverseReferenceIndex != null) {
+        reverseReferenceIndex.index(container);
+      }
+      depth = containerDepth;
+      try {
+        super.visitContentAssemblyNodeContainer(container);
+      } finally {
+        depth = containerDepth - 1;
+      }
+    }
+  }
+
+  @Override
+  public void visitContentAssemblyReference(ContentAssemblyReference containerRef)
+      throws RSuiteException {
+    checkInterrupted();
+    if (!traversalOptions.isContainerToBeRetrieved(containerRef.getTargetId(), depth + 1)) {
+      return;
+    }
+    // Skipping the super call avoids retrieving the referenced container again.
+    if (isFirstVisit(containerRef.getTargetId())) {
+      if (fetcher != null) {
+        visitContentAssemblyNodeContainer(fetcher.getContainer(containerRef.getTargetId()));
+      } else {
+        startRetrieval();
+        super.visitContentAssemblyReference(containerRef);
+      }
+    }
+  }
+
+  @Override
+  public void visitManagedObjectReference(ManagedObjectReference moRef) throws RSuiteException {
+    checkInterrupted();
+    if (!traversalOptions.isWithinMaxDepth(depth + 1)) {
+      return;
+    }
+    // Skipping the super call avoids retrieving the referenced MO again.
+    if (isFirstVisit(moRef.getTargetId())) {
+      if (fetcher != null) {
+        visitManagedObject(fetcher.getManagedObject(moRef.getTargetId()));
+      } else {
+        startRetrieval();
+        super.visitManagedObjectReference(moRef);
+      }
+    }
+  }
+
+  /**
+   * Stop the traversal when the visiting thread was interrupted, leaving its interrupt status set.
+   * 
+   * @throws RSuiteException Thrown if the current thread was interrupted.
+   */
+  protected void checkInterrupted() throws RSuiteException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new RSuiteException(RSuiteException.ERROR_INTERNAL_ERROR,
+          ContainerUtilsMessageProperties.get("error.interrupted.while.traversing"));
+    }
+  }
+
+  /**
+   * Record a visit to the identified object.
+   * 
+   * @param id
+   * @return True if the object had not already been visited.
+   */
+  protected boolean isFirstVisit(String id) {
+    if (visitedIds.add(id)) {
+      return true;
     }
+    duplicateReferenceCount++;
+    return false;
   }
 
   /*
@@ -97,12 +232,69 @@ public class ListReferencedContentContainerVisitor
    */
   @Override
   public void visitManagedObject(ManagedObject mo) throws RSuiteException {
-    referencedManagedObjectList.add(mo);
+    endRetrieval(RepositoryCall.GET_MANAGED_OBJECT);
+    instrumentation.nodeVisited(ReferencedItem.Kind.MANAGED_OBJECT);
+    if (traversalOptions.acceptManagedObject(mo)) {
+      referencedManagedObjectList.add(mo);
+    }
+  }
+
+  /**
+   * Report each object visited and the latency of each retrieval to the given instrumentation.
+   * 
+   * @param instrumentation
+   */
+  public void setInstrumentation(ContainerInstrumentation instrumentation) {
+    this.instrumentation =
+        instrumentation == null ? NoOpContainerInstrumentation.INSTANCE : instrumentation;
+  }
+
+  /**
+   * Limit the traversal. Must be called before visiting.
+   * 
+   * @param traversalOptions When null, the entire tree is traversed.
+   */
+  public void setTraversalOptions(TraversalOptions traversalOptions) {
+    this.traversalOptions = traversalOptions == null ? new TraversalOptions() : traversalOptions;
+  }
+
+  /**
+   * Index the references of each container whose children are visited.
+   * 
+   * @param reverseReferenceIndex Optional.
+   */
+  public void setReverseReferenceIndex(ReverseReferenceIndex reverseReferenceIndex) {
+    this.reverseReferenceIndex = reverseReferenceIndex;
+  }
+
+  /**
+   * Retrieve the referenced objects through the given fetcher, such as a
+   * <code>ContainerUtilsSession</code>, rather than the RSuite services. Its retrievals are not
+   * reported to the instrumentation; the fetcher may report them itself.
+   * 
+   * @param fetcher When null, the RSuite services are used.
+   */
+  public void setFetcher(ReferencedContentFetcher fetcher) {
+    this.fetcher = fetcher;
+  }
+
+  private void startRetrieval() {
+    if (instrumentation != NoOpContainerInstrumentation.INSTANCE) {
+      retrievalStartNanos = System.nanoTime();
+    }
+  }
+
+  private void endRetrieval(RepositoryCall call) {
+    if (retrievalStartNanos != 0) {
+      instrumentation.repositoryCallCompleted(call, System.nanoTime() - retrievalStartNanos);
+      retrievalStartNanos = 0;
+    }
   }
 
   /**
    * @return The starting container.
    */
+  @Override
   public ContentAssemblyNodeContainer getStartingContainer() {
     return startingContainer;
   }
@@ -118,6 +310,7 @@ public class ListReferencedContentContainerVisitor
    * @return A list of <code>ContentAssembly</code> instances directly or indirectly referenced by
    *         the starting container.
    */
+  @Override
   public List<ContentAssembly> getReferencedContentAssemblies() {
     return referencedContentAssemblyList;
   }
@@ -126,8 +319,17 @@ public class ListReferencedContentContainerVisitor
    * @return A list of <code>ManagedObject</code> instances directory or indirectly referenced by
    *         the starting container.
    */
+  @Override
   public List<ManagedObject> getReferencedManagedObjects() {
     return referencedManagedObjectList;
   }
 
+  /**
+   * @return The number of references that were not followed as their target was already visited.
+   */
+  @Override
+  public int getDuplicateReferenceCount() {
+    return duplicateReferenceCount;
+  }
+
 }
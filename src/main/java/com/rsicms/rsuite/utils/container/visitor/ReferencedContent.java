@@ -0,0 +1,38 @@
+package com.rsicms.rsuite.utils.container.visitor;
+
+import java.util.List;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyNodeContainer;
+import com.reallysi.rsuite.api.ManagedObject;
+
+/**
+ * The <code>ContentAssembly</code> and <code>ManagedObject</code> instances directly or indirectly
+ * referenced by a starting <code>ContentAssemblyNodeContainer</code>, each listed once, in
+ * depth-first order of first reference.
+ */
+public interface ReferencedContent {
+
+  /**
+   * @return The starting container.
+   */
+  ContentAssemblyNodeContainer getStartingContainer();
+
+  /**
+   * @return A list of <code>ContentAssembly</code> instances directly or indirectly referenced by
+   *         the starting container.
+   */
+  List<ContentAssembly> getReferencedContentAssemblies();
+
+  /**
+   * @return A list of <code>ManagedObject</code> instances directly or indirectly referenced by
+   *         the starting container.
+   */
+  List<ManagedObject> getReferencedManagedObjects();
+
+  /**
+   * @return The number of references that were not followed as their target was already listed.
+   */
+  int getDuplicateReferenceCount();
+
+}
@@ -0,0 +1,142 @@
+package com.rsicms.rsuite.utils.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+
+public class ContainerUtilsSiblingTest {
+
+  private ExecutionContext context;
+
+  private User user;
+
+  private ContentAssembly container;
+
+  private ManagedObject a;
+
+  private ManagedObject b;
+
+  private ManagedObject c;
+
+  private ContainerUtils containerUtils;
+
+  /**
+   * Children: A, a CA reference, B, A again, C.
+   */
+  @Before
+  public void setUp() {
+    InMemoryRepository repository = new InMemoryRepository();
+    container = repository.createContentAssembly("container", null, null);
+    a = repository.createManagedObject("a", null);
+    b = repository.createManagedObject("b", null);
+    c = repository.createManagedObject("c", null);
+    repository.addReference(container, a);
+    repository.addReference(container, repository.createContentAssembly("ca", null, null));
+    repository.addReference(container, b);
+    repository.addReference(container, a);
+    repository.addReference(container, c);
+    context = repository.getExecutionContext();
+    user = repository.getUser();
+    containerUtils = new ContainerUtils();
+  }
+
+  @Test
+  public void siblingsSkipContainers() throws RSuiteException {
+    assertEquals(a.getId(), sibling(b, true));
+    assertEquals(a.getId(), sibling(b, false));
+    assertEquals(a.getId(), sibling(c, true));
+    assertNull(sibling(c, false));
+  }
+
+  /**
+   * Both siblings of a repeated MO are those of its first reference.
+   */
+  @Test
+  public void repeatedReferenceUsesFirstReference() throws RSuiteException {
+    assertNull(sibling(a, true));
+    assertEquals(b.getId(), sibling(a, false));
+  }
+
+  @Test
+  public void unreferencedChildHasNoSibling() throws RSuiteException {
+    assertNull(containerUtils.getSiblingManagedObject(context, user, container, "unknown", false));
+  }
+
+  @Test
+  public void windowAroundChild() throws RSuiteException {
+    ManagedObjectWindow window =
+        containerUtils.getSiblingManagedObjectWindow(context, user, container, b.getId(), 1);
+    assertEquals(Arrays.asList(a.getId(), b.getId(), a.getId()), ids(window.getManagedObjects()));
+    assertEquals(0, window.getOffset());
+    assertEquals(4, window.getTotal());
+    assertEquals(1, window.getFocusIndex());
+    assertEquals(b.getId(), window.getFocus().getId());
+    assertEquals(Arrays.asList(a.getId()), ids(window.getBefore()));
+    assertEquals(Arrays.asList(a.getId()), ids(window.getAfter()));
+    assertTrue(window.hasMore());
+  }
+
+  @Test
+  public void windowIsClippedToContainer() throws RSuiteException {
+    ManagedObjectWindow window =
+        containerUtils.getSiblingManagedObjectWindow(context, user, container, a.getId(), 5);
+    assertEquals(4, window.getManagedObjects().size());
+    assertEquals(0, window.getFocusIndex());
+    assertTrue(window.getBefore().isEmpty());
+    assertEquals(Arrays.asList(b.getId(), a.getId(), c.getId()), ids(window.getAfter()));
+    assertFalse(window.hasMore());
+
+    assertNull(
+        containerUtils.getSiblingManagedObjectWindow(context, user, container, "unknown", 1));
+  }
+
+  @Test
+  public void pages() throws RSuiteException {
+    ManagedObjectWindow page = containerUtils.getManagedObjectPage(context, user, container, 1, 2);
+    assertEquals(Arrays.asList(b.getId(), a.getId()), ids(page.getManagedObjects()));
+    assertEquals(1, page.getOffset());
+    assertEquals(4, page.getTotal());
+    assertNull(page.getFocus());
+    assertTrue(page.getAfter().isEmpty());
+    assertTrue(page.hasMore());
+
+    page = containerUtils.getManagedObjectPage(context, user, container, 2, 5);
+    assertEquals(Arrays.asList(a.getId(), c.getId()), ids(page.getManagedObjects()));
+    assertFalse(page.hasMore());
+
+    page = containerUtils.getManagedObjectPage(context, user, container, 10, 5);
+    assertTrue(page.getManagedObjects().isEmpty());
+    assertEquals(4, page.getOffset());
+    assertFalse(page.hasMore());
+  }
+
+  private static List<String> ids(List<ManagedObject> mos) {
+    List<String> ids = new ArrayList<String>();
+    for (ManagedObject mo : mos) {
+      ids.add(mo.getId());
+    }
+    return ids;
+  }
+
+  private String sibling(ManagedObject mo, boolean previous) throws RSuiteException {
+    ManagedObject sibling =
+        containerUtils.getSiblingManagedObject(context, user, container, mo.getId(), previous);
+    return sibling == null ? null : sibling.getId();
+  }
+
+}
@@ -0,0 +1,165 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.LogFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+import com.rsicms.rsuite.utils.operation.result.BaseOperationResult;
+import com.rsicms.rsuite.utils.operation.result.OperationResult;
+
+public class ContainerDeletionEngineTest {
+
+  private final static int MO_CNT = 10;
+
+  private InMemoryRepository repository;
+
+  private ExecutionContext context;
+
+  private User user;
+
+  private List<ManagedObject> mos;
+
+  @Before
+  public void setUp() {
+    repository = new InMemoryRepository();
+    context = repository.getExecutionContext();
+    user = repository.getUser();
+    mos = new ArrayList<ManagedObject>();
+    for (int i = 0; i < MO_CNT; i++) {
+      mos.add(repository.createManagedObject("mo" + i, null));
+    }
+  }
+
+  @Test
+  public void prefetchSkipsCheckOutsTheUserAlreadyHas() throws RSuiteException {
+    assertPrefetchedDeletion(1, 3);
+  }
+
+  @Test
+  public void prefetchInParallelBatches() throws RSuiteException {
+    assertPrefetchedDeletion(4, 3);
+  }
+
+  @Test
+  public void parallelDeletionWarnsOfEveryMOThatCouldNotBeDestroyed() throws RSuiteException {
+    repository.setFailing("ManagedObjectService.destroy", true);
+    ContainerDeletionOptions options = new ContainerDeletionOptions();
+    options.setWorkerCount(4);
+    options.setDestroyBatchSize(3);
+    options.setPrefetchCheckOutState(true);
+    ContainerDeletionEngine engine = new ContainerDeletionEngine(context, user, options);
+
+    assertEquals(MO_CNT, engine.deleteManagedObjects(mos, newResult()));
+    assertEquals(MO_CNT, repository.size());
+    assertTrue(engine.getDeletedIds().isEmpty());
+  }
+
+  @Test
+  public void objectsNoWorkerTookAreNotAttempted() throws RSuiteException {
+    ContainerDeletionOptions options = new ContainerDeletionOptions();
+    options.setWorkerCount(1);
+    ContainerDeletionEngine engine = new ContainerDeletionEngine(context, user, options);
+
+    // The only worker is interrupted while processing the second object.
+    Exception[] outcomes = engine.processInParallel(Arrays.asList(0, 1, 2, 3),
+        new ContainerDeletionEngine.ObjectProcessor<Integer>() {
+          @Override
+          public void process(Integer object) {
+            if (object == 1) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+    assertNull(outcomes[0]);
+    assertNull(outcomes[1]);
+    assertTrue(outcomes[2] instanceof ContainerDeletionEngine.NotAttemptedException);
+    assertTrue(outcomes[3] instanceof ContainerDeletionEngine.NotAttemptedException);
+  }
+
+  @Test
+  public void parallelDeletionReportsOnlyAttemptedDeletions() throws RSuiteException {
+    ContainerDeletionOptions options = new ContainerDeletionOptions();
+    options.setWorkerCount(4);
+    options.setPrefetchCheckOutState(true);
+    List<String> infoMessages = new ArrayList<String>();
+
+    // None of the MOs can be checked out, so no destroy is attempted.
+    repository.setFailing("ManagedObjectService.checkOut", true);
+    assertEquals(MO_CNT, new ContainerDeletionEngine(context, user, options)
+        .deleteManagedObjects(mos, newRecordingResult(infoMessages)));
+    assertEquals(0, infoMessages.size());
+
+    // Every destroy is attempted, even though each fails.
+    repository.setFailing("ManagedObjectService.checkOut", false);
+    repository.setFailing("ManagedObjectService.destroy", true);
+    assertEquals(MO_CNT, new ContainerDeletionEngine(context, user, options)
+        .deleteManagedObjects(mos, newRecordingResult(infoMessages)));
+    assertEquals(MO_CNT, infoMessages.size());
+  }
+
+  /**
+   * Delete the MOs with the check-out state prefetched, two of them already checked out by the
+   * user: the others take one check out each, made directly rather than through
+   * <code>MOUtils</code>.
+   */
+  private void assertPrefetchedDeletion(int workerCnt, int batchSize) throws RSuiteException {
+    context.getManagedObjectService().checkOut(user, mos.get(0).getId());
+    context.getManagedObjectService().checkOut(user, mos.get(5).getId());
+    repository.resetCallCounts();
+
+    ContainerDeletionOptions options = new ContainerDeletionOptions();
+    options.setWorkerCount(workerCnt);
+    options.setDestroyBatchSize(batchSize);
+    options.setPrefetchCheckOutState(true);
+    ContainerDeletionEngine engine = new ContainerDeletionEngine(context, user, options);
+    assertEquals(0, engine.deleteManagedObjects(mos, newResult()));
+
+    assertEquals(0, repository.size());
+    assertEquals(2, engine.getSkippedCheckOutCount());
+    Map<String, Long> callCounts = repository.getCallCounts();
+    assertEquals(Long.valueOf(MO_CNT),
+        callCounts.get("ManagedObjectService.getCheckOutOwner"));
+    assertEquals(Long.valueOf(MO_CNT - 2), callCounts.get("ManagedObjectService.checkOut"));
+    assertEquals(Long.valueOf(MO_CNT), callCounts.get("ManagedObjectService.destroy"));
+  }
+
+  /**
+   * @param infoMessages The list to add the info messages of the result to.
+   * @return A result recording its info messages, and ignoring all else.
+   */
+  private OperationResult newRecordingResult(final List<String> infoMessages) {
+    return (OperationResult) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] {OperationResult.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("addInfoMessage".equals(method.getName())) {
+              infoMessages.add(String.valueOf(args[0]));
+            }
+            return null;
+          }
+        });
+  }
+
+  private OperationResult newResult() {
+    return new BaseOperationResult(context.getIDGenerator().allocateId(), "delete",
+        LogFactory.getLog(ContainerDeletionEngineTest.class));
+  }
+
+}
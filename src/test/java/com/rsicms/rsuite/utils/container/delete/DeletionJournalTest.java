@@ -0,0 +1,231 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.control.ObjectDestroyOptions;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.ContainerUtils;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+import com.rsicms.rsuite.utils.container.benchmark.fake.SyntheticTreeGenerator;
+
+public class DeletionJournalTest {
+
+  private InMemoryRepository repository;
+
+  private DeletionPlan plan;
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException, RSuiteException {
+    repository = new InMemoryRepository();
+    SyntheticTreeGenerator generator = new SyntheticTreeGenerator();
+    generator.setDepth(2);
+    ContentAssembly root = generator.generate(repository);
+    plan = new ContainerUtils().planContainerDeletion(repository.getExecutionContext(),
+        repository.getUser(), root, null);
+    file = File.createTempFile("deletion", ".journal");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void roundTrip() throws RSuiteException {
+    DeletionJournal journal = DeletionJournal.create(file, plan);
+    journal.recordDeleted(plan.getStartingContainer());
+    journal.recordDeleted(plan.getContentAssemblies().get(0));
+    journal.recordDeleted(plan.getManagedObjects().get(1));
+    journal.close();
+
+    journal = DeletionJournal.open(file);
+    try {
+      assertEquals(ids(plan.getStartingContainers()),
+          ids(journal.getPlan().getStartingContainers()));
+      assertEquals(ids(plan.getContentAssemblies()),
+          ids(journal.getPlan().getContentAssemblies()));
+      assertEquals(ids(plan.getManagedObjects()), ids(journal.getPlan().getManagedObjects()));
+      assertEquals(plan.getManagedObjects().get(0).getKind(),
+          journal.getPlan().getManagedObjects().get(0).getKind());
+      assertEquals(3, journal.getDeletedCount());
+      assertFalse(journal.isCompleted());
+
+      DeletionPlan remaining = journal.getRemainingPlan();
+      assertEquals(plan.size() - 3, remaining.size());
+      assertTrue(remaining.getStartingContainers().isEmpty());
+      assertFalse(ids(remaining.getContentAssemblies())
+          .contains(plan.getContentAssemblies().get(0).getId()));
+      assertFalse(ids(remaining.getManagedObjects())
+          .contains(plan.getManagedObjects().get(1).getId()));
+      assertEquals(plan.getManagedObjects().get(0).getId(),
+          remaining.getManagedObjects().get(0).getId());
+
+      journal.recordCompleted();
+    } finally {
+      journal.close();
+    }
+
+    journal = DeletionJournal.open(file);
+    journal.close();
+    assertTrue(journal.isCompleted());
+  }
+
+  @Test
+  public void truncatedLastLineIsIgnored() throws IOException, RSuiteException {
+    DeletionJournal journal = DeletionJournal.create(file, plan);
+    journal.recordDeleted(plan.getManagedObjects().get(0));
+    journal.close();
+    append("D 1");
+
+    journal = DeletionJournal.open(file);
+    try {
+      assertEquals(1, journal.getDeletedCount());
+      // Progress recorded after the truncated line is readable.
+      journal.recordDeleted(plan.getManagedObjects().get(1));
+    } finally {
+      journal.close();
+    }
+
+    journal = DeletionJournal.open(file);
+    journal.close();
+    assertEquals(2, journal.getDeletedCount());
+  }
+
+  @Test(expected = RSuiteException.class)
+  public void truncatedPlanIsRejected() throws IOException, RSuiteException {
+    DeletionJournal.create(file, plan).close();
+    String content = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    // Drop the end of plan marker and everything after it.
+    content = content.substring(0, content.indexOf("\n-\n") + 1);
+    file.delete();
+    append(content);
+    DeletionJournal.open(file);
+  }
+
+  @Test(expected = RSuiteException.class)
+  public void otherFileIsRejected() throws IOException, RSuiteException {
+    append("not a journal\n");
+    DeletionJournal.open(file);
+  }
+
+  @Test
+  public void resumeDeletesOnlyRemainingObjects() throws RSuiteException {
+    DeletionJournal journal = DeletionJournal.create(file, plan);
+    // Recorded as deleted, but left in the repository, so the resumption must skip it.
+    journal.recordDeleted(plan.getManagedObjects().get(0));
+    journal.close();
+
+    new ContainerUtils().resumeContainerDeletion(repository.getExecutionContext(),
+        repository.getUser(), file, null, null);
+    assertEquals(1, repository.size());
+
+    journal = DeletionJournal.open(file);
+    journal.close();
+    assertTrue(journal.isCompleted());
+    assertEquals(plan.size(), journal.getDeletedCount());
+  }
+
+  @Test
+  public void resumeCountsObjectsAlreadyDeletedAsDeleted() throws RSuiteException {
+    resumeAfterUnjournaledDeletions(null);
+  }
+
+  @Test
+  public void parallelResumeCountsObjectsAlreadyDeletedAsDeleted() throws RSuiteException {
+    ContainerDeletionOptions options = new ContainerDeletionOptions();
+    options.setWorkerCount(4);
+    resumeAfterUnjournaledDeletions(options);
+  }
+
+  /**
+   * An MO is only counted as deleted when retrieving it shows it no longer exists: when the
+   * retrieval fails, the MO is left to be retried by the next resumption.
+   */
+  @Test
+  public void resumeRetriesObjectsWhoseExistenceIsUnknown() throws RSuiteException {
+    DeletionJournal.create(file, plan).close();
+    ExecutionContext context = repository.getExecutionContext();
+    User user = repository.getUser();
+    context.getManagedObjectService().destroy(user, plan.getManagedObjects().get(0).getId(),
+        new ObjectDestroyOptions());
+
+    // Check out directly, so that only the existence check retrieves MOs.
+    ContainerDeletionOptions options = new ContainerDeletionOptions();
+    options.setPrefetchCheckOutState(true);
+    repository.setFailing("ManagedObjectService.getManagedObject", true);
+    new ContainerUtils().resumeContainerDeletion(context, user, file, options, null);
+
+    DeletionJournal journal = DeletionJournal.open(file);
+    journal.close();
+    assertFalse(journal.isCompleted());
+    assertEquals(plan.size() - 1, journal.getDeletedCount());
+
+    repository.setFailing("ManagedObjectService.getManagedObject", false);
+    new ContainerUtils().resumeContainerDeletion(context, user, file, options, null);
+    journal = DeletionJournal.open(file);
+    journal.close();
+    assertTrue(journal.isCompleted());
+    assertEquals(plan.size(), journal.getDeletedCount());
+  }
+
+  /**
+   * Delete objects of each phase without recording them, as though the process ended before their
+   * checkpoints were written, then resume.
+   */
+  private void resumeAfterUnjournaledDeletions(ContainerDeletionOptions options)
+      throws RSuiteException {
+    DeletionJournal.create(file, plan).close();
+    ExecutionContext context = repository.getExecutionContext();
+    User user = repository.getUser();
+    context.getContentAssemblyService().removeContentAssembly(user,
+        plan.getStartingContainer().getId());
+    context.getContentAssemblyService().removeContentAssembly(user,
+        plan.getContentAssemblies().get(0).getId());
+    context.getManagedObjectService().destroy(user, plan.getManagedObjects().get(0).getId(),
+        new ObjectDestroyOptions());
+
+    new ContainerUtils().resumeContainerDeletion(context, user, file, options, null);
+    assertEquals(0, repository.size());
+
+    DeletionJournal journal = DeletionJournal.open(file);
+    journal.close();
+    assertTrue(journal.isCompleted());
+    assertEquals(plan.size(), journal.getDeletedCount());
+  }
+
+  private void append(String str) throws IOException {
+    FileOutputStream out = new FileOutputStream(file, true);
+    try {
+      out.write(str.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  private static List<String> ids(List<DeletionPlan.Entry> entries) {
+    List<String> ids = new ArrayList<String>();
+    for (DeletionPlan.Entry entry : entries) {
+      ids.add(entry.getId());
+    }
+    return ids;
+  }
+
+}
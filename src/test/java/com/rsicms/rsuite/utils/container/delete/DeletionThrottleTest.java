@@ -0,0 +1,100 @@
+package com.rsicms.rsuite.utils.container.delete;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeletionThrottleTest {
+
+  private final static long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final static long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private DeletionThrottle throttle;
+
+  @Before
+  public void setUp() {
+    throttle = new DeletionThrottle();
+    throttle.setLatencyThreshold(50, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void slowCallBacksOffConcurrency() throws InterruptedException {
+    throttle.setMaxConcurrency(8);
+    for (int i = 0; i < 8; i++) {
+      throttle.acquire();
+    }
+    throttle.release(SLOW_NANOS);
+    assertEquals(4, throttle.getConcurrencyLimit());
+    assertEquals(1, throttle.getBackoffCount());
+
+    // Further slow calls within the threshold of the back off do not back off again.
+    throttle.release(SLOW_NANOS);
+    assertEquals(4, throttle.getConcurrencyLimit());
+    assertEquals(1, throttle.getBackoffCount());
+  }
+
+  @Test
+  public void fastCallsRaiseConcurrencyToMaximum() throws InterruptedException {
+    throttle.setMaxConcurrency(4);
+    throttle.setMinConcurrency(1);
+    throttle.acquire();
+    throttle.release(SLOW_NANOS);
+    assertEquals(1, throttle.getConcurrencyLimit());
+
+    // Each run of as many fast calls as the limit raises it by one.
+    int expectedLimit = 1;
+    for (int i = 0; i < 20; i++) {
+      throttle.acquire();
+      throttle.release(FAST_NANOS);
+      if (throttle.getConcurrencyLimit() != expectedLimit) {
+        assertEquals(expectedLimit + 1, throttle.getConcurrencyLimit());
+        expectedLimit++;
+      }
+    }
+    assertEquals(4, throttle.getConcurrencyLimit());
+  }
+
+  @Test
+  public void slowCallAtMinimumPausesNextCall() throws InterruptedException {
+    throttle.setMaxConcurrency(1);
+    throttle.acquire();
+    throttle.release(SLOW_NANOS);
+    assertEquals(1, throttle.getConcurrencyLimit());
+    assertEquals(1, throttle.getBackoffCount());
+
+    long start = System.nanoTime();
+    throttle.acquire();
+    throttle.release(FAST_NANOS);
+    assertTrue(System.nanoTime() - start >= SLOW_NANOS / 2);
+  }
+
+  @Test
+  public void rateLimitSpacesCalls() throws InterruptedException {
+    throttle.setMaxCallsPerSecond(200);
+    long start = System.nanoTime();
+    for (int i = 0; i < 11; i++) {
+      throttle.acquire();
+      throttle.release(FAST_NANOS);
+    }
+    // Ten intervals of five milliseconds, less some leeway for the clock.
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(45));
+    assertTrue(throttle.getWaitedNanos() > 0);
+    assertEquals(0, throttle.getBackoffCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void backoffFactorOfOneIsRejected() {
+    throttle.setBackoffFactor(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void backoffFactorOfZeroIsRejected() {
+    throttle.setBackoffFactor(0);
+  }
+
+}
@@ -0,0 +1,161 @@
+package com.rsicms.rsuite.utils.container.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+import com.rsicms.rsuite.utils.container.traversal.ReferencedItem;
+
+public class ContainerTreeDiffTest {
+
+  private final static String[] NAMES = {"m0", "m1", "m2", "m3", "m4"};
+
+  /**
+   * Every tree has the same objects, created in the same order so that their IDs match: the root
+   * CA, a section CA, then the MOs.
+   */
+  private final static String ROOT_ID = "1";
+
+  private final static String SECTION_ID = "2";
+
+  private static String moId(int idx) {
+    return String.valueOf(3 + idx);
+  }
+
+  /**
+   * @param names The MOs' display names.
+   * @param rootMos The MOs the root references, in order.
+   * @param sectionMos When not null, the root references the section first, which references
+   *        these MOs.
+   */
+  private static ContainerTreeSnapshot snapshot(String[] names, int[] rootMos, int[] sectionMos)
+      throws RSuiteException {
+    InMemoryRepository repository = new InMemoryRepository();
+    ContentAssembly root = repository.createContentAssembly("root", "book", null);
+    ContentAssembly section = repository.createContentAssembly("section", "section", null);
+    ManagedObject[] mos = new ManagedObject[names.length];
+    for (int i = 0; i < names.length; i++) {
+      mos[i] = repository.createManagedObject(names[i], null);
+    }
+    if (sectionMos != null) {
+      repository.addReference(root, section);
+      for (int idx : sectionMos) {
+        repository.addReference(section, mos[idx]);
+      }
+    }
+    for (int idx : rootMos) {
+      repository.addReference(root, mos[idx]);
+    }
+    SnapshotContainerVisitor visitor =
+        new SnapshotContainerVisitor(repository.getExecutionContext(), repository.getUser());
+    visitor.visitContentAssemblyNodeContainer(root);
+    return visitor.getSnapshot();
+  }
+
+  private static ContainerTreeSnapshot snapshot(int... rootMos) throws RSuiteException {
+    return snapshot(NAMES, rootMos, null);
+  }
+
+  @Test
+  public void unchangedTreeHasNoChanges() throws RSuiteException {
+    assertTrue(ContainerTreeDiff.compare(snapshot(1, 2, 3), snapshot(1, 2, 3)).isEmpty());
+  }
+
+  @Test
+  public void everythingIsAddedWithoutPreviousSnapshot() throws RSuiteException {
+    ContainerTreeDiff diff = ContainerTreeDiff.compare(null, snapshot(1, 2, 3));
+    assertEquals(4, diff.getChanges(ContainerTreeChange.Type.ADDED).size());
+    assertEquals(4, diff.getChanges().size());
+  }
+
+  @Test
+  public void insertionDoesNotMoveLaterSiblings() throws RSuiteException {
+    ContainerTreeDiff diff =
+        ContainerTreeDiff.compare(snapshot(1, 2, 3, 4), snapshot(0, 1, 2, 3, 4));
+
+    List<ContainerTreeChange> added = diff.getChanges(ContainerTreeChange.Type.ADDED);
+    assertEquals(1, added.size());
+    assertEquals(moId(0), added.get(0).getId());
+    assertEquals(ROOT_ID, added.get(0).getParentId());
+    assertEquals(0, added.get(0).getOrdinal());
+    assertTrue(diff.getChanges(ContainerTreeChange.Type.MOVED).isEmpty());
+
+    // The root's children changed.
+    List<ContainerTreeChange> modified = diff.getChanges(ContainerTreeChange.Type.MODIFIED);
+    assertEquals(1, modified.size());
+    assertEquals(ROOT_ID, modified.get(0).getId());
+  }
+
+  @Test
+  public void removalDoesNotMoveLaterSiblings() throws RSuiteException {
+    ContainerTreeDiff diff = ContainerTreeDiff.compare(snapshot(1, 2, 3, 4), snapshot(1, 3, 4));
+
+    List<ContainerTreeChange> removed = diff.getChanges(ContainerTreeChange.Type.REMOVED);
+    assertEquals(1, removed.size());
+    assertEquals(moId(2), removed.get(0).getId());
+    assertEquals(ROOT_ID, removed.get(0).getPreviousParentId());
+    assertEquals(1, removed.get(0).getPreviousOrdinal());
+    assertTrue(diff.getChanges(ContainerTreeChange.Type.MOVED).isEmpty());
+  }
+
+  @Test
+  public void reorderMovesFewestSiblings() throws RSuiteException {
+    ContainerTreeDiff diff = ContainerTreeDiff.compare(snapshot(1, 2, 3, 4), snapshot(1, 3, 2, 4));
+
+    List<ContainerTreeChange> moved = diff.getChanges(ContainerTreeChange.Type.MOVED);
+    assertEquals(1, moved.size());
+    assertTrue(Arrays.asList(moId(2), moId(3)).contains(moved.get(0).getId()));
+    assertEquals(ROOT_ID, moved.get(0).getParentId());
+    assertEquals(ROOT_ID, moved.get(0).getPreviousParentId());
+  }
+
+  @Test
+  public void reorderWithUnchangedOrdinalIsMoved() throws RSuiteException {
+    // m3 keeps ordinal 2, but now precedes m2.
+    ContainerTreeDiff diff =
+        ContainerTreeDiff.compare(snapshot(1, 2, 3, 4), snapshot(0, 1, 3, 2, 4));
+
+    List<ContainerTreeChange> moved = diff.getChanges(ContainerTreeChange.Type.MOVED);
+    assertEquals(1, moved.size());
+    assertEquals(moId(3), moved.get(0).getId());
+    assertEquals(2, moved.get(0).getPreviousOrdinal());
+    assertEquals(2, moved.get(0).getOrdinal());
+  }
+
+  @Test
+  public void changeOfParentIsMoved() throws RSuiteException {
+    ContainerTreeDiff diff = ContainerTreeDiff.compare(snapshot(NAMES, new int[] {1, 2},
+        new int[] {3}), snapshot(NAMES, new int[] {1}, new int[] {3, 2}));
+
+    List<ContainerTreeChange> moved = diff.getChanges(ContainerTreeChange.Type.MOVED);
+    assertEquals(1, moved.size());
+    assertEquals(moId(2), moved.get(0).getId());
+    assertEquals(ReferencedItem.Kind.MANAGED_OBJECT, moved.get(0).getKind());
+    assertEquals(ROOT_ID, moved.get(0).getPreviousParentId());
+    assertEquals(SECTION_ID, moved.get(0).getParentId());
+    assertEquals(1, moved.get(0).getOrdinal());
+  }
+
+  @Test
+  public void renameIsModified() throws RSuiteException {
+    String[] renamed = NAMES.clone();
+    renamed[2] = "m2, revised";
+    ContainerTreeDiff diff = ContainerTreeDiff.compare(snapshot(NAMES, new int[] {1, 2, 3}, null),
+        snapshot(renamed, new int[] {1, 2, 3}, null));
+
+    assertEquals(1, diff.getChanges().size());
+    ContainerTreeChange change = diff.getChanges().get(0);
+    assertEquals(ContainerTreeChange.Type.MODIFIED, change.getType());
+    assertEquals(moId(2), change.getId());
+    assertEquals("m2, revised", change.getDisplayName());
+  }
+
+}
@@ -0,0 +1,114 @@
+package com.rsicms.rsuite.utils.container.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+import com.rsicms.rsuite.utils.container.benchmark.fake.SyntheticTreeGenerator;
+import com.rsicms.rsuite.utils.container.visitor.ListReferencedContentContainerVisitor;
+
+public class ContainerTreeSnapshotTest {
+
+  private InMemoryRepository repository;
+
+  private ContentAssembly root;
+
+  private ContainerTreeSnapshot snapshot;
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException, RSuiteException {
+    repository = new InMemoryRepository();
+    SyntheticTreeGenerator generator = new SyntheticTreeGenerator();
+    generator.setDepth(3);
+    generator.setSharedReferenceRatio(0.2);
+    generator.setCaNodeRatio(0.3);
+    root = generator.generate(repository);
+    SnapshotContainerVisitor visitor =
+        new SnapshotContainerVisitor(repository.getExecutionContext(), repository.getUser());
+    visitor.visitContentAssemblyNodeContainer(root);
+    snapshot = visitor.getSnapshot();
+    file = File.createTempFile("snapshot", ".bin");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void listsAsTheListVisitorDoes() throws RSuiteException {
+    ListReferencedContentContainerVisitor visitor = new ListReferencedContentContainerVisitor(
+        repository.getExecutionContext(), repository.getUser(), false);
+    visitor.visitContentAssemblyNodeContainer(root);
+    assertEquals(visitor.getReferencedContentAssemblies().size(),
+        snapshot.getContentAssemblyIds().size());
+    assertEquals(visitor.getReferencedManagedObjects().size(),
+        snapshot.getManagedObjectIds().size());
+    for (int i = 0; i < visitor.getReferencedManagedObjects().size(); i++) {
+      assertEquals(visitor.getReferencedManagedObjects().get(i).getId(),
+          snapshot.getManagedObjectIds().get(i));
+    }
+  }
+
+  @Test
+  public void ordinalsLocateFirstReferences() {
+    assertEquals(-1, snapshot.getOrdinal(0));
+    for (int node = 1; node < snapshot.size(); node++) {
+      assertEquals(node, snapshot.getChild(snapshot.getParent(node), snapshot.getOrdinal(node)));
+    }
+  }
+
+  @Test
+  public void writeAndMapRoundTrip() throws RSuiteException {
+    snapshot.write(file);
+    ContainerTreeSnapshot mapped = ContainerTreeSnapshot.map(file);
+
+    assertEquals(snapshot.size(), mapped.size());
+    assertEquals(snapshot.getStartingContainerId(), mapped.getStartingContainerId());
+    for (int node = 0; node < snapshot.size(); node++) {
+      String id = snapshot.getId(node);
+      assertEquals(id, mapped.getId(node));
+      assertEquals(node, mapped.indexOf(id));
+      assertEquals(snapshot.getKind(node), mapped.getKind(node));
+      assertEquals(snapshot.getDisplayName(node), mapped.getDisplayName(node));
+      assertEquals(snapshot.getContainerType(node), mapped.getContainerType(node));
+      assertEquals(snapshot.getVersion(node), mapped.getVersion(node));
+      assertEquals(snapshot.getParent(node), mapped.getParent(node));
+      assertEquals(snapshot.getOrdinal(node), mapped.getOrdinal(node));
+      assertEquals(snapshot.getChildCount(node), mapped.getChildCount(node));
+      for (int i = 0; i < snapshot.getChildCount(node); i++) {
+        assertEquals(snapshot.getChild(node, i), mapped.getChild(node, i));
+      }
+      assertEquals(snapshot.getAncestorIds(id), mapped.getAncestorIds(id));
+    }
+    assertEquals(-1, mapped.indexOf("no such ID"));
+    assertEquals(snapshot.getContentAssemblyIds(), mapped.getContentAssemblyIds());
+    assertEquals(snapshot.getManagedObjectIds(), mapped.getManagedObjectIds());
+    assertTrue(ContainerTreeDiff.compare(snapshot, mapped).isEmpty());
+  }
+
+  @Test(expected = RSuiteException.class)
+  public void truncatedFileIsRejected() throws IOException, RSuiteException {
+    snapshot.write(file);
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(raf.length() - 1);
+    } finally {
+      raf.close();
+    }
+    ContainerTreeSnapshot.map(file);
+  }
+
+}
@@ -0,0 +1,130 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.ContainerUtils;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+import com.rsicms.rsuite.utils.mo.qualifiers.ManagedObjectQualifier;
+
+public class ManagedObjectCollectorTest {
+
+  private final static int MO_CNT = 10;
+
+  private InMemoryRepository repository;
+
+  private ContentAssembly container;
+
+  private List<ManagedObject> mos;
+
+  @Before
+  public void setUp() {
+    repository = new InMemoryRepository();
+    container = repository.createContentAssembly("container", null, null);
+    mos = new ArrayList<ManagedObject>();
+    for (int i = 0; i < MO_CNT; i++) {
+      mos.add(repository.createManagedObject("mo" + i, null));
+      repository.addReference(container, mos.get(i));
+    }
+  }
+
+  @Test
+  public void eachModeCollectsPerItsMode() throws RSuiteException {
+    ManagedObjectCollector collector = new ManagedObjectCollector()
+        .add("first", even(), ManagedObjectCollector.Mode.FIRST)
+        .add("all", even(), ManagedObjectCollector.Mode.ALL)
+        .add("count", even(), ManagedObjectCollector.Mode.COUNT)
+        .addLimit("limit", odd(), 2);
+    collect(collector);
+
+    assertEquals(Arrays.asList("first", "all", "count", "limit"),
+        new ArrayList<String>(collector.getNames()));
+    assertEquals(mos.get(0), collector.getFirstManagedObject("first"));
+    assertEquals(1, collector.getCount("first"));
+    assertEquals(Arrays.asList(mos.get(0), mos.get(2), mos.get(4), mos.get(6), mos.get(8)),
+        collector.getManagedObjects("all"));
+    assertEquals(MO_CNT / 2, collector.getCount("count"));
+    assertTrue(collector.getManagedObjects("count").isEmpty());
+    assertNull(collector.getFirstManagedObject("count"));
+    assertEquals(Arrays.asList(mos.get(1), mos.get(3)), collector.getManagedObjects("limit"));
+    assertFalse(collector.isComplete());
+  }
+
+  @Test
+  public void traversalStopsOnceComplete() throws RSuiteException {
+    ManagedObjectCollector collector = new ManagedObjectCollector()
+        .add("first", even(), ManagedObjectCollector.Mode.FIRST).addLimit("limit", odd(), 2);
+    collect(collector);
+
+    assertTrue(collector.isComplete());
+    assertEquals(Arrays.asList(mos.get(1), mos.get(3)), collector.getManagedObjects("limit"));
+    // The fourth MO completes the collector, so the rest are not retrieved.
+    assertEquals(Long.valueOf(4),
+        repository.getCallCounts().get("ManagedObjectService.getManagedObject"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void limitModeRequiresLimit() {
+    new ManagedObjectCollector().add("limit", even(), ManagedObjectCollector.Mode.LIMIT);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void namesMustBeUnique() {
+    new ManagedObjectCollector().add("mos", even(), ManagedObjectCollector.Mode.ALL).add("mos",
+        odd(), ManagedObjectCollector.Mode.ALL);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownNameIsRejected() {
+    new ManagedObjectCollector().getCount("unknown");
+  }
+
+  private void collect(ManagedObjectCollector collector) throws RSuiteException {
+    repository.resetCallCounts();
+    new ContainerUtils().collectReferencedManagedObjects(repository.getExecutionContext(),
+        repository.getUser(), container, collector);
+  }
+
+  private ManagedObjectQualifier even() {
+    return new PositionQualifier(0);
+  }
+
+  private ManagedObjectQualifier odd() {
+    return new PositionQualifier(1);
+  }
+
+  /**
+   * Qualifies the MOs at either the even or the odd positions of the container.
+   */
+  private class PositionQualifier implements ManagedObjectQualifier {
+
+    private final int remainder;
+
+    private PositionQualifier(int remainder) {
+      this.remainder = remainder;
+    }
+
+    @Override
+    public boolean accept(ManagedObject mo) throws RSuiteException {
+      for (int i = remainder; i < mos.size(); i += 2) {
+        if (mos.get(i).getId().equals(mo.getId())) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+package com.rsicms.rsuite.utils.container.traversal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyNode;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.User;
+import com.reallysi.rsuite.api.extensions.ExecutionContext;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+
+public class ReferencedContentIteratorTest {
+
+  private ExecutionContext context;
+
+  private User user;
+
+  private ContentAssembly root;
+
+  private ContentAssembly ca;
+
+  private ContentAssemblyNode node;
+
+  private ManagedObject a;
+
+  private ManagedObject b;
+
+  private ManagedObject c;
+
+  /**
+   * The root's children: A, a reference to a CA, a CANode and C. The CA's children: B and a
+   * reference back to the root. The CANode's children: B and A.
+   */
+  @Before
+  public void setUp() {
+    InMemoryRepository repository = new InMemoryRepository();
+    root = repository.createContentAssembly("root", null, null);
+    ca = repository.createContentAssembly("ca", null, null);
+    node = repository.createCANode("node", null);
+    a = repository.createManagedObject("a", null);
+    b = repository.createManagedObject("b", null);
+    c = repository.createManagedObject("c", null);
+    repository.addReference(root, a);
+    repository.addReference(root, ca);
+    repository.addChild(root, node);
+    repository.addReference(root, c);
+    repository.addReference(ca, b);
+    repository.addReference(ca, root);
+    repository.addReference(node, b);
+    repository.addReference(node, a);
+    context = repository.getExecutionContext();
+    user = repository.getUser();
+  }
+
+  @Test
+  public void deduplicatingYieldsEachObjectAtItsFirstReference() {
+    ReferencedContentIterator it = new ReferencedContentIterator(context, user, root);
+    assertEquals(Arrays.asList(root.getId(), a.getId(), ca.getId(), b.getId(), node.getId(),
+        c.getId()), ids(it));
+    assertEquals(3, it.getDuplicateReferenceCount());
+  }
+
+  @Test
+  public void withoutDeduplicatingOnlyCyclesAreSkipped() {
+    ReferencedContentIterator it = new ReferencedContentIterator(
+        new ServiceReferencedContentFetcher(context, user), root, false);
+    assertEquals(Arrays.asList(root.getId(), a.getId(), ca.getId(), b.getId(), node.getId(),
+        b.getId(), a.getId(), c.getId()), ids(it));
+    assertEquals(1, it.getDuplicateReferenceCount());
+  }
+
+  @Test
+  public void depthsAndParentsAreReported() {
+    List<ReferencedItem> items = new ArrayList<ReferencedItem>();
+    ReferencedContentIterator it = new ReferencedContentIterator(context, user, root);
+    while (it.hasNext()) {
+      items.add(it.next());
+    }
+    assertEquals(0, items.get(0).getDepth());
+    assertNull(items.get(0).getParentId());
+    assertEquals(ReferencedItem.Kind.CONTENT_ASSEMBLY, items.get(2).getKind());
+    assertEquals(2, items.get(3).getDepth());
+    assertEquals(ca.getId(), items.get(3).getParentId());
+    assertEquals(ReferencedItem.Kind.CA_NODE, items.get(4).getKind());
+    assertEquals(2, items.get(4).getOrdinal());
+  }
+
+  @Test
+  public void maxDepthStopsAtTheStartingContainersChildren() {
+    TraversalOptions options = new TraversalOptions();
+    options.setMaxDepth(1);
+    ReferencedContentIterator it = new ReferencedContentIterator(context, user, root);
+    it.setTraversalOptions(options);
+    assertEquals(Arrays.asList(root.getId(), a.getId(), ca.getId(), node.getId(), c.getId()),
+        ids(it));
+  }
+
+  @Test
+  public void excludedContainersArePruned() {
+    TraversalOptions options = new TraversalOptions();
+    options.setExcludedContainerIds(Collections.singleton(ca.getId()));
+    ReferencedContentIterator it = new ReferencedContentIterator(context, user, root);
+    it.setTraversalOptions(options);
+    assertEquals(Arrays.asList(root.getId(), a.getId(), node.getId(), b.getId(), c.getId()),
+        ids(it));
+  }
+
+  @Test
+  public void interruptionStopsTheTraversal() {
+    ReferencedContentIterator it = new ReferencedContentIterator(context, user, root);
+    it.next();
+    Thread.currentThread().interrupt();
+    try {
+      it.hasNext();
+      fail("The traversal continued after the thread was interrupted.");
+    } catch (ReferencedContentTraversalException e) {
+      // Expected.
+    } finally {
+      assertTrue(Thread.interrupted());
+    }
+  }
+
+  private static List<String> ids(ReferencedContentIterator it) {
+    List<String> ids = new ArrayList<String>();
+    while (it.hasNext()) {
+      ids.add(it.next().getId());
+    }
+    return ids;
+  }
+
+}
@@ -0,0 +1,109 @@
+package com.rsicms.rsuite.utils.container.visitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.reallysi.rsuite.api.ContentAssembly;
+import com.reallysi.rsuite.api.ContentAssemblyItem;
+import com.reallysi.rsuite.api.ContentAssemblyNode;
+import com.reallysi.rsuite.api.ContentAssemblyReference;
+import com.reallysi.rsuite.api.ManagedObject;
+import com.reallysi.rsuite.api.ManagedObjectReference;
+import com.reallysi.rsuite.api.RSuiteException;
+import com.rsicms.rsuite.utils.container.benchmark.fake.InMemoryRepository;
+
+public class ChildrenInfoContainerVisitorTest {
+
+  private ManagedObject a;
+
+  private ManagedObject b;
+
+  private ManagedObject c;
+
+  private ContentAssemblyNode caNode;
+
+  private ContentAssembly ca;
+
+  private ChildrenInfoContainerVisitor visitor;
+
+  /**
+   * Children: A, a CANode, B, A again, a CA reference, C.
+   */
+  @Before
+  public void setUp() throws RSuiteException {
+    InMemoryRepository repository = new InMemoryRepository();
+    ContentAssembly container = repository.createContentAssembly("container", null, null);
+    a = repository.createManagedObject("a", null);
+    b = repository.createManagedObject("b", null);
+    c = repository.createManagedObject("c", null);
+    caNode = repository.createCANode("node", null);
+    ca = repository.createContentAssembly("ca", null, null);
+    repository.addReference(container, a);
+    repository.addChild(container, caNode);
+    repository.addReference(container, b);
+    repository.addReference(container, a);
+    repository.addReference(container, ca);
+    repository.addReference(container, c);
+
+    visitor =
+        new ChildrenInfoContainerVisitor(repository.getExecutionContext(), repository.getUser());
+    visitor.visitContentAssemblyNodeContainer(container);
+  }
+
+  @Test
+  public void anySiblings() throws RSuiteException {
+    assertNull(visitor.getAnySiblingBefore(a.getId()));
+    assertEquals(caNode.getId(), visitor.getAnySiblingBefore(b.getId()).getId());
+    assertEquals(b.getId(), targetId(visitor.getAnySiblingAfter(caNode.getId())));
+    assertNull(visitor.getAnySiblingAfter(c.getId()));
+  }
+
+  @Test
+  public void moRefSiblingsSkipContainers() throws RSuiteException {
+    assertEquals(a.getId(), visitor.getMoRefSiblingBefore(b.getId()).getTargetId());
+    assertEquals(a.getId(), visitor.getMoRefSiblingAfter(b.getId()).getTargetId());
+    assertEquals(b.getId(), visitor.getMoRefSiblingBefore(c.getId()).getTargetId());
+    assertNull(visitor.getMoRefSiblingAfter(c.getId()));
+  }
+
+  /**
+   * "Before" lookups are relative to the first reference to a repeated MO, and "after" lookups to
+   * the last, as when the children were scanned from either end.
+   */
+  @Test
+  public void repeatedReferenceUsesFirstBeforeAndLastAfter() throws RSuiteException {
+    assertNull(visitor.getMoRefSiblingBefore(a.getId()));
+    assertEquals(c.getId(), visitor.getMoRefSiblingAfter(a.getId()).getTargetId());
+    assertEquals(ca.getId(), targetId(visitor.getAnySiblingAfter(a.getId())));
+  }
+
+  @Test
+  public void moRefOrdinalsUseFirstReference() {
+    assertEquals(4, visitor.getMoRefs().size());
+    assertEquals(0, visitor.getMoRefOrdinal(a.getId()));
+    assertEquals(1, visitor.getMoRefOrdinal(b.getId()));
+    assertEquals(3, visitor.getMoRefOrdinal(c.getId()));
+    assertEquals(-1, visitor.getMoRefOrdinal(caNode.getId()));
+    assertEquals(-1, visitor.getMoRefOrdinal("unknown"));
+  }
+
+  @Test(expected = RSuiteException.class)
+  public void unknownChildIsRejected() throws RSuiteException {
+    visitor.getAnySiblingAfter("unknown");
+  }
+
+  @Test(expected = RSuiteException.class)
+  public void containerIsNotAnMoRef() throws RSuiteException {
+    visitor.getMoRefSiblingAfter(caNode.getId());
+  }
+
+  private static String targetId(ContentAssemblyItem item) throws RSuiteException {
+    return item instanceof ContentAssemblyReference
+        ? ((ContentAssemblyReference) item).getTargetId()
+        : ((ManagedObjectReference) item).getTargetId();
+  }
+
+}